@@ -0,0 +1,133 @@
+package io.github.cmakemavenplugin.cmake.benchmarks;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.maven.plugin.CtestReports;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of a CTest report to JUnit format.
+ * <p>
+ * Run with {@code -prof gc} to measure the allocation rate of the conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CtestReportBenchmark
+{
+	/**
+	 * The number of tests in the report.
+	 */
+	@Param({"1000", "10000", "100000"})
+	public int tests;
+	private Path workDirectory;
+	private Path ctestReport;
+	private Path junitReport;
+
+	@Setup(Level.Trial)
+	public void createReport() throws IOException
+	{
+		workDirectory = Files.createTempDirectory("cmake-benchmark");
+		ctestReport = workDirectory.resolve("Test.xml");
+		junitReport = workDirectory.resolve("CTestResults.xml");
+		try (Writer out = Files.newBufferedWriter(ctestReport, StandardCharsets.UTF_8))
+		{
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<Site BuildName=\"Linux-c++\" BuildStamp=\"20240101-0000-Experimental\" " +
+				"Name=\"benchmark\" Generator=\"ctest-3.31.0\" CompilerName=\"\" OSName=\"Linux\" " +
+				"Hostname=\"localhost\" OSRelease=\"6.0\" OSVersion=\"#1 SMP\" OSPlatform=\"x86_64\" " +
+				"Is64Bits=\"1\">\n");
+			out.write("<Testing>\n");
+			out.write("<StartDateTime>Jan 01 00:00 UTC</StartDateTime>\n");
+			out.write("<StartTestTime>1704067200</StartTestTime>\n");
+			out.write("<TestList>\n");
+			for (int i = 0; i < tests; ++i)
+				out.write("<Test>./tests/test" + i + "</Test>\n");
+			out.write("</TestList>\n");
+			for (int i = 0; i < tests; ++i)
+				writeTest(out, i);
+			out.write("<EndDateTime>Jan 01 00:10 UTC</EndDateTime>\n");
+			out.write("<EndTestTime>1704067800</EndTestTime>\n");
+			out.write("<ElapsedMinutes>10</ElapsedMinutes>\n");
+			out.write("</Testing>\n");
+			out.write("</Site>\n");
+		}
+	}
+
+	/**
+	 * Writes a single test result. One in ten tests fails and one in twenty is not run.
+	 *
+	 * @param out   the stream to write to
+	 * @param index the index of the test
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeTest(Writer out, int index) throws IOException
+	{
+		String status;
+		if (index % 10 == 0)
+			status = "failed";
+		else if (index % 20 == 5)
+			status = "notrun";
+		else
+			status = "passed";
+		out.write("<Test Status=\"" + status + "\">\n");
+		out.write("<Name>test" + index + "</Name>\n");
+		out.write("<Path>./tests</Path>\n");
+		out.write("<FullName>./tests/test" + index + "</FullName>\n");
+		out.write("<FullCommandLine>/usr/bin/test" + index + "</FullCommandLine>\n");
+		out.write("<Results>\n");
+		out.write("<NamedMeasurement type=\"numeric/double\" name=\"Execution Time\"><Value>0.0" + index % 100 +
+			"</Value></NamedMeasurement>\n");
+		if (status.equals("failed"))
+		{
+			out.write("<NamedMeasurement type=\"text/string\" name=\"Exit Code\"><Value>Failed</Value>" +
+				"</NamedMeasurement>\n");
+			out.write("<NamedMeasurement type=\"text/string\" name=\"Exit Value\"><Value>1</Value>" +
+				"</NamedMeasurement>\n");
+		}
+		out.write("<NamedMeasurement type=\"text/string\" name=\"Completion Status\"><Value>Completed</Value>" +
+			"</NamedMeasurement>\n");
+		out.write("<Measurement><Value>");
+		for (int line = 0; line < 5; ++line)
+			out.write("[ RUN      ] Suite.test" + index + " line " + line + "&#10;");
+		out.write("</Value></Measurement>\n");
+		out.write("</Results>\n");
+		out.write("</Test>\n");
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteReport() throws IOException
+	{
+		FileOperations.deleteRecursively(workDirectory, NoOpLog.INSTANCE);
+	}
+
+	@Benchmark
+	public void toJunit() throws TransformerException
+	{
+		CtestReports.toJunit(new StreamSource(ctestReport.toFile()), new StreamResult(junitReport.toFile()));
+	}
+}
@@ -0,0 +1,131 @@
+package io.github.cmakemavenplugin.cmake.benchmarks;
+
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor;
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor.Strategy;
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor.Transfer;
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to extract a synthetic CMake distribution.
+ * <p>
+ * {@code tar.gz} archives exercise {@link ArchiveExtractor#extractCompressor(Path, Path)}; {@code tar} and
+ * {@code zip} archives exercise {@link ArchiveExtractor#extractArchive(Path, Path)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExtractBenchmark
+{
+	/**
+	 * The archive format.
+	 */
+	@Param({"tar.gz", "tar", "zip"})
+	public String format;
+	/**
+	 * The size of the buffer used to transfer data from the archive to the filesystem.
+	 */
+	@Param({"10240", "65536", "1048576"})
+	public int bufferSize;
+	/**
+	 * The way that intermediate results are stored.
+	 */
+	@Param({"TEMP_FILE", "STREAMING"})
+	public Strategy strategy;
+	/**
+	 * The way that data is copied from the archive to the filesystem.
+	 */
+	@Param({"HEAP_BUFFER", "CHANNEL_TRANSFER"})
+	public Transfer transfer;
+	/**
+	 * The number of threads that write files.
+	 */
+	@Param({"1", "4"})
+	public int threads;
+	/**
+	 * The approximate number of files in the archive.
+	 */
+	@Param("4000")
+	public int entries;
+	/**
+	 * The approximate uncompressed size of the archive, in megabytes.
+	 */
+	@Param("100")
+	public int megabytes;
+	private Path workDirectory;
+	private Path archive;
+	private Path target;
+	private ArchiveExtractor extractor;
+
+	@Setup(Level.Trial)
+	public void createArchive() throws IOException
+	{
+		workDirectory = Files.createTempDirectory("cmake-benchmark");
+		Path tree = workDirectory.resolve("tree");
+		Fixtures.createTree(tree, entries, megabytes * 1024L * 1024L);
+		archive = workDirectory.resolve(Fixtures.TOP_DIRECTORY + "." + format);
+		Fixtures.createArchive(tree, archive);
+		FileOperations.deleteRecursively(tree, NoOpLog.INSTANCE);
+		target = workDirectory.resolve("target");
+		extractor = new ArchiveExtractor(Platform.detected(), NoOpLog.INSTANCE, bufferSize, strategy,
+			transfer, threads);
+	}
+
+	@Setup(Level.Invocation)
+	public void deleteTarget() throws IOException
+	{
+		FileOperations.deleteRecursively(target, NoOpLog.INSTANCE);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteArchive() throws IOException
+	{
+		FileOperations.deleteRecursively(workDirectory, NoOpLog.INSTANCE);
+	}
+
+	/**
+	 * Extracts the archive, detecting whether it is compressed.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Benchmark
+	public void extract() throws IOException
+	{
+		extractor.extract(archive, target);
+	}
+
+	/**
+	 * Extracts the archive, skipping the detection of its format.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Benchmark
+	public void extractKnownFormat() throws IOException
+	{
+		if (format.equals("tar.gz"))
+			extractor.extractCompressor(archive, target);
+		else
+			extractor.extractArchive(archive, target);
+	}
+}
@@ -0,0 +1,113 @@
+package io.github.cmakemavenplugin.cmake.benchmarks;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the filesystem operations that surround the extraction of a CMake distribution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileOperationsBenchmark
+{
+	/**
+	 * The approximate number of files in the tree.
+	 */
+	@Param("4000")
+	public int entries;
+	/**
+	 * The approximate size of the tree, in megabytes.
+	 */
+	@Param("100")
+	public int megabytes;
+	private Path workDirectory;
+	/**
+	 * A tree that is never modified.
+	 */
+	private Path tree;
+	/**
+	 * A copy of {@link #tree} that benchmarks may modify.
+	 */
+	private Path copy;
+
+	@Setup(Level.Trial)
+	public void createTree() throws IOException
+	{
+		workDirectory = Files.createTempDirectory("cmake-benchmark");
+		tree = workDirectory.resolve("tree");
+		Fixtures.createTree(tree, entries, megabytes * 1024L * 1024L);
+		copy = workDirectory.resolve("copy");
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteTree() throws IOException
+	{
+		FileOperations.deleteRecursively(workDirectory, NoOpLog.INSTANCE);
+	}
+
+	/**
+	 * Prepares the state expected by {@link #copyDirectory(EmptyCopy)}.
+	 */
+	@State(Scope.Benchmark)
+	public static class EmptyCopy
+	{
+		@Setup(Level.Invocation)
+		public void deleteCopy(FileOperationsBenchmark benchmark) throws IOException
+		{
+			FileOperations.deleteRecursively(benchmark.copy, NoOpLog.INSTANCE);
+		}
+	}
+
+	/**
+	 * Prepares the state expected by benchmarks that consume a copy of the tree.
+	 */
+	@State(Scope.Benchmark)
+	public static class FullCopy
+	{
+		@Setup(Level.Invocation)
+		public void createCopy(FileOperationsBenchmark benchmark) throws IOException
+		{
+			FileOperations.deleteRecursively(benchmark.copy, NoOpLog.INSTANCE);
+			FileOperations.copyDirectory(benchmark.tree, benchmark.copy);
+		}
+	}
+
+	@Benchmark
+	public void copyDirectory(EmptyCopy state) throws IOException
+	{
+		FileOperations.copyDirectory(tree, copy);
+	}
+
+	@Benchmark
+	public void normalizeDirectories(FullCopy state) throws IOException
+	{
+		FileOperations.normalizeDirectories(copy, NoOpLog.INSTANCE);
+	}
+
+	@Benchmark
+	public void deleteRecursively(FullCopy state) throws IOException
+	{
+		FileOperations.deleteRecursively(copy, NoOpLog.INSTANCE);
+	}
+}
@@ -0,0 +1,292 @@
+package io.github.cmakemavenplugin.cmake.benchmarks;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.UnixStat;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic CMake distributions.
+ * <p>
+ * The layout mimics the archives published on <a href="https://cmake.org/download/">CMake's website</a>: a
+ * top-level directory containing a handful of large executables under {@code bin} and thousands of small
+ * text files under {@code share} and {@code doc}. The contents are generated from a fixed seed, so every run
+ * measures the same input.
+ */
+final class Fixtures
+{
+	/**
+	 * The name of the top-level directory in the generated archives.
+	 */
+	static final String TOP_DIRECTORY = "cmake-0.0.0-benchmark";
+	/**
+	 * The number of executables under {@code bin}.
+	 */
+	private static final int EXECUTABLES = 8;
+	/**
+	 * The fraction of the total size that is made up of executables.
+	 */
+	private static final double EXECUTABLE_FRACTION = 0.6;
+	/**
+	 * The number of files per directory under {@code share}.
+	 */
+	private static final int FILES_PER_DIRECTORY = 50;
+	private static final String[] WORDS = {"cmake_minimum_required", "project", "add_library",
+		"add_executable", "target_link_libraries", "set", "if", "endif", "foreach", "endforeach", "message",
+		"STATUS", "CMAKE_CURRENT_SOURCE_DIR", "PRIVATE", "PUBLIC", "INTERFACE", "find_package", "REQUIRED",
+		"list", "APPEND", "string", "REGEX", "REPLACE", "get_filename_component", "include", "function",
+		"endfunction", "return", "option", "ON", "OFF", "${CMAKE_BINARY_DIR}", "#", "(", ")"};
+
+	/**
+	 * Generates a directory tree.
+	 *
+	 * @param directory  the directory to write to
+	 * @param entries    the approximate number of files to generate
+	 * @param totalBytes the approximate number of bytes to generate
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void createTree(Path directory, int entries, long totalBytes) throws IOException
+	{
+		Random random = new Random(42);
+		Path top = directory.resolve(TOP_DIRECTORY);
+		Path bin = top.resolve("bin");
+		Files.createDirectories(bin);
+		long executableSize = (long) (totalBytes * EXECUTABLE_FRACTION / EXECUTABLES);
+		for (int i = 0; i < EXECUTABLES; ++i)
+		{
+			Path file = bin.resolve("tool" + i);
+			writeBinary(file, executableSize, random);
+			setPermissions(file, "rwxr-xr-x");
+		}
+
+		int textFiles = Math.max(1, entries - EXECUTABLES);
+		long textSize = (long) (totalBytes * (1 - EXECUTABLE_FRACTION) / textFiles);
+		for (int i = 0; i < textFiles; ++i)
+		{
+			Path parent;
+			if (i % 10 == 0)
+				parent = top.resolve("doc/html/section" + i / FILES_PER_DIRECTORY);
+			else
+				parent = top.resolve("share/cmake/Modules/group" + i / FILES_PER_DIRECTORY);
+			Files.createDirectories(parent);
+			writeText(parent.resolve("file" + i + ".cmake"), textSize, random);
+		}
+	}
+
+	/**
+	 * Writes a file that resembles machine code: a mix of incompressible and highly repetitive blocks.
+	 *
+	 * @param file   the file to write
+	 * @param size   the number of bytes to write
+	 * @param random the source of randomness
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeBinary(Path file, long size, Random random) throws IOException
+	{
+		byte[] block = new byte[4096];
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file)))
+		{
+			for (long remaining = size; remaining > 0; remaining -= block.length)
+			{
+				if (random.nextBoolean())
+					random.nextBytes(block);
+				else
+				{
+					byte value = (byte) random.nextInt();
+					for (int i = 0; i < block.length; ++i)
+						block[i] = (byte) (value + (i & 0x0F));
+				}
+				out.write(block, 0, (int) Math.min(remaining, block.length));
+			}
+		}
+	}
+
+	/**
+	 * Writes a file that resembles a CMake script.
+	 *
+	 * @param file   the file to write
+	 * @param size   the approximate number of bytes to write
+	 * @param random the source of randomness
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeText(Path file, long size, Random random) throws IOException
+	{
+		StringBuilder text = new StringBuilder((int) size + 64);
+		while (text.length() < size)
+		{
+			int words = 1 + random.nextInt(8);
+			for (int i = 0; i < words; ++i)
+			{
+				if (i > 0)
+					text.append(' ');
+				text.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			text.append('\n');
+		}
+		Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param path        a path
+	 * @param permissions the POSIX permissions to set, if the filesystem supports them
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void setPermissions(Path path, String permissions) throws IOException
+	{
+		try
+		{
+			Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+		}
+		catch (UnsupportedOperationException ignored)
+		{
+			// Windows
+		}
+	}
+
+	/**
+	 * Packages a directory into an archive.
+	 *
+	 * @param source  the directory to package
+	 * @param archive the archive to write. The format is determined by the extension: {@code .tar.gz},
+	 *                {@code .tar} or {@code .zip}.
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void createArchive(Path source, Path archive) throws IOException
+	{
+		String name = archive.getFileName().toString();
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(archive), 1024 * 1024))
+		{
+			if (name.endsWith(".tar.gz"))
+			{
+				try (GzipCompressorOutputStream gzip = new GzipCompressorOutputStream(out))
+				{
+					writeTar(source, gzip);
+				}
+			}
+			else if (name.endsWith(".tar"))
+				writeTar(source, out);
+			else if (name.endsWith(".zip"))
+			{
+				try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(out))
+				{
+					writeEntries(source, zip);
+				}
+			}
+			else
+				throw new IllegalArgumentException("Unsupported archive: " + archive);
+		}
+	}
+
+	/**
+	 * @param source the directory to package
+	 * @param out    the stream to write the TAR to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeTar(Path source, OutputStream out) throws IOException
+	{
+		TarArchiveOutputStream tar = new TarArchiveOutputStream(out, StandardCharsets.UTF_8.name());
+		tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+		writeEntries(source, tar);
+		tar.finish();
+	}
+
+	/**
+	 * @param source the directory to package
+	 * @param out    the archive to write to
+	 * @param <E>    the type of entries in the archive
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static <E extends ArchiveEntry> void writeEntries(Path source, ArchiveOutputStream<E> out)
+		throws IOException
+	{
+		List<Path> paths;
+		try (Stream<Path> stream = Files.walk(source))
+		{
+			paths = stream.filter(path -> !path.equals(source)).collect(Collectors.toList());
+		}
+		Collections.sort(paths);
+		byte[] buffer = new byte[64 * 1024];
+		for (Path path : paths)
+		{
+			String name = source.relativize(path).toString().replace('\\', '/');
+			boolean directory = Files.isDirectory(path);
+			boolean executable = Files.isExecutable(path) && !directory;
+			@SuppressWarnings("unchecked")
+			E entry = (E) newEntry(out, name, directory, executable, Files.size(path));
+			out.putArchiveEntry(entry);
+			if (!directory)
+			{
+				try (InputStream in = Files.newInputStream(path))
+				{
+					while (true)
+					{
+						int count = in.read(buffer);
+						if (count == -1)
+							break;
+						out.write(buffer, 0, count);
+					}
+				}
+			}
+			out.closeArchiveEntry();
+		}
+	}
+
+	/**
+	 * @param out        the archive that the entry will be written to
+	 * @param name       the name of the entry, without a trailing slash
+	 * @param directory  {@code true} if the entry is a directory
+	 * @param executable {@code true} if the entry is an executable file
+	 * @param size       the size of the file
+	 * @return a new entry
+	 */
+	private static ArchiveEntry newEntry(ArchiveOutputStream<?> out, String name, boolean directory,
+		boolean executable, long size)
+	{
+		int mode;
+		if (directory || executable)
+			mode = 0755;
+		else
+			mode = 0644;
+		if (directory)
+			name += "/";
+		if (out instanceof ZipArchiveOutputStream)
+		{
+			ZipArchiveEntry result = new ZipArchiveEntry(name);
+			if (directory)
+				result.setUnixMode(UnixStat.DIR_FLAG | mode);
+			else
+				result.setUnixMode(UnixStat.FILE_FLAG | mode);
+			return result;
+		}
+		TarArchiveEntry result = new TarArchiveEntry(name);
+		result.setMode(mode);
+		if (!directory)
+			result.setSize(size);
+		return result;
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private Fixtures()
+	{
+	}
+}
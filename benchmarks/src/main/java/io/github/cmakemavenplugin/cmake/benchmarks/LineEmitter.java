@@ -0,0 +1,39 @@
+package io.github.cmakemavenplugin.cmake.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * A child process that writes lines resembling the output of a native build to {@code stdout}.
+ */
+public final class LineEmitter
+{
+	/**
+	 * @param args the number of lines to write
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int lines = Integer.parseInt(args[0]);
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 64 * 1024))
+		{
+			for (int i = 0; i < lines; ++i)
+			{
+				out.write("[");
+				out.write(String.valueOf(i * 100L / lines));
+				out.write("%] Building CXX object src/CMakeFiles/library.dir/module");
+				out.write(String.valueOf(i));
+				out.write("/source.cpp.o\n");
+			}
+		}
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private LineEmitter()
+	{
+	}
+}
@@ -0,0 +1,105 @@
+package io.github.cmakemavenplugin.cmake.benchmarks;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A {@code Log} that discards all messages.
+ */
+final class NoOpLog implements Log
+{
+	/**
+	 * The singleton instance.
+	 */
+	static final Log INSTANCE = new NoOpLog();
+
+	/**
+	 * Prevent construction.
+	 */
+	private NoOpLog()
+	{
+	}
+
+	@Override
+	public boolean isDebugEnabled()
+	{
+		return false;
+	}
+
+	@Override
+	public void debug(CharSequence content)
+	{
+	}
+
+	@Override
+	public void debug(CharSequence content, Throwable error)
+	{
+	}
+
+	@Override
+	public void debug(Throwable error)
+	{
+	}
+
+	@Override
+	public boolean isInfoEnabled()
+	{
+		return false;
+	}
+
+	@Override
+	public void info(CharSequence content)
+	{
+	}
+
+	@Override
+	public void info(CharSequence content, Throwable error)
+	{
+	}
+
+	@Override
+	public void info(Throwable error)
+	{
+	}
+
+	@Override
+	public boolean isWarnEnabled()
+	{
+		return false;
+	}
+
+	@Override
+	public void warn(CharSequence content)
+	{
+	}
+
+	@Override
+	public void warn(CharSequence content, Throwable error)
+	{
+	}
+
+	@Override
+	public void warn(Throwable error)
+	{
+	}
+
+	@Override
+	public boolean isErrorEnabled()
+	{
+		return false;
+	}
+
+	@Override
+	public void error(CharSequence content)
+	{
+	}
+
+	@Override
+	public void error(CharSequence content, Throwable error)
+	{
+	}
+
+	@Override
+	public void error(Throwable error)
+	{
+	}
+}
@@ -0,0 +1,95 @@
+package io.github.cmakemavenplugin.cmake.benchmarks;
+
+import io.github.cmakemavenplugin.cmake.maven.plugin.Mojos;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how quickly {@link Mojos#waitFor(ProcessBuilder, Log)} relays the output of a child process.
+ * <p>
+ * The child process is a JVM running {@link LineEmitter}. Run with {@code -prof gc} to measure the
+ * allocation rate of the relay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProcessOutputBenchmark
+{
+	/**
+	 * The number of lines written by the child process.
+	 */
+	@Param({"1000000", "5000000"})
+	public int lines;
+	/**
+	 * {@code noop} discards lines without formatting them; {@code console} formats them the same way as
+	 * Maven's console logger and writes them to a stream that discards its output.
+	 */
+	@Param({"noop", "console"})
+	public String log;
+	private ProcessBuilder processBuilder;
+	private Log mavenLog;
+	private PrintStream originalOut;
+
+	@Setup(Level.Trial)
+	public void createProcess()
+	{
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		processBuilder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+			LineEmitter.class.getName(), String.valueOf(lines));
+		if (log.equals("noop"))
+			mavenLog = NoOpLog.INSTANCE;
+		else
+		{
+			// SystemStreamLog looks up System.out on every call
+			mavenLog = new SystemStreamLog();
+			originalOut = System.out;
+			System.setOut(new PrintStream(new OutputStream()
+			{
+				@Override
+				public void write(int b)
+				{
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len)
+				{
+				}
+			}));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void restoreOut()
+	{
+		if (originalOut != null)
+			System.setOut(originalOut);
+	}
+
+	@Benchmark
+	public int waitFor() throws IOException, InterruptedException
+	{
+		return Mojos.waitFor(processBuilder, mavenLog);
+	}
+}
@@ -1,23 +1,19 @@
 package io.github.cmakemavenplugin.cmake.binaries.plugin;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableSet;
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor;
+import io.github.cmakemavenplugin.cmake.common.BlobStore;
+import io.github.cmakemavenplugin.cmake.common.EntryFilter;
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.common.InstallLock;
 import io.github.cmakemavenplugin.cmake.common.Platform;
-import org.apache.commons.compress.archivers.ArchiveEntry;
-import org.apache.commons.compress.archivers.ArchiveException;
-import org.apache.commons.compress.archivers.ArchiveInputStream;
-import org.apache.commons.compress.archivers.ArchiveStreamFactory;
-import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
-import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.compress.compressors.CompressorInputStream;
-import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 
 import javax.inject.Inject;
@@ -29,27 +25,15 @@ import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.SeekableByteChannel;
-import java.nio.file.DirectoryNotEmptyException;
-import java.nio.file.FileVisitOption;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileAttribute;
-import java.nio.file.attribute.PosixFilePermission;
-import java.nio.file.attribute.PosixFilePermissions;
-import java.util.EnumSet;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -59,22 +43,39 @@ import java.util.regex.Pattern;
 @Mojo(name = "get-binaries", defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
 public class GetBinariesMojo extends AbstractMojo
 {
-	/**
-	 * The maximum number of times to retry deleting files.
-	 */
-	private static final int MAX_RETRIES = 30;
 	private final MavenProject project;
+	private final MavenSession session;
 	private final Platform platform = Platform.detected();
+	/**
+	 * {@code true} if stale binaries should be moved aside and deleted in the background instead of holding up
+	 * the build.
+	 */
+	@Parameter(property = "cmake.deleteInBackground", defaultValue = "false")
+	private boolean deleteInBackground;
+	/**
+	 * Glob patterns of the archive entries to extract, relative to the root of the archive. {@code **}
+	 * crosses directories, and a pattern that matches a directory applies to its contents. By default, all
+	 * entries are extracted.
+	 */
+	@Parameter
+	private List<String> includes = new ArrayList<>();
+	/**
+	 * Glob patterns of the archive entries to skip, using the same syntax as {@link #includes}.
+	 */
+	@Parameter
+	private List<String> excludes = new ArrayList<>();
 
 	/**
 	 * Creates a new instance.
 	 *
 	 * @param project an instance of {@code MavenProject}
+	 * @param session an instance of {@code MavenSession}
 	 */
 	@Inject
-	public GetBinariesMojo(MavenProject project)
+	public GetBinariesMojo(MavenProject project, MavenSession session)
 	{
 		this.project = project;
+		this.session = session;
 	}
 
 	@Override
@@ -91,20 +92,23 @@ public class GetBinariesMojo extends AbstractMojo
 		String suffix = platform.getDownloadSuffix();
 
 		String cmakeVersion = getCMakeVersion(project.getVersion());
-		final Path target = Paths.get(project.getBuild().getDirectory(), "dependency/cmake");
+		final Path target = Paths.get(project.getBuild().getDirectory(), "dependency/cmake").toAbsolutePath().
+			normalize();
+		// The marker is a sibling of the target directory so that it does not end up in the jar
+		Path marker = target.resolveSibling(target.getFileName() + ".installed");
+		// Changing the filters invalidates the installed binaries
+		String installed = cmakeVersion + "-" + suffix + "\nincludes: " + includes + "\nexcludes: " + excludes;
 		try
 		{
-			if (Files.exists(target.resolve("bin")))
+			if (isInstalled(marker, installed))
 				return;
-			deleteRecursively(target);
-
-			// Directories are not normalized, begin by unpacking the binaries.
-			Path archive = download(new URI("https://github.com/Kitware/CMake/releases/download/v" +
-				cmakeVersion + "/cmake-" + cmakeVersion + "-" + suffix).toURL());
-			if (log.isInfoEnabled())
-				log.info("Extracting " + archive + " to " + target);
-			extract(archive, target);
-			normalizeDirectories(target);
+			try (InstallLock ignored = InstallLock.acquire(target, log))
+			{
+				if (isInstalled(marker, installed))
+					return;
+				install(cmakeVersion, suffix, target, installed);
+				Files.write(marker, installed.getBytes(StandardCharsets.UTF_8));
+			}
 		}
 		catch (IOException | URISyntaxException e)
 		{
@@ -112,6 +116,87 @@ public class GetBinariesMojo extends AbstractMojo
 		}
 	}
 
+	/**
+	 * @param marker    the file that is written once the binaries are installed
+	 * @param installed the expected contents of {@code marker}
+	 * @return {@code true} if the binaries were installed successfully
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static boolean isInstalled(Path marker, String installed) throws IOException
+	{
+		try
+		{
+			return new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).equals(installed);
+		}
+		catch (NoSuchFileException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Downloads and extracts the binaries. The binaries are extracted into a staging directory that replaces
+	 * {@code target} once it is complete.
+	 * <p>
+	 * The caller must hold the installation lock.
+	 *
+	 * @param cmakeVersion the version of CMake
+	 * @param suffix       the platform-specific suffix of the file to download
+	 * @param target       the directory to install into
+	 * @param key          identifies the contents of {@code target} in the blob store
+	 * @throws IOException            if an I/O error occurs
+	 * @throws URISyntaxException     if the download URL is malformed
+	 * @throws MojoExecutionException if an error occurs downloading the file
+	 */
+	private void install(String cmakeVersion, String suffix, Path target, String key)
+		throws IOException, URISyntaxException, MojoExecutionException
+	{
+		Log log = getLog();
+		String stagingPrefix = target.getFileName() + ".staging-";
+		// Any staging directory that exists while we hold the lock belongs to a build that was killed
+		try (DirectoryStream<Path> siblings = Files.newDirectoryStream(target.getParent(),
+			sibling -> sibling.getFileName().toString().startsWith(stagingPrefix)))
+		{
+			for (Path sibling : siblings)
+				FileOperations.deleteRecursively(sibling, log);
+		}
+
+		Path staging = Files.createTempDirectory(target.getParent(), stagingPrefix);
+		try
+		{
+			// Files that are shared with other versions, or other workspaces, are hard-linked to a single copy
+			BlobStore store = new BlobStore(session.getRepositorySession().getLocalRepository().getBasedir().
+				toPath().resolve(BlobStore.CACHE), platform, log);
+			if (store.materialize(key, staging))
+			{
+				if (log.isInfoEnabled())
+					log.info("Linked binaries from " + BlobStore.CACHE + " in the local repository");
+			}
+			else
+			{
+				// Directories are not normalized, begin by unpacking the binaries.
+				Path archive = download(new URI("https://github.com/Kitware/CMake/releases/download/v" +
+					cmakeVersion + "/cmake-" + cmakeVersion + "-" + suffix).toURL());
+				if (log.isInfoEnabled())
+					log.info("Extracting " + archive + " to " + target);
+				new ArchiveExtractor(platform, log, new EntryFilter(includes, excludes)).extract(archive, staging);
+				FileOperations.normalizeDirectories(staging, log);
+				store.add(key, staging);
+			}
+
+			if (deleteInBackground)
+				FileOperations.deleteInBackground(target, log);
+			else
+				FileOperations.deleteRecursively(target, log);
+			Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			FileOperations.deleteRecursively(staging, log);
+			throw e;
+		}
+	}
+
 	/**
 	 * Returns the cmake version associated with the project.
 	 *
@@ -156,16 +241,26 @@ public class GetBinariesMojo extends AbstractMojo
 				try (BufferedInputStream in = new BufferedInputStream(connection.getInputStream()))
 				{
 					Files.createDirectories(Paths.get(buildDirectory));
-					try (BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(result)))
+					// Only publish complete downloads
+					Path partial = Files.createTempFile(result.getParent(), filename, ".part");
+					try
 					{
-						byte[] buffer = new byte[10 * 1024];
-						while (true)
+						try (BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(partial)))
 						{
-							int count = in.read(buffer);
-							if (count == -1)
-								break;
-							out.write(buffer, 0, count);
+							byte[] buffer = new byte[10 * 1024];
+							while (true)
+							{
+								int count = in.read(buffer);
+								if (count == -1)
+									break;
+								out.write(buffer, 0, count);
+							}
 						}
+						Files.move(partial, result, StandardCopyOption.ATOMIC_MOVE);
+					}
+					finally
+					{
+						Files.deleteIfExists(partial);
 					}
 				}
 				finally
@@ -180,415 +275,4 @@ public class GetBinariesMojo extends AbstractMojo
 			throw new MojoExecutionException("", e);
 		}
 	}
-
-	/**
-	 * Extracts the contents of an archive.
-	 *
-	 * @param source the file to extract
-	 * @param target the directory to extract to
-	 * @throws IOException if an I/O error occurs
-	 */
-	private void extract(Path source, Path target) throws IOException
-	{
-		ByteBuffer buffer = ByteBuffer.allocate(10 * 1024);
-		try
-		{
-			extractCompressor(source, target, buffer);
-		}
-		catch (IOException e)
-		{
-			if (!(e.getCause() instanceof CompressorException))
-				throw e;
-
-			// Perhaps the file is an archive
-			extractArchive(source, target, buffer);
-		}
-	}
-
-	/**
-	 * Extracts the contents of an archive.
-	 *
-	 * @param source the file to extract
-	 * @param target the directory to extract to
-	 * @param buffer the buffer used to transfer data from source to target
-	 * @throws IOException if an I/O error occurs
-	 */
-	private void extractArchive(Path source, Path target, ByteBuffer buffer) throws IOException
-	{
-		Path tempDir = Files.createTempDirectory("cmake");
-		FileAttribute<?>[] attributes;
-		try (ArchiveInputStream<ArchiveEntry> in = new ArchiveStreamFactory().createArchiveInputStream(
-			new BufferedInputStream(Files.newInputStream(source))))
-		{
-			if (platform.supportsPosix(in))
-				attributes = new FileAttribute<?>[1];
-			else
-				attributes = new FileAttribute<?>[0];
-			while (true)
-			{
-				ArchiveEntry entry = in.getNextEntry();
-				if (entry == null)
-					break;
-				if (!in.canReadEntryData(entry))
-				{
-					getLog().warn("Unsupported entry type for " + entry.getName() + ", skipping...");
-					long remaining = entry.getSize();
-					while (remaining > 0)
-					{
-						long actual = in.skip(entry.getSize());
-						if (actual <= 0)
-							throw new AssertionError("skip() returned " + actual);
-						remaining -= actual;
-					}
-					continue;
-				}
-				if (attributes.length > 0)
-					attributes[0] = PosixFilePermissions.asFileAttribute(getPosixPermissions(entry));
-				if (entry.isDirectory())
-				{
-					Path directory = tempDir.resolve(entry.getName());
-					Files.createDirectories(directory);
-
-					if (attributes.length > 0)
-					{
-						@SuppressWarnings("unchecked")
-						Set<PosixFilePermission> permissions = (Set<PosixFilePermission>) attributes[0].value();
-						Files.setPosixFilePermissions(directory, permissions);
-					}
-					continue;
-				}
-				ReadableByteChannel reader = Channels.newChannel(in);
-				Path targetFile = tempDir.resolve(entry.getName());
-
-				// Omitted directories are created using the default permissions
-				Files.createDirectories(targetFile.getParent());
-				try (SeekableByteChannel out = Files.newByteChannel(targetFile,
-					ImmutableSet.of(StandardOpenOption.CREATE,
-						StandardOpenOption.TRUNCATE_EXISTING,
-						StandardOpenOption.WRITE), attributes))
-				{
-					while (true)
-					{
-						int count = reader.read(buffer);
-						if (count == -1)
-							break;
-						buffer.flip();
-						do
-						{
-							out.write(buffer);
-						}
-						while (buffer.hasRemaining());
-						buffer.clear();
-					}
-				}
-			}
-
-			// Copy extracted files from tempDir to target.
-			// Can't use Files.move() because tempDir might reside on a different drive than target
-			copyDirectory(tempDir, target);
-			deleteRecursively(tempDir);
-		}
-		catch (ArchiveException e)
-		{
-			throw new IOException("Could not uncompress: " + source, e);
-		}
-	}
-
-	/**
-	 * Copies a directory.
-	 * <p>
-	 * NOTE: This method is not thread-safe.
-	 *
-	 * @param source the directory to copy from
-	 * @param target the directory to copy into
-	 * @throws IOException if an I/O error occurs
-	 */
-	private void copyDirectory(final Path source, final Path target) throws IOException
-	{
-		Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
-			new FileVisitor<Path>()
-			{
-				@Override
-				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
-					throws IOException
-				{
-					Files.createDirectories(target.resolve(source.relativize(dir)));
-					return FileVisitResult.CONTINUE;
-				}
-
-				@Override
-				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
-				{
-					Files.copy(file, target.resolve(source.relativize(file)),
-						StandardCopyOption.COPY_ATTRIBUTES);
-					return FileVisitResult.CONTINUE;
-				}
-
-				@Override
-				public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException
-				{
-					throw e;
-				}
-
-				@Override
-				public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
-				{
-					if (e != null)
-						throw e;
-					return FileVisitResult.CONTINUE;
-				}
-			});
-	}
-
-	/**
-	 * Extracts the contents of an archive.
-	 *
-	 * @param source the file to extract
-	 * @param target the directory to extract to
-	 * @throws IOException if an I/O error occurs
-	 */
-	private void extractCompressor(Path source, Path target, ByteBuffer buffer) throws IOException
-	{
-		String filename = source.getFileName().toString();
-		String extension = getFileExtension(filename);
-		String nameWithoutExtension = filename.substring(0, filename.length() - extension.length());
-		String nextExtension = getFileExtension(nameWithoutExtension);
-		try (CompressorInputStream in = new CompressorStreamFactory().createCompressorInputStream(
-			new BufferedInputStream(Files.newInputStream(source))))
-		{
-			Path tempDir = Files.createTempDirectory("cmake");
-			ReadableByteChannel reader = Channels.newChannel(in);
-			Path intermediateTarget = tempDir.resolve(nameWithoutExtension);
-			try (SeekableByteChannel out = Files.newByteChannel(intermediateTarget,
-				ImmutableSet.of(StandardOpenOption.CREATE,
-					StandardOpenOption.TRUNCATE_EXISTING,
-					StandardOpenOption.WRITE)))
-			{
-				while (true)
-				{
-					int count = reader.read(buffer);
-					if (count == -1)
-						break;
-					buffer.flip();
-					do
-					{
-						out.write(buffer);
-					}
-					while (buffer.hasRemaining());
-					buffer.clear();
-				}
-			}
-			if (!nextExtension.isEmpty())
-			{
-				extract(intermediateTarget, target);
-				deleteRecursively(tempDir);
-			}
-			else
-			{
-				Files.createDirectories(target.getParent());
-				Files.move(tempDir, target);
-			}
-		}
-		catch (CompressorException e)
-		{
-			throw new IOException("Could not uncompress: " + source, e);
-		}
-	}
-
-	/**
-	 * Converts an integer mode to a set of PosixFilePermissions.
-	 *
-	 * @param entry the archive entry
-	 * @return the PosixFilePermissions, or null if the default permissions should be used
-	 * @see <a href="https://stackoverflow.com/a/9445853/14731">https://stackoverflow.com/a/9445853/14731</a>
-	 */
-	private Set<PosixFilePermission> getPosixPermissions(ArchiveEntry entry)
-	{
-		int mode;
-		if (entry instanceof ArArchiveEntry)
-		{
-			ArArchiveEntry arEntry = (ArArchiveEntry) entry;
-			mode = arEntry.getMode();
-		}
-		else if (entry instanceof ZipArchiveEntry)
-		{
-			ZipArchiveEntry zipEntry = (ZipArchiveEntry) entry;
-			mode = zipEntry.getUnixMode();
-		}
-		else if (entry instanceof TarArchiveEntry)
-		{
-			TarArchiveEntry tarEntry = (TarArchiveEntry) entry;
-			mode = tarEntry.getMode();
-		}
-		else
-		{
-			throw new IllegalArgumentException(entry.getClass().getName() +
-				" does not support POSIX permissions");
-		}
-		StringBuilder result = new StringBuilder(9);
-
-		// Extract digits from left to right
-		//
-		// REFERENCE: https://stackoverflow.com/questions/203854/how-to-get-the-nth-digit-of-an-integer-with-bit-wise-operations
-		for (int i = 3; i >= 1; --i)
-		{
-			// Octal is base-8
-			mode %= (int) Math.pow(8, i);
-			int digit = (int) (mode / Math.pow(8, i - 1));
-			if ((digit & 0x04) != 0)
-				result.append("r");
-			else
-				result.append("-");
-			if ((digit & 0x02) != 0)
-				result.append("w");
-			else
-				result.append("-");
-			if ((digit & 0x01) != 0)
-				result.append("x");
-			else
-				result.append("-");
-		}
-		return PosixFilePermissions.fromString(result.toString());
-	}
-
-	/**
-	 * Returns a filename extension. For example, {@code getFileExtension("foo.tar.gz")} returns
-	 * {@code .gz}. Unix hidden files (e.g. ".hidden") have no extension.
-	 *
-	 * @param filename the filename
-	 * @return an empty string if no extension is found
-	 * @throws NullPointerException if filename is null
-	 */
-	private String getFileExtension(String filename)
-	{
-		Preconditions.checkNotNull(filename, "filename may not be null");
-
-		Pattern pattern = Pattern.compile("[^.]+(\\.\\p{Alnum}+)$");
-		Matcher matcher = pattern.matcher(filename);
-		if (!matcher.find())
-			return "";
-		return matcher.group(1);
-	}
-
-	/**
-	 * Normalize the directory structure across all platforms.
-	 *
-	 * @param source the binary path
-	 * @throws IOException if an I/O error occurs
-	 */
-	private void normalizeDirectories(final Path source) throws IOException
-	{
-		final Path[] topDirectory = new Path[1];
-		Files.walkFileTree(source, new SimpleFileVisitor<Path>()
-		{
-			@Override
-			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
-			{
-				if (dir.getFileName().toString().equals("bin"))
-				{
-					topDirectory[0] = dir.getParent().toAbsolutePath();
-					return FileVisitResult.TERMINATE;
-				}
-				return FileVisitResult.CONTINUE;
-			}
-		});
-		if (topDirectory[0] == null)
-			throw new IOException("Could not find \"bin\" in: " + source);
-
-		Files.walkFileTree(source, new SimpleFileVisitor<Path>()
-		{
-			@Override
-			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
-			{
-				if (topDirectory[0].startsWith(file.getParent()))
-				{
-					// Skip paths outside topDirectory
-					return FileVisitResult.CONTINUE;
-				}
-				Files.move(file, source.resolve(topDirectory[0].relativize(file)),
-					StandardCopyOption.ATOMIC_MOVE);
-				return super.visitFile(file, attrs);
-			}
-
-			@Override
-			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws
-				IOException
-			{
-				if (topDirectory[0].startsWith(dir))
-				{
-					// Skip paths outside topDirectory
-					return FileVisitResult.CONTINUE;
-				}
-				Files.move(dir, source.resolve(topDirectory[0].relativize(dir)),
-					StandardCopyOption.ATOMIC_MOVE);
-				return FileVisitResult.SKIP_SUBTREE;
-			}
-		});
-		deleteRecursively(topDirectory[0]);
-	}
-
-	/**
-	 * Deletes a path recursively.
-	 *
-	 * @param path the path to delete
-	 * @throws IOException if an I/O error occurs
-	 */
-	private void deleteRecursively(Path path) throws IOException
-	{
-		// This method is vulnerable to race-conditions, but it's the best we can do.
-		//
-		// BUG: http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=7148952
-		if (Files.notExists(path))
-			return;
-		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
-		{
-			@Override
-			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
-			{
-				Files.deleteIfExists(file);
-				return super.visitFile(file, attrs);
-			}
-
-			@Override
-			public FileVisitResult postVisitDirectory(Path dir, IOException t) throws IOException
-			{
-				if (t == null)
-				{
-					for (int i = 0; true; ++i)
-					{
-						try
-						{
-							Files.deleteIfExists(dir);
-							break;
-						}
-						catch (DirectoryNotEmptyException e)
-						{
-							if (i < MAX_RETRIES)
-							{
-								// Workaround file lock preventing deletion on Windows
-								long timeout = Math.min(1000, (long) (10 * Math.pow(2, i)));
-								try
-								{
-									Log log = getLog();
-									if (log.isInfoEnabled())
-									{
-										log.info(dir + " is locked... Sleeping before retry [" + (i + 1) + "/" +
-											MAX_RETRIES + "]");
-									}
-									TimeUnit.MILLISECONDS.sleep(timeout);
-									continue;
-								}
-								catch (InterruptedException ignore)
-								{
-									// give up
-								}
-							}
-							throw e;
-						}
-					}
-				}
-				return super.postVisitDirectory(dir, t);
-			}
-		});
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,865 @@
+package io.github.cmakemavenplugin.cmake.common;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.ar.ArArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarFile;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorInputStream;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts compressed files and archives.
+ */
+public final class ArchiveExtractor
+{
+	/**
+	 * The default size of the buffer used to transfer data from an archive to the filesystem.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+	/**
+	 * The maximum number of bytes that may be held in memory waiting to be written to disk.
+	 */
+	private static final int MAX_PENDING_BYTES = 64 * 1024 * 1024;
+	private static final Set<StandardOpenOption> CREATE_OPTIONS = new HashSet<>(Arrays.asList(
+		StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+	private final Platform platform;
+	private final Log log;
+	private final int bufferSize;
+	private final Strategy strategy;
+	private final Transfer transfer;
+	private final int threads;
+	private final EntryFilter filter;
+
+	/**
+	 * Creates a new extractor that uses the default buffer size, {@link Strategy#TEMP_FILE},
+	 * {@link Transfer#CHANNEL_TRANSFER} and one writer thread per processor.
+	 *
+	 * @param platform the platform that the files are extracted on
+	 * @param log      the logger to report problems to
+	 * @throws NullPointerException if any of the arguments are null
+	 */
+	public ArchiveExtractor(Platform platform, Log log)
+	{
+		this(platform, log, EntryFilter.ALL);
+	}
+
+	/**
+	 * Creates a new extractor that uses the default buffer size, {@link Strategy#TEMP_FILE},
+	 * {@link Transfer#CHANNEL_TRANSFER} and one writer thread per processor.
+	 *
+	 * @param platform the platform that the files are extracted on
+	 * @param log      the logger to report problems to
+	 * @param filter   selects the entries to extract
+	 * @throws NullPointerException if any of the arguments are null
+	 */
+	public ArchiveExtractor(Platform platform, Log log, EntryFilter filter)
+	{
+		this(platform, log, DEFAULT_BUFFER_SIZE, Strategy.TEMP_FILE, Transfer.CHANNEL_TRANSFER,
+			Runtime.getRuntime().availableProcessors(), filter);
+	}
+
+	/**
+	 * Creates a new extractor that writes files on the caller's thread.
+	 *
+	 * @param platform   the platform that the files are extracted on
+	 * @param log        the logger to report problems to
+	 * @param bufferSize the size of the buffer used to transfer data from an archive to the filesystem
+	 * @param strategy   the way that intermediate results are stored
+	 * @param transfer   the way that data is copied from an archive to the filesystem
+	 * @throws NullPointerException     if any of the arguments are null
+	 * @throws IllegalArgumentException if {@code bufferSize} is not positive
+	 */
+	public ArchiveExtractor(Platform platform, Log log, int bufferSize, Strategy strategy, Transfer transfer)
+	{
+		this(platform, log, bufferSize, strategy, transfer, 1);
+	}
+
+	/**
+	 * Creates a new extractor that extracts all entries.
+	 *
+	 * @param platform   the platform that the files are extracted on
+	 * @param log        the logger to report problems to
+	 * @param bufferSize the size of the buffer used to transfer data from an archive to the filesystem
+	 * @param strategy   the way that intermediate results are stored
+	 * @param transfer   the way that data is copied from an archive to the filesystem
+	 * @param threads    the number of threads that write files. The archive is read on the caller's thread; if
+	 *                   {@code threads} is greater than 1, files are written concurrently by other threads.
+	 * @throws NullPointerException     if any of the arguments are null
+	 * @throws IllegalArgumentException if {@code bufferSize} or {@code threads} are not positive
+	 */
+	public ArchiveExtractor(Platform platform, Log log, int bufferSize, Strategy strategy, Transfer transfer,
+		int threads)
+	{
+		this(platform, log, bufferSize, strategy, transfer, threads, EntryFilter.ALL);
+	}
+
+	/**
+	 * Creates a new extractor.
+	 *
+	 * @param platform   the platform that the files are extracted on
+	 * @param log        the logger to report problems to
+	 * @param bufferSize the size of the buffer used to transfer data from an archive to the filesystem
+	 * @param strategy   the way that intermediate results are stored
+	 * @param transfer   the way that data is copied from an archive to the filesystem
+	 * @param threads    the number of threads that write files. The archive is read on the caller's thread; if
+	 *                   {@code threads} is greater than 1, files are written concurrently by other threads.
+	 * @param filter     selects the entries to extract
+	 * @throws NullPointerException     if any of the arguments are null
+	 * @throws IllegalArgumentException if {@code bufferSize} or {@code threads} are not positive
+	 */
+	public ArchiveExtractor(Platform platform, Log log, int bufferSize, Strategy strategy, Transfer transfer,
+		int threads, EntryFilter filter)
+	{
+		if (platform == null)
+			throw new NullPointerException("platform may not be null");
+		if (log == null)
+			throw new NullPointerException("log may not be null");
+		if (strategy == null)
+			throw new NullPointerException("strategy may not be null");
+		if (transfer == null)
+			throw new NullPointerException("transfer may not be null");
+		if (filter == null)
+			throw new NullPointerException("filter may not be null");
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+		if (threads <= 0)
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		this.platform = platform;
+		this.log = log;
+		this.bufferSize = bufferSize;
+		this.strategy = strategy;
+		this.transfer = transfer;
+		this.threads = threads;
+		this.filter = filter;
+	}
+
+	/**
+	 * Extracts the contents of a compressed file or archive.
+	 *
+	 * @param source the file to extract
+	 * @param target the directory to extract to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void extract(Path source, Path target) throws IOException
+	{
+		try
+		{
+			extractCompressor(source, target);
+		}
+		catch (IOException e)
+		{
+			if (!(e.getCause() instanceof CompressorException))
+				throw e;
+
+			// Perhaps the file is an archive
+			extractArchive(source, target);
+		}
+	}
+
+	/**
+	 * Extracts the contents of an archive.
+	 *
+	 * @param source the file to extract
+	 * @param target the directory to extract to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void extractArchive(Path source, Path target) throws IOException
+	{
+		try
+		{
+			String format = detectFormat(source);
+			if (format.equals(ArchiveStreamFactory.ZIP))
+			{
+				extractZipFile(source, target);
+				return;
+			}
+			if (transfer == Transfer.CHANNEL_TRANSFER && format.equals(ArchiveStreamFactory.TAR))
+			{
+				extractTarFile(source, target);
+				return;
+			}
+			try (InputStream in = new BufferedInputStream(Files.newInputStream(source)))
+			{
+				extractArchive(in, target);
+			}
+		}
+		catch (ArchiveException e)
+		{
+			throw new IOException("Could not uncompress: " + source, e);
+		}
+	}
+
+	/**
+	 * @param source a file
+	 * @return the archive format of the file, as named by {@link ArchiveStreamFactory}
+	 * @throws ArchiveException if the file is not a supported archive
+	 * @throws IOException      if an I/O error occurs
+	 */
+	private static String detectFormat(Path source) throws ArchiveException, IOException
+	{
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(source)))
+		{
+			return ArchiveStreamFactory.detect(in);
+		}
+	}
+
+	/**
+	 * Extracts the contents of an archive.
+	 *
+	 * @param source the archive, which must support {@link InputStream#mark(int)}
+	 * @param target the directory to extract to
+	 * @throws ArchiveException if the stream does not contain a supported archive
+	 * @throws IOException      if an I/O error occurs
+	 */
+	private void extractArchive(InputStream source, Path target) throws ArchiveException, IOException
+	{
+		try (ArchiveInputStream<ArchiveEntry> in = new ArchiveStreamFactory().createArchiveInputStream(source))
+		{
+			extractInto(target, directory -> extractEntries(in, directory));
+		}
+	}
+
+	/**
+	 * Extracts an uncompressed TAR archive, copying file contents directly from the archive's channel.
+	 *
+	 * @param source the archive
+	 * @param target the directory to extract to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void extractTarFile(Path source, Path target) throws IOException
+	{
+		try (TarFile tar = new TarFile(source);
+		     FileChannel archive = FileChannel.open(source, StandardOpenOption.READ))
+		{
+			extractInto(target, directory -> extractTarEntries(tar, archive, directory));
+		}
+	}
+
+	/**
+	 * Extracts a ZIP archive. Unlike {@link ZipArchiveInputStream}, {@link ZipFile} reads the central
+	 * directory, which holds the unix permissions of each entry, and can read multiple entries concurrently.
+	 *
+	 * @param source the archive
+	 * @param target the directory to extract to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void extractZipFile(Path source, Path target) throws IOException
+	{
+		try (ZipFile zip = ZipFile.builder().setPath(source).get())
+		{
+			extractInto(target, directory -> extractZipEntries(zip, directory));
+		}
+	}
+
+	/**
+	 * Runs an extraction, going through a temporary directory if {@link #strategy} requires it.
+	 *
+	 * @param target     the directory to extract to
+	 * @param extraction writes the contents of the archive to a directory
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void extractInto(Path target, Extraction extraction) throws IOException
+	{
+		if (strategy == Strategy.STREAMING)
+		{
+			extraction.extractTo(target);
+			return;
+		}
+		Path tempDir = Files.createTempDirectory("cmake");
+		extraction.extractTo(tempDir);
+
+		// Copy extracted files from tempDir to target.
+		// Can't use Files.move() because tempDir might reside on a different drive than target
+		FileOperations.copyDirectory(tempDir, target);
+		FileOperations.deleteRecursively(tempDir, log);
+	}
+
+	/**
+	 * Writes the entries of an archive to a directory.
+	 *
+	 * @param in     the archive
+	 * @param target the directory to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void extractEntries(ArchiveInputStream<ArchiveEntry> in, Path target) throws IOException
+	{
+		Copier copier = new Copier();
+		boolean posix = platform.supportsPosix(in);
+		List<Directory> directories = new ArrayList<>();
+		Set<Path> files = new HashSet<>();
+		try (WriterPool pool = new WriterPool(threads, MAX_PENDING_BYTES))
+		{
+			while (true)
+			{
+				ArchiveEntry entry = in.getNextEntry();
+				if (entry == null)
+					break;
+				if (!filter.accepts(entry.getName()))
+				{
+					// getNextEntry() skips the rest of the entry's data
+					continue;
+				}
+				if (!in.canReadEntryData(entry))
+				{
+					log.warn("Unsupported entry type for " + entry.getName() + ", skipping...");
+					long remaining = entry.getSize();
+					while (remaining > 0)
+					{
+						long actual = in.skip(remaining);
+						if (actual <= 0)
+							throw new AssertionError("skip() returned " + actual);
+						remaining -= actual;
+					}
+					continue;
+				}
+				Path path = target.resolve(entry.getName());
+				if (entry.isDirectory())
+				{
+					directories.add(new Directory(path, entry));
+					pool.submit(() -> Files.createDirectories(path));
+					continue;
+				}
+				if (!files.add(path))
+				{
+					// The archive contains the same file twice; the last copy wins
+					pool.await();
+				}
+				long size = entry.getSize();
+				if (pool.canBuffer(size))
+				{
+					int length = (int) size;
+					pool.reserve(length);
+					byte[] content = new byte[length];
+					readFully(in, content, entry);
+					pool.submitBuffered(() -> writeFile(path, entry, posix, out -> writeFully(out, content)),
+						length);
+				}
+				else
+					writeFile(path, entry, posix, out -> copier.copy(in, out));
+			}
+			pool.await();
+			setPermissions(directories, posix, pool);
+		}
+	}
+
+	/**
+	 * Writes the entries of a TAR archive to a directory.
+	 *
+	 * @param tar     the archive
+	 * @param archive a channel that reads the archive
+	 * @param target  the directory to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void extractTarEntries(TarFile tar, FileChannel archive, Path target) throws IOException
+	{
+		Copier copier = new Copier();
+		boolean posix = platform.supportsPosix();
+		List<Directory> directories = new ArrayList<>();
+		Set<Path> files = new HashSet<>();
+		try (WriterPool pool = new WriterPool(threads, MAX_PENDING_BYTES))
+		{
+			for (TarArchiveEntry entry : tar.getEntries())
+			{
+				if (!filter.accepts(entry.getName()))
+					continue;
+				Path path = target.resolve(entry.getName());
+				if (entry.isDirectory())
+				{
+					directories.add(new Directory(path, entry));
+					pool.submit(() -> Files.createDirectories(path));
+					continue;
+				}
+				if (!files.add(path))
+				{
+					// The archive contains the same file twice; the last copy wins
+					pool.await();
+				}
+				if (entry.isSparse() || entry.getDataOffset() == TarArchiveEntry.UNKNOWN)
+				{
+					writeFile(path, entry, posix, out ->
+					{
+						try (InputStream in = tar.getInputStream(entry))
+						{
+							copier.copy(in, out);
+						}
+					});
+					continue;
+				}
+				// Positional transfers do not modify the channel's position, so writers can share the channel
+				pool.submit(() -> writeFile(path, entry, posix, out ->
+				{
+					// Let the operating system copy the data without passing it through the JVM
+					long position = entry.getDataOffset();
+					long remaining = entry.getSize();
+					while (remaining > 0)
+					{
+						long count = archive.transferTo(position, remaining, out);
+						if (count <= 0)
+							throw new EOFException("Truncated entry: " + entry.getName());
+						position += count;
+						remaining -= count;
+					}
+				}));
+			}
+			pool.await();
+			setPermissions(directories, posix, pool);
+		}
+	}
+
+	/**
+	 * Writes the entries of a ZIP archive to a directory.
+	 *
+	 * @param zip    the archive
+	 * @param target the directory to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void extractZipEntries(ZipFile zip, Path target) throws IOException
+	{
+		// Each writer thread decompresses its own entries, so each one needs its own buffers
+		ThreadLocal<Copier> copiers = ThreadLocal.withInitial(Copier::new);
+		boolean posix = platform.supportsPosix();
+		List<Directory> directories = new ArrayList<>();
+		Set<Path> files = new HashSet<>();
+		try (WriterPool pool = new WriterPool(threads, MAX_PENDING_BYTES))
+		{
+			for (ZipArchiveEntry entry : Collections.list(zip.getEntriesInPhysicalOrder()))
+			{
+				if (!filter.accepts(entry.getName()))
+					continue;
+				if (!zip.canReadEntryData(entry))
+				{
+					log.warn("Unsupported entry type for " + entry.getName() + ", skipping...");
+					continue;
+				}
+				Path path = target.resolve(entry.getName());
+				if (entry.isDirectory())
+				{
+					directories.add(new Directory(path, entry));
+					pool.submit(() -> Files.createDirectories(path));
+					continue;
+				}
+				if (!files.add(path))
+				{
+					// The archive contains the same file twice; the last copy wins
+					pool.await();
+				}
+				pool.submit(() -> writeFile(path, entry, posix, out ->
+				{
+					try (InputStream in = zip.getInputStream(entry))
+					{
+						copiers.get().copy(in, out);
+					}
+				}));
+			}
+			pool.await();
+			setPermissions(directories, posix, pool);
+		}
+	}
+
+	/**
+	 * Applies the permissions of directories once their contents have been written, so that read-only
+	 * directories do not prevent files from being written into them. Deeper directories are updated first in
+	 * case a parent directory loses its execute permission.
+	 *
+	 * @param directories the directories
+	 * @param posix       {@code true} if POSIX permissions should be applied
+	 * @param pool        the pool to run on
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void setPermissions(List<Directory> directories, boolean posix, WriterPool pool)
+		throws IOException
+	{
+		if (!posix)
+			return;
+		SortedMap<Integer, List<Directory>> directoriesByDepth = new TreeMap<>(Comparator.reverseOrder());
+		for (Directory directory : directories)
+		{
+			directoriesByDepth.computeIfAbsent(directory.path.getNameCount(), key -> new ArrayList<>()).
+				add(directory);
+		}
+		for (List<Directory> sameDepth : directoriesByDepth.values())
+		{
+			for (Directory directory : sameDepth)
+			{
+				Set<PosixFilePermission> permissions = getPosixPermissions(directory.entry);
+				if (permissions != null)
+					pool.submit(() -> Files.setPosixFilePermissions(directory.path, permissions));
+			}
+			pool.await();
+		}
+	}
+
+	/**
+	 * Reads the contents of an entry.
+	 *
+	 * @param in      the stream to read from
+	 * @param content the array to fill
+	 * @param entry   the entry being read
+	 * @throws IOException if an I/O error occurs or the stream ends before {@code content} is filled
+	 */
+	private static void readFully(InputStream in, byte[] content, ArchiveEntry entry) throws IOException
+	{
+		int offset = 0;
+		while (offset < content.length)
+		{
+			int count = in.read(content, offset, content.length - offset);
+			if (count == -1)
+				throw new EOFException("Truncated entry: " + entry.getName());
+			offset += count;
+		}
+	}
+
+	/**
+	 * @param out     the file to write to
+	 * @param content the bytes to write
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeFully(FileChannel out, byte[] content) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+		while (buffer.hasRemaining())
+			out.write(buffer);
+	}
+
+	/**
+	 * Creates a file.
+	 *
+	 * @param file    the path of the file
+	 * @param entry   the archive entry that describes the file
+	 * @param posix   {@code true} if the entry's POSIX permissions should be applied
+	 * @param content writes the contents of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void writeFile(Path file, ArchiveEntry entry, boolean posix, Content content) throws IOException
+	{
+		Set<PosixFilePermission> permissions;
+		if (posix)
+			permissions = getPosixPermissions(entry);
+		else
+			permissions = null;
+		FileAttribute<?>[] attributes;
+		if (permissions != null)
+			attributes = new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(permissions)};
+		else
+			attributes = new FileAttribute<?>[0];
+
+		// Omitted directories are created using the default permissions
+		Files.createDirectories(file.getParent());
+		try (FileChannel out = FileChannel.open(file, CREATE_OPTIONS, attributes))
+		{
+			content.writeTo(out);
+		}
+	}
+
+	/**
+	 * Extracts the contents of a compressed file.
+	 *
+	 * @param source the file to extract
+	 * @param target the directory to extract to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void extractCompressor(Path source, Path target) throws IOException
+	{
+		String filename = source.getFileName().toString();
+		String extension = getFileExtension(filename);
+		String nameWithoutExtension = filename.substring(0, filename.length() - extension.length());
+		String nextExtension = getFileExtension(nameWithoutExtension);
+		// Accept streams made of several concatenated members, such as those written by bgzip
+		try (CompressorInputStream in = new CompressorStreamFactory(true).createCompressorInputStream(
+			new BufferedInputStream(Files.newInputStream(source))))
+		{
+			if (!nextExtension.isEmpty() && strategy == Strategy.STREAMING)
+			{
+				// Read the archive directly from the decompressed stream
+				extractArchive(new BufferedInputStream(in, bufferSize), target);
+				return;
+			}
+			Path tempDir = Files.createTempDirectory("cmake");
+			Path intermediateTarget = tempDir.resolve(nameWithoutExtension);
+			try (FileChannel out = FileChannel.open(intermediateTarget, CREATE_OPTIONS))
+			{
+				new Copier().copy(in, out);
+			}
+			if (!nextExtension.isEmpty())
+			{
+				extract(intermediateTarget, target);
+				FileOperations.deleteRecursively(tempDir, log);
+			}
+			else
+			{
+				Files.createDirectories(target.getParent());
+				Files.move(tempDir, target);
+			}
+		}
+		catch (CompressorException | ArchiveException e)
+		{
+			throw new IOException("Could not uncompress: " + source, e);
+		}
+	}
+
+	/**
+	 * Converts an integer mode to a set of PosixFilePermissions.
+	 *
+	 * @param entry the archive entry
+	 * @return the PosixFilePermissions, or null if the default permissions should be used
+	 * @see <a href="https://stackoverflow.com/a/9445853/14731">https://stackoverflow.com/a/9445853/14731</a>
+	 */
+	private static Set<PosixFilePermission> getPosixPermissions(ArchiveEntry entry)
+	{
+		int mode;
+		if (entry instanceof ArArchiveEntry)
+		{
+			ArArchiveEntry arEntry = (ArArchiveEntry) entry;
+			mode = arEntry.getMode();
+		}
+		else if (entry instanceof ZipArchiveEntry)
+		{
+			ZipArchiveEntry zipEntry = (ZipArchiveEntry) entry;
+			mode = zipEntry.getUnixMode();
+			// Archives created on Windows, and ZipArchiveInputStream, do not provide a mode
+			if (mode == 0)
+				return null;
+		}
+		else if (entry instanceof TarArchiveEntry)
+		{
+			TarArchiveEntry tarEntry = (TarArchiveEntry) entry;
+			mode = tarEntry.getMode();
+		}
+		else
+		{
+			throw new IllegalArgumentException(entry.getClass().getName() +
+				" does not support POSIX permissions");
+		}
+		StringBuilder result = new StringBuilder(9);
+
+		// Extract digits from left to right
+		//
+		// REFERENCE: https://stackoverflow.com/questions/203854/how-to-get-the-nth-digit-of-an-integer-with-bit-wise-operations
+		for (int i = 3; i >= 1; --i)
+		{
+			// Octal is base-8
+			mode %= (int) Math.pow(8, i);
+			int digit = (int) (mode / Math.pow(8, i - 1));
+			if ((digit & 0x04) != 0)
+				result.append("r");
+			else
+				result.append("-");
+			if ((digit & 0x02) != 0)
+				result.append("w");
+			else
+				result.append("-");
+			if ((digit & 0x01) != 0)
+				result.append("x");
+			else
+				result.append("-");
+		}
+		return PosixFilePermissions.fromString(result.toString());
+	}
+
+	/**
+	 * Returns a filename extension. For example, {@code getFileExtension("foo.tar.gz")} returns
+	 * {@code .gz}. Unix hidden files (e.g. ".hidden") have no extension.
+	 *
+	 * @param filename the filename
+	 * @return an empty string if no extension is found
+	 * @throws NullPointerException if filename is null
+	 */
+	private static String getFileExtension(String filename)
+	{
+		if (filename == null)
+			throw new NullPointerException("filename may not be null");
+
+		Pattern pattern = Pattern.compile("[^.]+(\\.\\p{Alnum}+)$");
+		Matcher matcher = pattern.matcher(filename);
+		if (!matcher.find())
+			return "";
+		return matcher.group(1);
+	}
+
+	/**
+	 * Copies the contents of archive entries to files, reusing the same buffer for every entry.
+	 */
+	private final class Copier
+	{
+		private final ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+		/**
+		 * The array that backs {@link #buffer}; {@code null} when using {@link Transfer#HEAP_BUFFER}.
+		 */
+		private final byte[] chunk;
+
+		/**
+		 * Creates a new instance.
+		 */
+		Copier()
+		{
+			if (transfer == Transfer.HEAP_BUFFER)
+				this.chunk = null;
+			else
+				this.chunk = buffer.array();
+		}
+
+		/**
+		 * Copies all remaining bytes from a stream to a file.
+		 *
+		 * @param in  the stream to read from
+		 * @param out the file to write to
+		 * @throws IOException if an I/O error occurs
+		 */
+		void copy(InputStream in, FileChannel out) throws IOException
+		{
+			if (chunk == null)
+			{
+				ReadableByteChannel reader = Channels.newChannel(in);
+				while (true)
+				{
+					int count = reader.read(buffer);
+					if (count == -1)
+						break;
+					buffer.flip();
+					do
+					{
+						out.write(buffer);
+					}
+					while (buffer.hasRemaining());
+					buffer.clear();
+				}
+				return;
+			}
+			// Fill the whole chunk before writing so that each write() is as large as possible
+			while (true)
+			{
+				int count = 0;
+				while (count < chunk.length)
+				{
+					int actual = in.read(chunk, count, chunk.length - count);
+					if (actual == -1)
+						break;
+					count += actual;
+				}
+				if (count == 0)
+					break;
+				buffer.clear();
+				buffer.limit(count);
+				do
+				{
+					out.write(buffer);
+				}
+				while (buffer.hasRemaining());
+				if (count < chunk.length)
+					break;
+			}
+		}
+	}
+
+	/**
+	 * A directory entry whose permissions are applied after the rest of the archive is extracted.
+	 */
+	private static final class Directory
+	{
+		final Path path;
+		final ArchiveEntry entry;
+
+		/**
+		 * @param path  the path of the directory
+		 * @param entry the archive entry that describes the directory
+		 */
+		Directory(Path path, ArchiveEntry entry)
+		{
+			this.path = path;
+			this.entry = entry;
+		}
+	}
+
+	/**
+	 * Writes the contents of a file.
+	 */
+	@FunctionalInterface
+	private interface Content
+	{
+		/**
+		 * @param out the file to write to
+		 * @throws IOException if an I/O error occurs
+		 */
+		void writeTo(FileChannel out) throws IOException;
+	}
+
+	/**
+	 * Writes the contents of an archive to a directory.
+	 */
+	@FunctionalInterface
+	private interface Extraction
+	{
+		/**
+		 * @param directory the directory to write to
+		 * @throws IOException if an I/O error occurs
+		 */
+		void extractTo(Path directory) throws IOException;
+	}
+
+	/**
+	 * The way that intermediate results are stored.
+	 */
+	public enum Strategy
+	{
+		/**
+		 * Decompress to a temporary file, extract the archive to a temporary directory, then copy the result
+		 * to the target directory.
+		 */
+		TEMP_FILE,
+		/**
+		 * Read the archive directly from the decompressed stream and write its entries directly to the target
+		 * directory.
+		 */
+		STREAMING
+	}
+
+	/**
+	 * The way that data is copied from an archive to the filesystem.
+	 */
+	public enum Transfer
+	{
+		/**
+		 * Copy through a heap buffer.
+		 */
+		HEAP_BUFFER,
+		/**
+		 * Fill a reusable heap buffer before each write, and let the operating system copy the contents of
+		 * uncompressed TAR archives without passing them through the JVM.
+		 */
+		CHANNEL_TRANSFER
+	}
+}
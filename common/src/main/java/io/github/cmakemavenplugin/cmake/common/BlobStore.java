@@ -0,0 +1,315 @@
+package io.github.cmakemavenplugin.cmake.common;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A content-addressed store of directory trees, shared by all builds that use the same local repository.
+ * <p>
+ * Each file is stored once per SHA-256 hash, no matter how many trees contain it. On platforms that support
+ * POSIX permissions, trees are materialized by hard-linking to the stored files, falling back to copies if the
+ * target is on a different filesystem. Stored files are made read-only, because modifying a materialized file
+ * would modify every tree that links to it.
+ * <p>
+ * Other platforms, such as Windows, always copy: a read-only attribute would prevent builds from deleting the
+ * materialized trees, and without one a linked file could be modified in place.
+ * <p>
+ * The store is never cleaned up automatically. It is safe to delete the whole directory while no build is
+ * running.
+ * <p>
+ * Layout:
+ * <ul>
+ * <li>{@code blobs/<first two hex digits>/<sha-256>[-x]}: the contents of a file. The {@code -x} suffix
+ * denotes executables, because hard links share permissions.</li>
+ * <li>{@code trees/<sha-256 of key>}: the files, directories and symbolic links of a tree, one per line.</li>
+ * </ul>
+ */
+public final class BlobStore
+{
+	/**
+	 * The location of the directory that the plugins cache files in, relative to the local repository. The
+	 * store is kept in this directory, alongside anything else that the plugins share between builds.
+	 */
+	public static final String CACHE = ".cache/cmake-maven-plugin";
+	private static final String DIRECTORY = "d";
+	private static final String FILE = "f";
+	private static final String EXECUTABLE = "x";
+	private static final String SYMBOLIC_LINK = "l";
+	private final Path blobs;
+	private final Path trees;
+	private final Platform platform;
+	private final Log log;
+	/**
+	 * {@code false} if files are copied instead of linked, either because the platform cannot protect linked
+	 * files or because a hard link failed, to avoid failing again for every file.
+	 */
+	private boolean linksSupported;
+
+	/**
+	 * Creates a new store.
+	 *
+	 * @param root     the directory to store trees in
+	 * @param platform the platform that the files are stored on
+	 * @param log      the logger to report problems to
+	 * @throws NullPointerException if any of the arguments are null
+	 */
+	public BlobStore(Path root, Platform platform, Log log)
+	{
+		if (root == null)
+			throw new NullPointerException("root may not be null");
+		if (platform == null)
+			throw new NullPointerException("platform may not be null");
+		if (log == null)
+			throw new NullPointerException("log may not be null");
+		this.blobs = root.resolve("blobs");
+		this.trees = root.resolve("trees");
+		this.platform = platform;
+		this.log = log;
+		this.linksSupported = platform.supportsPosix();
+	}
+
+	/**
+	 * Recreates a stored tree. Any existing contents of {@code target} are deleted.
+	 *
+	 * @param key    the name of the tree
+	 * @param target the directory to create the tree in
+	 * @return {@code false} if the store does not contain the tree
+	 * @throws IOException if an I/O error occurs
+	 */
+	public boolean materialize(String key, Path target) throws IOException
+	{
+		List<String> index;
+		try
+		{
+			index = Files.readAllLines(getIndex(key), StandardCharsets.UTF_8);
+		}
+		catch (NoSuchFileException e)
+		{
+			return false;
+		}
+		FileOperations.deleteRecursively(target, log);
+		Files.createDirectories(target);
+		for (String line : index)
+		{
+			// <type>\t<value>\t<path>
+			String[] tokens = line.split("\t", 3);
+			if (tokens.length != 3)
+				throw new IOException("Unexpected entry in " + getIndex(key) + ": " + line);
+			String type = tokens[0];
+			String value = tokens[1];
+			Path path = target.resolve(tokens[2]);
+			switch (type)
+			{
+				case DIRECTORY:
+					Files.createDirectories(path);
+					break;
+				case SYMBOLIC_LINK:
+					Files.createDirectories(path.getParent());
+					Files.createSymbolicLink(path, path.getFileSystem().getPath(value));
+					break;
+				case FILE:
+				case EXECUTABLE:
+				{
+					Path blob = getBlob(value, type.equals(EXECUTABLE));
+					if (Files.notExists(blob))
+					{
+						// Someone deleted part of the store
+						FileOperations.deleteRecursively(target, log);
+						return false;
+					}
+					Files.createDirectories(path.getParent());
+					link(blob, path);
+					break;
+				}
+				default:
+					throw new IOException("Unexpected entry in " + getIndex(key) + ": " + line);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a tree to the store. Files of {@code source} whose contents are already stored are replaced by
+	 * links to the stored copy; the rest are linked into the store.
+	 *
+	 * @param key    the name of the tree
+	 * @param source the directory containing the tree
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void add(String key, Path source) throws IOException
+	{
+		List<String> index = new ArrayList<>();
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+			{
+				if (!dir.equals(source))
+					index.add(DIRECTORY + "\t-\t" + toName(source, dir));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+			{
+				if (attrs.isSymbolicLink())
+				{
+					index.add(SYMBOLIC_LINK + "\t" + Files.readSymbolicLink(file).toString().replace('\\', '/') +
+						"\t" + toName(source, file));
+					return FileVisitResult.CONTINUE;
+				}
+				boolean executable = isExecutable(file);
+				String hash = Digests.sha256(file);
+				Path blob = getBlob(hash, executable);
+				if (Files.exists(blob))
+				{
+					// Deduplicate. Copying the blob over an identical file would gain nothing.
+					if (linksSupported)
+					{
+						Files.delete(file);
+						link(blob, file);
+					}
+				}
+				else
+					store(file, blob, executable);
+				String type;
+				if (executable)
+					type = EXECUTABLE;
+				else
+					type = FILE;
+				index.add(type + "\t" + hash + "\t" + toName(source, file));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Path indexFile = getIndex(key);
+		Files.createDirectories(indexFile.getParent());
+		Path temporary = indexFile.resolveSibling(indexFile.getFileName() + "." + UUID.randomUUID());
+		Files.write(temporary, index, StandardCharsets.UTF_8);
+		Files.move(temporary, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Adds a file to the store.
+	 *
+	 * @param file       the file
+	 * @param blob       the path to store the file at
+	 * @param executable {@code true} if the file is executable
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void store(Path file, Path blob, boolean executable) throws IOException
+	{
+		Files.createDirectories(blob.getParent());
+		if (platform.supportsPosix())
+		{
+			Set<PosixFilePermission> permissions;
+			if (executable)
+				permissions = PosixFilePermissions.fromString("r-xr-xr-x");
+			else
+				permissions = PosixFilePermissions.fromString("r--r--r--");
+			Files.setPosixFilePermissions(file, permissions);
+		}
+		// Write the blob under a temporary name so that other builds never see a partial file
+		Path temporary = blob.resolveSibling(blob.getFileName() + "." + UUID.randomUUID());
+		link(file, temporary);
+		try
+		{
+			Files.move(temporary, blob, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (FileAlreadyExistsException e)
+		{
+			// Another build stored the same contents first
+			Files.delete(temporary);
+		}
+	}
+
+	/**
+	 * Creates a hard link, or a copy if the filesystem does not support hard links between the two paths.
+	 *
+	 * @param existing the existing file
+	 * @param link     the path to create
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void link(Path existing, Path link) throws IOException
+	{
+		if (linksSupported)
+		{
+			try
+			{
+				Files.createLink(link, existing);
+				return;
+			}
+			catch (UnsupportedOperationException | IOException e)
+			{
+				if (e instanceof FileAlreadyExistsException)
+					throw e;
+				if (log.isDebugEnabled())
+					log.debug("Could not link " + link + " to " + existing + ", copying files instead", e);
+				linksSupported = false;
+			}
+		}
+		Files.copy(existing, link, StandardCopyOption.COPY_ATTRIBUTES);
+	}
+
+	/**
+	 * @param file a file
+	 * @return {@code true} if the file is executable
+	 * @throws IOException if an I/O error occurs
+	 */
+	private boolean isExecutable(Path file) throws IOException
+	{
+		if (platform.supportsPosix())
+			return Files.getPosixFilePermissions(file).contains(PosixFilePermission.OWNER_EXECUTE);
+		return Files.isExecutable(file);
+	}
+
+	/**
+	 * @param key the name of a tree
+	 * @return the path of the tree's index
+	 */
+	private Path getIndex(String key)
+	{
+		// Keys may contain characters that are not allowed in filenames
+		return trees.resolve(Digests.sha256(key));
+	}
+
+	/**
+	 * @param hash       the SHA-256 hash of the file's contents
+	 * @param executable {@code true} if the file is executable
+	 * @return the path of the blob
+	 */
+	private Path getBlob(String hash, boolean executable)
+	{
+		String filename;
+		if (executable)
+			filename = hash + "-x";
+		else
+			filename = hash;
+		return blobs.resolve(hash.substring(0, 2)).resolve(filename);
+	}
+
+	/**
+	 * @param root the root of a tree
+	 * @param path a path within the tree
+	 * @return the {@code /}-separated name of the path relative to the root
+	 */
+	private static String toName(Path root, Path path)
+	{
+		return root.relativize(path).toString().replace('\\', '/');
+	}
+}
@@ -0,0 +1,97 @@
+package io.github.cmakemavenplugin.cmake.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests, in hex.
+ */
+public final class Digests
+{
+	/**
+	 * @return a new SHA-256 digest
+	 */
+	public static MessageDigest newSha256()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// Every JVM is required to support SHA-256
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * @param value a string
+	 * @return the SHA-256 hash of the string's UTF-8 encoding, in hex
+	 * @throws NullPointerException if {@code value} is null
+	 */
+	public static String sha256(String value)
+	{
+		return toHex(newSha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @param file a file
+	 * @return the SHA-256 hash of the file's contents, in hex
+	 * @throws NullPointerException if {@code file} is null
+	 * @throws IOException          if an I/O error occurs
+	 */
+	public static String sha256(Path file) throws IOException
+	{
+		MessageDigest digest = newSha256();
+		update(digest, file);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Adds the contents of a file to a digest.
+	 *
+	 * @param digest a digest
+	 * @param file   the file
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an I/O error occurs
+	 */
+	public static void update(MessageDigest digest, Path file) throws IOException
+	{
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = Files.newInputStream(file))
+		{
+			while (true)
+			{
+				int count = in.read(buffer);
+				if (count == -1)
+					break;
+				digest.update(buffer, 0, count);
+			}
+		}
+	}
+
+	/**
+	 * @param bytes a byte array
+	 * @return the hex representation of the bytes
+	 * @throws NullPointerException if {@code bytes} is null
+	 */
+	public static String toHex(byte[] bytes)
+	{
+		StringBuilder result = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			result.append(String.format("%02x", b));
+		return result.toString();
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private Digests()
+	{
+	}
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+package io.github.cmakemavenplugin.cmake.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the archive entries to extract.
+ * <p>
+ * Patterns are globs matched against the {@code /}-separated name of an entry within the archive:
+ * <ul>
+ * <li>{@code *} matches any number of characters within a path component.</li>
+ * <li>{@code **} matches any number of characters, crossing path components. {@code **}{@code /} also matches
+ * zero path components.</li>
+ * <li>{@code ?} matches a single character within a path component.</li>
+ * </ul>
+ * A pattern that matches a directory also applies to everything beneath it. An entry is extracted if it
+ * matches at least one include (or no includes are specified) and does not match any exclude.
+ */
+public final class EntryFilter
+{
+	/**
+	 * Accepts all entries.
+	 */
+	public static final EntryFilter ALL = new EntryFilter(Collections.emptyList(), Collections.emptyList());
+	private final List<Pattern> includes;
+	private final List<Pattern> excludes;
+
+	/**
+	 * Creates a new filter.
+	 *
+	 * @param includes the patterns of entries to extract (empty to extract all entries)
+	 * @param excludes the patterns of entries to skip
+	 * @throws NullPointerException if any of the arguments are null
+	 */
+	public EntryFilter(List<String> includes, List<String> excludes)
+	{
+		if (includes == null)
+			throw new NullPointerException("includes may not be null");
+		if (excludes == null)
+			throw new NullPointerException("excludes may not be null");
+		this.includes = toPatterns(includes);
+		this.excludes = toPatterns(excludes);
+	}
+
+	/**
+	 * @param globs glob patterns
+	 * @return the equivalent regular expressions
+	 */
+	private static List<Pattern> toPatterns(List<String> globs)
+	{
+		List<Pattern> result = new ArrayList<>(globs.size());
+		for (String glob : globs)
+			result.add(toPattern(glob));
+		return result;
+	}
+
+	/**
+	 * @param glob a glob pattern
+	 * @return the equivalent regular expression
+	 */
+	private static Pattern toPattern(String glob)
+	{
+		StringBuilder regex = new StringBuilder();
+		int length = glob.length();
+		for (int i = 0; i < length; ++i)
+		{
+			char c = glob.charAt(i);
+			switch (c)
+			{
+				case '*':
+					if (i + 1 < length && glob.charAt(i + 1) == '*')
+					{
+						++i;
+						if (i + 1 < length && glob.charAt(i + 1) == '/')
+						{
+							++i;
+							regex.append("(?:.*/)?");
+						}
+						else
+							regex.append(".*");
+					}
+					else
+						regex.append("[^/]*");
+					break;
+				case '?':
+					regex.append("[^/]");
+					break;
+				default:
+					regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+	/**
+	 * @param name the name of an archive entry
+	 * @return {@code true} if the entry should be extracted
+	 */
+	public boolean accepts(String name)
+	{
+		if (includes.isEmpty() && excludes.isEmpty())
+			return true;
+		String path = name;
+		while (path.endsWith("/"))
+			path = path.substring(0, path.length() - 1);
+		return (includes.isEmpty() || matches(includes, path)) && !matches(excludes, path);
+	}
+
+	/**
+	 * @param patterns a list of patterns
+	 * @param path     the path of an entry, without a trailing slash
+	 * @return {@code true} if any of the patterns match the path or one of its parent directories
+	 */
+	private static boolean matches(List<Pattern> patterns, String path)
+	{
+		for (Pattern pattern : patterns)
+		{
+			String candidate = path;
+			while (true)
+			{
+				if (pattern.matcher(candidate).matches())
+					return true;
+				int separator = candidate.lastIndexOf('/');
+				if (separator == -1)
+					break;
+				candidate = candidate.substring(0, separator);
+			}
+		}
+		return false;
+	}
+}
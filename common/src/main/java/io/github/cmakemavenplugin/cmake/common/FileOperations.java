@@ -0,0 +1,434 @@
+package io.github.cmakemavenplugin.cmake.common;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filesystem operations used while installing the CMake binaries.
+ */
+public final class FileOperations
+{
+	/**
+	 * The maximum number of times to retry deleting files.
+	 */
+	private static final int MAX_RETRIES = 30;
+	/**
+	 * Separates the name of a path that is being deleted in the background from a unique suffix.
+	 */
+	private static final String DELETING_SUFFIX = ".deleting-";
+
+	/**
+	 * Copies a directory.
+	 * <p>
+	 * NOTE: This method is not thread-safe.
+	 *
+	 * @param source the directory to copy from
+	 * @param target the directory to copy into
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void copyDirectory(final Path source, final Path target) throws IOException
+	{
+		Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+			new FileVisitor<Path>()
+			{
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+					throws IOException
+				{
+					Files.createDirectories(target.resolve(source.relativize(dir)));
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+				{
+					Files.copy(file, target.resolve(source.relativize(file)),
+						StandardCopyOption.COPY_ATTRIBUTES);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException
+				{
+					throw e;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
+				{
+					if (e != null)
+						throw e;
+					return FileVisitResult.CONTINUE;
+				}
+			});
+	}
+
+	/**
+	 * Normalize the directory structure across all platforms.
+	 *
+	 * @param source the binary path
+	 * @param log    the logger to report progress to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void normalizeDirectories(final Path source, Log log) throws IOException
+	{
+		final Path[] topDirectory = new Path[1];
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+			{
+				if (dir.getFileName().toString().equals("bin"))
+				{
+					topDirectory[0] = dir.getParent().toAbsolutePath();
+					return FileVisitResult.TERMINATE;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		if (topDirectory[0] == null)
+			throw new IOException("Could not find \"bin\" in: " + source);
+
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+			{
+				if (topDirectory[0].startsWith(file.getParent()))
+				{
+					// Skip paths outside topDirectory
+					return FileVisitResult.CONTINUE;
+				}
+				Files.move(file, source.resolve(topDirectory[0].relativize(file)),
+					StandardCopyOption.ATOMIC_MOVE);
+				return super.visitFile(file, attrs);
+			}
+
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws
+				IOException
+			{
+				if (topDirectory[0].startsWith(dir))
+				{
+					// Skip paths outside topDirectory
+					return FileVisitResult.CONTINUE;
+				}
+				Files.move(dir, source.resolve(topDirectory[0].relativize(dir)),
+					StandardCopyOption.ATOMIC_MOVE);
+				return FileVisitResult.SKIP_SUBTREE;
+			}
+		});
+		deleteRecursively(topDirectory[0], log);
+	}
+
+	/**
+	 * Deletes a path recursively.
+	 * <p>
+	 * Subdirectories are deleted concurrently. Directories that cannot be deleted right away, such as those
+	 * locked by another process, are retried once the rest of the tree is gone.
+	 *
+	 * @param path the path to delete
+	 * @param log  the logger to report retries to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void deleteRecursively(Path path, Log log) throws IOException
+	{
+		if (Files.notExists(path, LinkOption.NOFOLLOW_LINKS))
+			return;
+		if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+		{
+			Files.deleteIfExists(path);
+			return;
+		}
+		Queue<Path> deferred = new ConcurrentLinkedQueue<>();
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			pool.invoke(new DeleteDirectory(path, deferred));
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		// Children must be deleted before their parents
+		List<Path> remaining = new ArrayList<>(deferred);
+		remaining.sort(Comparator.comparingInt(Path::getNameCount).reversed());
+		for (Path directory : remaining)
+			deleteWithRetries(directory, log);
+	}
+
+	/**
+	 * Moves a path aside and deletes it on a background thread, allowing the caller to reuse the path
+	 * immediately. Leftovers of earlier calls whose deletion did not complete, for example because the JVM
+	 * exited first, are deleted as well.
+	 * <p>
+	 * If the path cannot be moved, it is deleted on the caller's thread.
+	 *
+	 * @param path the path to delete
+	 * @param log  the logger to report problems to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void deleteInBackground(Path path, Log log) throws IOException
+	{
+		Path absolutePath = path.toAbsolutePath();
+		Path parent = absolutePath.getParent();
+		if (parent == null)
+		{
+			deleteRecursively(path, log);
+			return;
+		}
+		String prefix = absolutePath.getFileName() + DELETING_SUFFIX;
+		List<Path> trash = new ArrayList<>();
+		if (Files.isDirectory(parent))
+		{
+			try (DirectoryStream<Path> siblings = Files.newDirectoryStream(parent,
+				sibling -> sibling.getFileName().toString().startsWith(prefix)))
+			{
+				for (Path sibling : siblings)
+					trash.add(sibling);
+			}
+		}
+		if (Files.exists(absolutePath, LinkOption.NOFOLLOW_LINKS))
+		{
+			Path aside = parent.resolve(prefix + UUID.randomUUID());
+			try
+			{
+				Files.move(absolutePath, aside, StandardCopyOption.ATOMIC_MOVE);
+				trash.add(aside);
+			}
+			catch (IOException e)
+			{
+				if (log.isDebugEnabled())
+					log.debug("Could not move " + absolutePath + " aside, deleting it in place", e);
+				deleteRecursively(absolutePath, log);
+			}
+		}
+		if (trash.isEmpty())
+			return;
+		Thread thread = new Thread(() ->
+		{
+			for (Path garbage : trash)
+			{
+				try
+				{
+					deleteRecursively(garbage, log);
+				}
+				catch (IOException e)
+				{
+					log.warn("Could not delete " + garbage, e);
+				}
+			}
+		}, "cmake-delete");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Deletes a path recursively on the caller's thread, retrying directories that cannot be deleted right
+	 * away.
+	 *
+	 * @param path the path to delete
+	 * @param log  the logger to report retries to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void deleteWithRetries(Path path, Log log) throws IOException
+	{
+		// This method is vulnerable to race-conditions, but it's the best we can do.
+		//
+		// BUG: http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=7148952
+		if (Files.notExists(path))
+			return;
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+			{
+				Files.deleteIfExists(file);
+				return super.visitFile(file, attrs);
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException
+			{
+				if (e instanceof NoSuchFileException)
+				{
+					// Deleted by someone else
+					return FileVisitResult.CONTINUE;
+				}
+				throw e;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException t) throws IOException
+			{
+				if (t == null)
+				{
+					for (int i = 0; true; ++i)
+					{
+						try
+						{
+							Files.deleteIfExists(dir);
+							break;
+						}
+						catch (DirectoryNotEmptyException e)
+						{
+							if (i < MAX_RETRIES)
+							{
+								// Workaround file lock preventing deletion on Windows
+								long timeout = Math.min(1000, (long) (10 * Math.pow(2, i)));
+								try
+								{
+									if (log.isInfoEnabled())
+									{
+										log.info(dir + " is locked... Sleeping before retry [" + (i + 1) + "/" +
+											MAX_RETRIES + "]");
+									}
+									TimeUnit.MILLISECONDS.sleep(timeout);
+									continue;
+								}
+								catch (InterruptedException ignore)
+								{
+									// give up
+								}
+							}
+							throw e;
+						}
+					}
+				}
+				return super.postVisitDirectory(dir, t);
+			}
+		});
+	}
+
+	/**
+	 * Deletes a directory, forking a task for each subdirectory and each batch of files.
+	 */
+	private static final class DeleteDirectory extends RecursiveAction
+	{
+		private static final long serialVersionUID = 0L;
+		/**
+		 * The number of files that a single task deletes.
+		 */
+		private static final int FILES_PER_TASK = 256;
+		private final Path directory;
+		private final Queue<Path> deferred;
+
+		/**
+		 * @param directory the directory to delete
+		 * @param deferred  the directories that could not be deleted right away
+		 */
+		DeleteDirectory(Path directory, Queue<Path> deferred)
+		{
+			this.directory = directory;
+			this.deferred = deferred;
+		}
+
+		@Override
+		protected void compute()
+		{
+			List<ForkJoinTask<?>> tasks = new ArrayList<>();
+			List<Path> files = new ArrayList<>();
+			try (DirectoryStream<Path> children = Files.newDirectoryStream(directory))
+			{
+				for (Path child : children)
+				{
+					if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS))
+						tasks.add(new DeleteDirectory(child, deferred));
+					else
+					{
+						files.add(child);
+						if (files.size() == FILES_PER_TASK)
+						{
+							tasks.add(deleteFiles(files));
+							files = new ArrayList<>();
+						}
+					}
+				}
+			}
+			catch (NoSuchFileException e)
+			{
+				// Deleted by someone else
+				return;
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			if (!files.isEmpty())
+				tasks.add(deleteFiles(files));
+			invokeAll(tasks);
+			try
+			{
+				Files.deleteIfExists(directory);
+			}
+			catch (DirectoryNotEmptyException | AccessDeniedException e)
+			{
+				// The directory is locked or someone else is writing to it. Try again at the end.
+				deferred.add(directory);
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * @param files the files to delete
+		 * @return a task that deletes the files
+		 */
+		private static ForkJoinTask<?> deleteFiles(List<Path> files)
+		{
+			return ForkJoinTask.adapt(() ->
+			{
+				for (Path file : files)
+				{
+					try
+					{
+						Files.deleteIfExists(file);
+					}
+					catch (IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private FileOperations()
+	{
+	}
+}
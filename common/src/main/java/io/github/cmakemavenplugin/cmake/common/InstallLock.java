@@ -0,0 +1,101 @@
+package io.github.cmakemavenplugin.cmake.common;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An exclusive lock on a directory that several builds may install into, such as a directory in the local
+ * repository.
+ * <p>
+ * Processes are serialized by locking a file next to the directory. {@code FileChannel.lock()} is held by the
+ * JVM as a whole, so threads of the same build, which may be running multiple modules in parallel, are
+ * serialized by a lock of their own.
+ */
+public final class InstallLock implements AutoCloseable
+{
+	private static final ConcurrentMap<Path, Lock> THREAD_LOCKS = new ConcurrentHashMap<>();
+	private final Lock threadLock;
+	private final FileChannel channel;
+
+	/**
+	 * @param threadLock the lock that is held by the current thread
+	 * @param channel    the file that is locked by the current process
+	 */
+	private InstallLock(Lock threadLock, FileChannel channel)
+	{
+		this.threadLock = threadLock;
+		this.channel = channel;
+	}
+
+	/**
+	 * Acquires the lock, blocking while another thread or process holds it.
+	 *
+	 * @param target the directory to install into
+	 * @param log    the logger to report waiting to
+	 * @return the lock
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an I/O error occurs
+	 */
+	public static InstallLock acquire(Path target, Log log) throws IOException
+	{
+		if (log == null)
+			throw new NullPointerException("log may not be null");
+		Path normalizedTarget = target.toAbsolutePath().normalize();
+		Files.createDirectories(normalizedTarget.getParent());
+		Lock threadLock = THREAD_LOCKS.computeIfAbsent(normalizedTarget, key -> new ReentrantLock());
+		threadLock.lock();
+		try
+		{
+			FileChannel channel = FileChannel.open(normalizedTarget.resolveSibling(normalizedTarget.getFileName() +
+				".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			try
+			{
+				if (channel.tryLock() == null)
+				{
+					if (log.isInfoEnabled())
+						log.info("Waiting for another build to install " + normalizedTarget);
+					channel.lock();
+				}
+				return new InstallLock(threadLock, channel);
+			}
+			catch (IOException | RuntimeException e)
+			{
+				channel.close();
+				throw e;
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			threadLock.unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Releases the lock.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			// Closing the channel releases the file lock
+			channel.close();
+		}
+		finally
+		{
+			threadLock.unlock();
+		}
+	}
+}
\ No newline at end of file
@@ -246,13 +246,25 @@ public final class Platform
 	 *                                       does not provide binaries for this platform
 	 */
 	public boolean supportsPosix(InputStream in)
+	{
+		return supportsPosix() && in instanceof ArchiveInputStream;
+	}
+
+	/**
+	 * Indicates if the platform supports POSIX attributes.
+	 *
+	 * @return true if the platform supports POSIX attributes
+	 * @throws UnsupportedOperationException if <a href="https://cmake.org/download/">CMake's website</a>
+	 *                                       does not provide binaries for this platform
+	 */
+	public boolean supportsPosix()
 	{
 		switch (operatingSystem)
 		{
 			case LINUX:
 			case OSX:
 			case FREEBSD:
-				return in instanceof ArchiveInputStream;
+				return true;
 			case WINDOWS:
 				return false;
 			default:
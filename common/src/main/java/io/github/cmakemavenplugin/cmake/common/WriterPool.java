@@ -0,0 +1,301 @@
+package io.github.cmakemavenplugin.cmake.common;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the filesystem writes of an extraction on a pool of threads while the caller keeps reading the
+ * archive.
+ * <p>
+ * File contents that are held in memory count against a fixed budget. Once the budget is exhausted, the
+ * reader blocks until the writers catch up. The number of queued tasks is bounded in the same way. Small files
+ * are grouped into batches to amortize the cost of handing work to another thread.
+ * <p>
+ * The first task that fails is reported by the next call that hands work to the pool, so that the caller stops
+ * reading the archive instead of queueing the rest of it.
+ * <p>
+ * If the pool has a single thread, tasks run immediately on the caller's thread.
+ */
+final class WriterPool implements AutoCloseable
+{
+	/**
+	 * A batch is handed to a writer once it holds this many bytes.
+	 */
+	private static final int BATCH_BYTES = 1024 * 1024;
+	/**
+	 * A batch is handed to a writer once it holds this many files.
+	 */
+	private static final int BATCH_FILES = 64;
+	/**
+	 * The number of tasks that may be queued or running per writer thread.
+	 */
+	private static final int TASKS_PER_THREAD = 16;
+	/**
+	 * {@code null} if tasks run on the caller's thread.
+	 */
+	private final ExecutorService executor;
+	private final int maxPendingBytes;
+	private final Semaphore pendingBytes;
+	private final Semaphore pendingTasks;
+	/**
+	 * The tasks that were handed to writers and whose completion was not checked yet.
+	 */
+	private final List<Future<Void>> futures = new ArrayList<>();
+	private final List<Task> batch = new ArrayList<>();
+	private int batchBytes;
+
+	/**
+	 * Creates a new pool.
+	 *
+	 * @param threads         the number of writer threads
+	 * @param maxPendingBytes the maximum number of bytes that may be held in memory waiting to be written
+	 */
+	WriterPool(int threads, int maxPendingBytes)
+	{
+		if (threads > 1)
+		{
+			this.executor = Executors.newFixedThreadPool(threads, runnable ->
+			{
+				Thread thread = new Thread(runnable, "cmake-extract");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		else
+			this.executor = null;
+		this.maxPendingBytes = maxPendingBytes;
+		this.pendingBytes = new Semaphore(maxPendingBytes);
+		this.pendingTasks = new Semaphore(threads * TASKS_PER_THREAD);
+	}
+
+	/**
+	 * @param size the size of a file, or a negative number if the size is unknown
+	 * @return {@code true} if the file may be read into memory and written by another thread; {@code false}
+	 * if the caller should write it directly
+	 */
+	boolean canBuffer(long size)
+	{
+		// Limit each file to a fraction of the budget so that large files do not starve the pipeline
+		return executor != null && size >= 0 && size <= maxPendingBytes / 4;
+	}
+
+	/**
+	 * Runs a task that does not hold any file contents in memory.
+	 *
+	 * @param task the task
+	 * @throws IOException if the task or an earlier task failed, or the thread is interrupted while waiting for a
+	 *                     writer
+	 */
+	void submit(Task task) throws IOException
+	{
+		if (executor == null)
+		{
+			task.run();
+			return;
+		}
+		execute(task);
+	}
+
+	/**
+	 * Reserves memory for the contents of a file, blocking until enough memory is available.
+	 *
+	 * @param size the number of bytes to reserve
+	 * @throws IOException if an earlier task failed or the thread is interrupted while waiting
+	 * @see #canBuffer(long)
+	 */
+	void reserve(int size) throws IOException
+	{
+		checkFinished();
+		if (pendingBytes.tryAcquire(size))
+			return;
+		// Writers cannot release memory held by tasks that were not handed to them yet
+		flushBatch();
+		acquire(pendingBytes, size);
+		// Memory is released as tasks complete, so one of them may have failed while we waited
+		checkFinished();
+	}
+
+	/**
+	 * Writes a file whose contents are held in memory. The memory is released once the file is written.
+	 *
+	 * @param task writes the file
+	 * @param size the number of bytes that were reserved using {@link #reserve(int)}
+	 * @throws IOException if an earlier task failed or the thread is interrupted while waiting for a writer
+	 */
+	void submitBuffered(Task task, int size) throws IOException
+	{
+		batch.add(task);
+		batchBytes += size;
+		if (batchBytes >= BATCH_BYTES || batch.size() >= BATCH_FILES)
+			flushBatch();
+	}
+
+	/**
+	 * Hands the current batch to a writer.
+	 *
+	 * @throws IOException if an earlier task failed or the thread is interrupted while waiting for a writer
+	 */
+	private void flushBatch() throws IOException
+	{
+		if (batch.isEmpty())
+			return;
+		List<Task> tasks = new ArrayList<>(batch);
+		int bytes = batchBytes;
+		batch.clear();
+		batchBytes = 0;
+		execute(() ->
+		{
+			try
+			{
+				for (Task task : tasks)
+					task.run();
+			}
+			finally
+			{
+				pendingBytes.release(bytes);
+			}
+		});
+	}
+
+	/**
+	 * Hands a task to a writer, blocking while too many tasks are queued.
+	 *
+	 * @param task the task
+	 * @throws IOException if an earlier task failed or the thread is interrupted while waiting
+	 */
+	private void execute(Task task) throws IOException
+	{
+		checkFinished();
+		acquire(pendingTasks, 1);
+		Callable<Void> callable = () ->
+		{
+			try
+			{
+				task.run();
+				return null;
+			}
+			finally
+			{
+				pendingTasks.release();
+			}
+		};
+		futures.add(executor.submit(callable));
+	}
+
+	/**
+	 * Forgets the tasks that completed successfully.
+	 *
+	 * @throws IOException if a task failed
+	 */
+	private void checkFinished() throws IOException
+	{
+		Iterator<Future<Void>> i = futures.iterator();
+		while (i.hasNext())
+		{
+			Future<Void> future = i.next();
+			if (!future.isDone())
+				continue;
+			i.remove();
+			get(future);
+		}
+	}
+
+	/**
+	 * Waits for all tasks to complete.
+	 *
+	 * @throws IOException if a task failed or the thread is interrupted while waiting
+	 */
+	void await() throws IOException
+	{
+		if (executor == null)
+			return;
+		flushBatch();
+		try
+		{
+			for (Future<Void> future : futures)
+				get(future);
+		}
+		finally
+		{
+			futures.clear();
+		}
+	}
+
+	/**
+	 * @param semaphore a semaphore
+	 * @param permits   the number of permits to acquire
+	 * @throws IOException if the thread is interrupted while waiting
+	 */
+	private static void acquire(Semaphore semaphore, int permits) throws IOException
+	{
+		try
+		{
+			semaphore.acquire(permits);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * Waits for a task to complete.
+	 *
+	 * @param future the task
+	 * @throws IOException if the task failed or the thread is interrupted while waiting
+	 */
+	private static void get(Future<Void> future) throws IOException
+	{
+		try
+		{
+			future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	/**
+	 * A filesystem operation.
+	 */
+	@FunctionalInterface
+	interface Task
+	{
+		/**
+		 * Runs the operation.
+		 *
+		 * @throws IOException if an I/O error occurs
+		 */
+		void run() throws IOException;
+	}
+}
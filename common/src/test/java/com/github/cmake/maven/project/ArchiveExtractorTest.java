@@ -0,0 +1,201 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor;
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor.Strategy;
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor.Transfer;
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.UnixStat;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ArchiveExtractorTest
+{
+	private static final String[] FORMATS = {"tar.gz", "tar", "zip"};
+	private final Log log = new SystemStreamLog();
+
+	/**
+	 * Every combination of options must produce the same files.
+	 */
+	@Test
+	public void allOptionsProduceTheSameFiles() throws IOException
+	{
+		Path directory = Files.createTempDirectory("cmake");
+		try
+		{
+			byte[] large = new byte[3 * 1024 * 1024 + 17];
+			new Random(0).nextBytes(large);
+			byte[] small = "hello world\n".getBytes();
+			for (String format : FORMATS)
+			{
+				Path archive = directory.resolve("archive." + format);
+				writeArchive(archive, large, small);
+				for (Strategy strategy : Strategy.values())
+				{
+					for (Transfer transfer : Transfer.values())
+					{
+						for (int threads : new int[]{1, 4})
+						{
+							String message = format + ", " + strategy + ", " + transfer + ", " + threads;
+							Path target = directory.resolve(message.replace(", ", "-"));
+							new ArchiveExtractor(Platform.detected(), log, 64 * 1024, strategy, transfer, threads).
+								extract(archive, target);
+							assertArrayEquals(large, Files.readAllBytes(target.resolve("top/bin/tool")), message);
+							assertArrayEquals(small, Files.readAllBytes(target.resolve("top/share/readme.txt")),
+								message);
+							assertEquals(0, Files.size(target.resolve("top/share/empty")), message);
+							if (Platform.detected().supportsPosix())
+							{
+								assertTrue(Files.getPosixFilePermissions(target.resolve("top/bin/tool")).
+									contains(PosixFilePermission.OWNER_EXECUTE), message);
+							}
+						}
+					}
+				}
+			}
+		}
+		finally
+		{
+			FileOperations.deleteRecursively(directory, log);
+		}
+	}
+
+	/**
+	 * A write that fails on a writer thread must fail the extraction.
+	 */
+	@Test
+	public void writeFailureIsReported() throws IOException
+	{
+		Path directory = Files.createTempDirectory("cmake");
+		try
+		{
+			byte[] large = new byte[3 * 1024 * 1024 + 17];
+			byte[] small = "hello world\n".getBytes();
+			for (String format : FORMATS)
+			{
+				Path archive = directory.resolve("archive." + format);
+				writeArchive(archive, large, small);
+				// A regular file where the archive's top-level directory belongs
+				Path target = directory.resolve("target-" + format);
+				Files.createDirectories(target);
+				Files.write(target.resolve("top"), small);
+				ArchiveExtractor extractor = new ArchiveExtractor(Platform.detected(), log, 64 * 1024,
+					Strategy.STREAMING, Transfer.CHANNEL_TRANSFER, 4);
+				assertThrows(IOException.class, () -> extractor.extract(archive, target), format);
+			}
+		}
+		finally
+		{
+			FileOperations.deleteRecursively(directory, log);
+		}
+	}
+
+	/**
+	 * @param archive the archive to write
+	 * @param large   the contents of a large executable
+	 * @param small   the contents of a small text file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeArchive(Path archive, byte[] large, byte[] small) throws IOException
+	{
+		String name = archive.getFileName().toString();
+		try (OutputStream file = Files.newOutputStream(archive))
+		{
+			if (name.endsWith(".zip"))
+			{
+				try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(file))
+				{
+					writeEntries(zip, large, small);
+				}
+			}
+			else if (name.endsWith(".tar.gz"))
+			{
+				try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+					new GzipCompressorOutputStream(file)))
+				{
+					writeEntries(tar, large, small);
+				}
+			}
+			else
+			{
+				try (TarArchiveOutputStream tar = new TarArchiveOutputStream(file))
+				{
+					writeEntries(tar, large, small);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param out   the archive to write to
+	 * @param large the contents of a large executable
+	 * @param small the contents of a small text file
+	 * @param <E>   the type of entries in the archive
+	 * @throws IOException if an I/O error occurs
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends ArchiveEntry> void writeEntries(ArchiveOutputStream<E> out, byte[] large,
+		byte[] small) throws IOException
+	{
+		for (String directory : Arrays.asList("top/", "top/bin/", "top/share/"))
+		{
+			out.putArchiveEntry((E) newEntry(out, directory, 0755, 0));
+			out.closeArchiveEntry();
+		}
+		out.putArchiveEntry((E) newEntry(out, "top/bin/tool", 0755, large.length));
+		out.write(large);
+		out.closeArchiveEntry();
+		out.putArchiveEntry((E) newEntry(out, "top/share/readme.txt", 0644, small.length));
+		out.write(small);
+		out.closeArchiveEntry();
+		out.putArchiveEntry((E) newEntry(out, "top/share/empty", 0644, 0));
+		out.closeArchiveEntry();
+	}
+
+	/**
+	 * @param out  the archive that the entry will be written to
+	 * @param name the name of the entry
+	 * @param mode the unix permissions of the entry
+	 * @param size the size of the entry
+	 * @return a new entry
+	 */
+	private static ArchiveEntry newEntry(ArchiveOutputStream<?> out, String name, int mode, long size)
+	{
+		boolean directory = name.endsWith("/");
+		if (out instanceof ZipArchiveOutputStream)
+		{
+			ZipArchiveEntry result = new ZipArchiveEntry(name);
+			if (directory)
+				result.setUnixMode(UnixStat.DIR_FLAG | mode);
+			else
+				result.setUnixMode(UnixStat.FILE_FLAG | mode);
+			return result;
+		}
+		TarArchiveEntry result = new TarArchiveEntry(name);
+		result.setMode(mode);
+		if (!directory)
+			result.setSize(size);
+		return result;
+	}
+}
@@ -0,0 +1,52 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.BlobStore;
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class BlobStoreTest
+{
+	private final Log log = new SystemStreamLog();
+
+	@Test
+	public void materializeStoredTree() throws IOException
+	{
+		Path directory = Files.createTempDirectory("cmake");
+		try
+		{
+			Path source = directory.resolve("source");
+			Files.createDirectories(source.resolve("bin"));
+			Files.createDirectories(source.resolve("empty"));
+			byte[] contents = "#!/bin/sh\n".getBytes();
+			Files.write(source.resolve("bin/cmake"), contents);
+			Files.write(source.resolve("bin/ctest"), contents);
+
+			BlobStore store = new BlobStore(directory.resolve("store"), Platform.detected(), log);
+			Path target = directory.resolve("target");
+			assertFalse(store.materialize("tree", target));
+			store.add("tree", source);
+			assertTrue(store.materialize("tree", target));
+			assertArrayEquals(contents, Files.readAllBytes(target.resolve("bin/cmake")));
+			assertArrayEquals(contents, Files.readAllBytes(target.resolve("bin/ctest")));
+			assertTrue(Files.isDirectory(target.resolve("empty")));
+			// Identical files are stored once. Other platforms copy them.
+			if (Platform.detected().supportsPosix())
+				assertTrue(Files.isSameFile(target.resolve("bin/cmake"), target.resolve("bin/ctest")));
+		}
+		finally
+		{
+			FileOperations.deleteRecursively(directory, log);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.Digests;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class DigestsTest
+{
+	private static final String ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+	@Test
+	public void string()
+	{
+		assertEquals(ABC, Digests.sha256("abc"));
+	}
+
+	@Test
+	public void file() throws IOException
+	{
+		Path file = Files.createTempFile("cmake", ".txt");
+		try
+		{
+			Files.write(file, "abc".getBytes(StandardCharsets.UTF_8));
+			assertEquals(ABC, Digests.sha256(file));
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void toHex()
+	{
+		assertEquals("00017f80ff", Digests.toHex(new byte[]{0, 1, 127, -128, -1}));
+	}
+}
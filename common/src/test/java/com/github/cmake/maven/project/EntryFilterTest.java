@@ -0,0 +1,37 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.EntryFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class EntryFilterTest
+{
+	@Test
+	public void excludesApplyToDirectoryContents()
+	{
+		EntryFilter filter = new EntryFilter(Collections.emptyList(),
+			Arrays.asList("*/doc", "*/share/cmake-*/Help", "**/bin/cmake-gui"));
+		assertFalse(filter.accepts("cmake-4.2.3-linux-x86_64/doc/"));
+		assertFalse(filter.accepts("cmake-4.2.3-linux-x86_64/doc/cmake-4.2/Copyright.txt"));
+		assertFalse(filter.accepts("cmake-4.2.3-linux-x86_64/share/cmake-4.2/Help/command/if.rst"));
+		assertFalse(filter.accepts("cmake-4.2.3-linux-x86_64/bin/cmake-gui"));
+		assertTrue(filter.accepts("cmake-4.2.3-linux-x86_64/bin/cmake"));
+		assertTrue(filter.accepts("cmake-4.2.3-linux-x86_64/share/cmake-4.2/Modules/FindJava.cmake"));
+	}
+
+	@Test
+	public void includesSelectEntries()
+	{
+		EntryFilter filter = new EntryFilter(Arrays.asList("**/bin/c*", "**/Modules"),
+			Collections.singletonList("**/*.txt"));
+		assertTrue(filter.accepts("top/bin/ctest"));
+		assertTrue(filter.accepts("top/share/cmake-4.2/Modules/FindJava.cmake"));
+		assertFalse(filter.accepts("top/share/cmake-4.2/Modules/readme.txt"));
+		assertFalse(filter.accepts("top/doc/cmake-4.2/Copyright.md"));
+	}
+}
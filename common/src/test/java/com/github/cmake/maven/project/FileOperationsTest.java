@@ -0,0 +1,61 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public final class FileOperationsTest
+{
+	private final Log log = new SystemStreamLog();
+
+	@Test
+	public void deleteRecursively() throws IOException
+	{
+		Path directory = Files.createTempDirectory("cmake");
+		createTree(directory);
+		FileOperations.deleteRecursively(directory, log);
+		assertFalse(Files.exists(directory));
+	}
+
+	@Test
+	public void deleteInBackground() throws IOException
+	{
+		Path parent = Files.createTempDirectory("cmake");
+		try
+		{
+			Path directory = parent.resolve("tree");
+			createTree(directory);
+			FileOperations.deleteInBackground(directory, log);
+			// The path may be reused as soon as the method returns
+			assertFalse(Files.exists(directory));
+		}
+		finally
+		{
+			FileOperations.deleteRecursively(parent, log);
+		}
+	}
+
+	/**
+	 * Creates nested directories containing enough files to be split across multiple tasks.
+	 *
+	 * @param root the directory to populate
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void createTree(Path root) throws IOException
+	{
+		for (int i = 0; i < 4; ++i)
+		{
+			Path directory = Files.createDirectories(root.resolve("dir" + i).resolve("nested"));
+			for (int j = 0; j < 300; ++j)
+				Files.write(directory.resolve("file" + j), new byte[]{(byte) j});
+			Files.createDirectories(root.resolve("dir" + i).resolve("empty"));
+		}
+	}
+}
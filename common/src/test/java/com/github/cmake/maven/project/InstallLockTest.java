@@ -0,0 +1,62 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.common.InstallLock;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class InstallLockTest
+{
+	private final Log log = new SystemStreamLog();
+
+	/**
+	 * Threads of the same JVM must take turns, even though they share the JVM's file lock.
+	 */
+	@Test
+	public void threadsTakeTurns() throws IOException, InterruptedException, ExecutionException,
+		TimeoutException
+	{
+		Path directory = Files.createTempDirectory("cmake");
+		try
+		{
+			Path target = directory.resolve("installations/cmake");
+			CompletableFuture<Void> other;
+			try (InstallLock ignored = InstallLock.acquire(target, log))
+			{
+				assertTrue(Files.exists(directory.resolve("installations/cmake.lock")));
+				other = CompletableFuture.runAsync(() ->
+				{
+					// The same directory, spelled differently
+					try (InstallLock ignored2 = InstallLock.acquire(target.resolve("../cmake"), log))
+					{
+						log.info("Acquired the lock on the second thread");
+					}
+					catch (IOException e)
+					{
+						throw new AssertionError(e);
+					}
+				});
+				assertThrows(TimeoutException.class, () -> other.get(200, TimeUnit.MILLISECONDS));
+				assertFalse(other.isDone());
+			}
+			other.get(10, TimeUnit.SECONDS);
+		}
+		finally
+		{
+			FileOperations.deleteRecursively(directory, log);
+		}
+	}
+}
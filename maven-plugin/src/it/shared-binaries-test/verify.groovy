@@ -0,0 +1,22 @@
+// cmake.org does not provide binaries for ARMv6, so the plugin uses the ones on the PATH
+if (System.getProperty("os.arch") == "arm")
+	return true
+
+for (String module : ["first", "second"])
+{
+	File cache = new File(basedir, module + "/target/cmake/CMakeCache.txt")
+	assert cache.isFile(): cache
+}
+
+File installations = new File(localRepositoryPath, ".cache/cmake-maven-plugin/installations")
+assert installations.isDirectory(): installations
+File[] artifacts = installations.listFiles({ File file -> file.isDirectory() } as FileFilter)
+assert artifacts.length == 1: artifacts
+// A single build of the archive, and no staging directories left behind by either build
+File[] builds = artifacts[0].listFiles({ File file -> file.isDirectory() } as FileFilter)
+assert builds.length == 1: builds
+assert new File(builds[0], "bin").isDirectory()
+
+String log = new File(basedir, "build.log").getText("UTF-8")
+assert log.count("Unpacking ") <= 1: "The binaries were unpacked more than once"
+return true
@@ -0,0 +1,121 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A timeline of parallel jobs in the Chrome Trace Event format, viewable in {@code about:tracing} or
+ * <a href="https://ui.perfetto.dev">Perfetto</a>.
+ * <p>
+ * Each job is placed in the first lane that is idle when it starts, so the number of lanes matches the number
+ * of jobs that ran concurrently. Gaps in a lane show idle worker slots.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @see <a href="https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU">Trace Event
+ * Format</a>
+ */
+public final class ChromeTrace
+{
+	private final List<Job> jobs = new ArrayList<>();
+
+	/**
+	 * Adds a job.
+	 *
+	 * @param name     the name of the job
+	 * @param category the category of the job
+	 * @param start    the time the job started, in microseconds
+	 * @param end      the time the job ended, in microseconds
+	 */
+	public void add(String name, String category, long start, long end)
+	{
+		jobs.add(new Job(name, category, start, Math.max(start, end)));
+	}
+
+	/**
+	 * @return {@code true} if no jobs were added
+	 */
+	public boolean isEmpty()
+	{
+		return jobs.isEmpty();
+	}
+
+	/**
+	 * Writes the timeline.
+	 *
+	 * @param path the file to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void write(Path path) throws IOException
+	{
+		jobs.sort(Comparator.comparingLong((Job job) -> job.start).thenComparingLong(job -> job.end));
+		// The time that each lane becomes idle
+		List<Long> lanes = new ArrayList<>();
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectNode root = mapper.createObjectNode();
+		root.put("displayTimeUnit", "ms");
+		ArrayNode events = root.putArray("traceEvents");
+		for (Job job : jobs)
+		{
+			int lane = 0;
+			while (lane < lanes.size() && lanes.get(lane) > job.start)
+				++lane;
+			if (lane == lanes.size())
+				lanes.add(job.end);
+			else
+				lanes.set(lane, job.end);
+			ObjectNode event = events.addObject();
+			event.put("name", job.name);
+			event.put("cat", job.category);
+			event.put("ph", "X");
+			event.put("ts", job.start);
+			event.put("dur", job.end - job.start);
+			event.put("pid", 1);
+			event.put("tid", lane);
+		}
+		for (int lane = 0; lane < lanes.size(); ++lane)
+		{
+			ObjectNode event = events.addObject();
+			event.put("name", "thread_name");
+			event.put("ph", "M");
+			event.put("pid", 1);
+			event.put("tid", lane);
+			event.putObject("args").put("name", "slot " + lane);
+		}
+		Files.createDirectories(path.getParent());
+		mapper.writeValue(path.toFile(), root);
+	}
+
+	/**
+	 * A job.
+	 */
+	private static final class Job
+	{
+		final String name;
+		final String category;
+		final long start;
+		final long end;
+
+		/**
+		 * @param name     the name of the job
+		 * @param category the category of the job
+		 * @param start    the time the job started, in microseconds
+		 * @param end      the time the job ended, in microseconds
+		 */
+		Job(String name, String category, long start, long end)
+		{
+			this.name = name;
+			this.category = category;
+			this.start = start;
+			this.end = end;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor;
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor.Strategy;
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor.Transfer;
+import io.github.cmakemavenplugin.cmake.common.BlobStore;
+import io.github.cmakemavenplugin.cmake.common.EntryFilter;
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.common.InstallLock;
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code cmake-binaries} installation shared by all modules of a build.
+ * <p>
+ * The artifact is resolved and unpacked at most once per Maven session. Modules that build concurrently
+ * wait for the first one to finish instead of unpacking the binaries themselves.
+ * <p>
+ * Installations live in the local repository, where other builds may be using them. Each version of the
+ * archive is unpacked into a directory of its own, which is published atomically and never deleted, so a
+ * build that installs an updated snapshot cannot pull the binaries out from under one that is running the
+ * previous snapshot. Builds that install the same version at the same time take turns.
+ */
+final class CmakeBinaries
+{
+	/**
+	 * Skips the jar's metadata.
+	 */
+	private static final EntryFilter BINARIES_FILTER = new EntryFilter(Collections.emptyList(),
+		Collections.singletonList("META-INF"));
+	private static final Pattern VERSION = Pattern.compile("cmake version (\\S+)");
+	private final Path binDirectory;
+	private final String version;
+
+	/**
+	 * @param binDirectory the directory containing the executables
+	 * @param version      the version reported by {@code cmake --version}
+	 */
+	private CmakeBinaries(Path binDirectory, String version)
+	{
+		this.binDirectory = binDirectory;
+		this.version = version;
+	}
+
+	/**
+	 * Returns the binaries, installing them if this is the first request of the session.
+	 *
+	 * @param session          an instance of {@code MavenSession}
+	 * @param repositorySystem an instance of {@code RepositorySystem}
+	 * @param repositories     the repositories to resolve the artifact from
+	 * @param artifact         the {@code cmake-binaries} artifact for the current platform
+	 * @param platform         the current platform
+	 * @param log              the logger to report progress to
+	 * @param span             the span to record the installation in
+	 * @return the binaries
+	 * @throws MojoExecutionException if the binaries could not be installed
+	 */
+	public static CmakeBinaries get(MavenSession session, RepositorySystem repositorySystem,
+		List<RemoteRepository> repositories, Artifact artifact, Platform platform, Log log, Span span)
+		throws MojoExecutionException
+	{
+		String key = CmakeBinaries.class.getName() + ":" + artifact;
+		CompletableFuture<CmakeBinaries> candidate = new CompletableFuture<>();
+		@SuppressWarnings("unchecked")
+		CompletableFuture<CmakeBinaries> future = (CompletableFuture<CmakeBinaries>) session.
+			getRepositorySession().getData().computeIfAbsent(key, () -> candidate);
+		if (future == candidate)
+		{
+			try
+			{
+				candidate.complete(install(session, repositorySystem, repositories, artifact, platform, log, span));
+			}
+			catch (Throwable t)
+			{
+				// Other threads wait for the future, so it must complete even if an Error is thrown
+				candidate.completeExceptionally(t);
+				if (t instanceof Error)
+					throw (Error) t;
+			}
+		}
+		// Goals that reuse an earlier installation record the time spent waiting for it
+		span.setAttribute("cmake.binaries.installed", future == candidate);
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while waiting for the binaries", e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof MojoExecutionException)
+				throw (MojoExecutionException) cause;
+			throw new MojoExecutionException("Could not install the binaries", cause);
+		}
+	}
+
+	/**
+	 * Resolves and unpacks the binaries.
+	 *
+	 * @param session          an instance of {@code MavenSession}
+	 * @param repositorySystem an instance of {@code RepositorySystem}
+	 * @param repositories     the repositories to resolve the artifact from
+	 * @param artifact         the {@code cmake-binaries} artifact for the current platform
+	 * @param platform         the current platform
+	 * @param log              the logger to report progress to
+	 * @param span             the span to record the installation in
+	 * @return the binaries
+	 * @throws MojoExecutionException if the binaries could not be installed
+	 */
+	private static CmakeBinaries install(MavenSession session, RepositorySystem repositorySystem,
+		List<RemoteRepository> repositories, Artifact artifact, Platform platform, Log log, Span span)
+		throws MojoExecutionException
+	{
+		ArtifactRequest request = new ArtifactRequest(artifact, repositories, null);
+		Artifact resolved;
+		try (Span resolveSpan = span.child("resolve"))
+		{
+			resolved = repositorySystem.resolveArtifact(session.getRepositorySession(), request).getArtifact();
+		}
+		catch (ArtifactResolutionException e)
+		{
+			throw new MojoExecutionException("Could not resolve " + artifact, e);
+		}
+		Path archive = resolved.getFile().toPath();
+		Path cache = session.getRepositorySession().getLocalRepository().getBasedir().toPath().
+			resolve(BlobStore.CACHE);
+		Path installation = null;
+		try
+		{
+			// Include the file's size and timestamp so that updated snapshots are unpacked again
+			long size = Files.size(archive);
+			long lastModified = Files.getLastModifiedTime(archive).toMillis();
+			String key = resolved + ":" + size + ":" + lastModified;
+			installation = cache.resolve("installations").resolve(resolved.getArtifactId() + "-" +
+				resolved.getVersion() + "-" + resolved.getClassifier()).resolve(size + "-" + lastModified);
+			// Installations are only ever published complete, so one that exists is ready to use
+			if (Files.notExists(installation))
+			{
+				try (InstallLock ignored = InstallLock.acquire(installation, log))
+				{
+					if (Files.notExists(installation))
+						publish(key, archive, installation, cache, platform, log, span);
+				}
+			}
+			Path binDirectory = installation.resolve("bin");
+			String version = getVersion(binDirectory.resolve("cmake" + platform.getExecutableSuffix()));
+			if (log.isInfoEnabled())
+				log.info("Using CMake " + version + " in " + installation);
+			return new CmakeBinaries(binDirectory, version);
+		}
+		catch (IOException e)
+		{
+			if (installation == null)
+				throw new MojoExecutionException("Could not read " + archive, e);
+			throw new MojoExecutionException("Could not install the binaries in " + installation, e);
+		}
+	}
+
+	/**
+	 * Unpacks the binaries into a staging directory, then renames it to the installation directory.
+	 * <p>
+	 * The caller must hold the installation lock.
+	 *
+	 * @param key          identifies the contents of the archive
+	 * @param archive      the {@code cmake-binaries} jar
+	 * @param installation the directory to install into
+	 * @param cache        the directory containing the blob store
+	 * @param platform     the current platform
+	 * @param log          the logger to report progress to
+	 * @param span         the span to record the installation in
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void publish(String key, Path archive, Path installation, Path cache, Platform platform,
+		Log log, Span span) throws IOException
+	{
+		String stagingPrefix = installation.getFileName() + ".staging-";
+		// Any staging directory that exists while we hold the lock belongs to a build that was killed
+		try (DirectoryStream<Path> siblings = Files.newDirectoryStream(installation.getParent(),
+			sibling -> sibling.getFileName().toString().startsWith(stagingPrefix)))
+		{
+			for (Path sibling : siblings)
+				FileOperations.deleteRecursively(sibling, log);
+		}
+		Path staging = Files.createTempDirectory(installation.getParent(), stagingPrefix);
+		try
+		{
+			try (Span unpackSpan = span.child("unpack"))
+			{
+				unpackSpan.setAttribute("cmake.binaries.archive", archive.toString());
+				unpack(key, archive, staging, cache, platform, log);
+			}
+			Files.move(staging, installation, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			FileOperations.deleteRecursively(staging, log);
+			throw e;
+		}
+	}
+
+	/**
+	 * Unpacks the binaries, hard-linking files that are already in the blob store.
+	 *
+	 * @param key      identifies the contents of the archive
+	 * @param archive  the {@code cmake-binaries} jar
+	 * @param target   the directory to unpack into
+	 * @param cache    the directory containing the blob store
+	 * @param platform the current platform
+	 * @param log      the logger to report progress to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void unpack(String key, Path archive, Path target, Path cache, Platform platform, Log log)
+		throws IOException
+	{
+		BlobStore store = new BlobStore(cache, platform, log);
+		if (store.materialize(key, target))
+			return;
+		if (log.isInfoEnabled())
+			log.info("Unpacking " + archive);
+		new ArchiveExtractor(platform, log, ArchiveExtractor.DEFAULT_BUFFER_SIZE, Strategy.STREAMING,
+			Transfer.CHANNEL_TRANSFER, Runtime.getRuntime().availableProcessors(), BINARIES_FILTER).
+			extract(archive, target);
+		store.add(key, target);
+	}
+
+	/**
+	 * @param cmake the path of the {@code cmake} executable
+	 * @return the version reported by {@code cmake --version}
+	 * @throws IOException if the version could not be determined
+	 */
+	private static String getVersion(Path cmake) throws IOException
+	{
+		ProcessBuilder processBuilder = new ProcessBuilder(cmake.toString(), "--version").
+			redirectErrorStream(true);
+		Process process = processBuilder.start();
+		StringBuilder output = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+			StandardCharsets.UTF_8)))
+		{
+			while (true)
+			{
+				String line = reader.readLine();
+				if (line == null)
+					break;
+				output.append(line).append('\n');
+			}
+		}
+		try
+		{
+			int exitCode = process.waitFor();
+			if (exitCode != 0)
+				throw new IOException(cmake + " --version returned " + exitCode + ":\n" + output);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		Matcher matcher = VERSION.matcher(output);
+		if (!matcher.find())
+			throw new IOException("Unexpected output from " + cmake + " --version:\n" + output);
+		return matcher.group(1);
+	}
+
+	/**
+	 * @return the directory containing the executables
+	 */
+	public Path getBinDirectory()
+	{
+		return binDirectory;
+	}
+
+	/**
+	 * @return the version of CMake
+	 */
+	public String getVersion()
+	{
+		return version;
+	}
+}
@@ -2,29 +2,40 @@ package io.github.cmakemavenplugin.cmake.maven.plugin;
 
 import io.github.cmakemavenplugin.cmake.common.Platform;
 import org.apache.maven.execution.MavenSession;
-import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.AbstractMojo;
-import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.twdata.maven.mojoexecutor.MojoExecutor;
-import org.twdata.maven.mojoexecutor.MojoExecutor.Element;
-import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 public abstract class CmakeMojo extends AbstractMojo
 {
+	/**
+	 * The key of the session's {@code traceparent} in {@code SessionData}.
+	 */
+	private static final String TRACEPARENT = CmakeMojo.class.getName() + ".traceparent";
+	/**
+	 * The maximum value of {@link #quietBufferSize}.
+	 */
+	private static final int MAX_QUIET_BUFFER_SIZE = 1024;
 	/**
 	 * {@code true} if this plugin should download and unpack cmake binaries. {@code false} if {@code cmake} is
 	 * already installed and is on the {@code PATH}. The default value is {@code true} on platforms that ship
@@ -48,76 +59,181 @@ public abstract class CmakeMojo extends AbstractMojo
 	 */
 	@Parameter
 	private List<String> options;
+	/**
+	 * {@code true} if compiler and CMake diagnostics should be summarized in
+	 * {@code ${project.build.directory}/cmake-diagnostics/<goal>-<execution>.sarif}.
+	 */
+	@Parameter(property = "cmake.diagnostics", defaultValue = "true")
+	private boolean diagnostics;
+	/**
+	 * {@code true} if the output of cmake and ctest should only be logged if they fail. Progress and summary
+	 * lines are still logged.
+	 */
+	@Parameter(property = "cmake.quiet", defaultValue = "false")
+	private boolean quiet;
+	/**
+	 * The number of megabytes of output to retain in quiet mode, between 1 and 1024. If the output is larger,
+	 * only the end of it is logged on failure.
+	 */
+	@Parameter(property = "cmake.quiet.bufferSize", defaultValue = "4")
+	private int quietBufferSize;
+	/**
+	 * {@code true} if the wall time, CPU time, peak memory and number of processes used by cmake and ctest
+	 * should be logged and written to {@code ${project.build.directory}/cmake-metrics/<goal>-<execution>.json}.
+	 * Only the wall time is measured on platforms other than Linux.
+	 */
+	@Parameter(property = "cmake.metrics", defaultValue = "true")
+	private boolean metrics;
+	/**
+	 * {@code true} if the goal should be traced. Traces are written in OTLP/JSON format to
+	 * {@code ${project.build.directory}/cmake-traces/<goal>-<execution>.json}. All goals of a build share the
+	 * same trace, which is nested under the {@code TRACEPARENT} environment variable if it is set.
+	 */
+	@Parameter(property = "cmake.trace", defaultValue = "false")
+	private boolean trace;
+	/**
+	 * The OTLP/HTTP endpoint of a collector to send traces to, such as
+	 * {@code http://localhost:4318/v1/traces}. Traces are only written to disk by default.
+	 */
+	@Parameter(property = "cmake.trace.endpoint")
+	private URL traceEndpoint;
+	@Parameter(defaultValue = "${mojoExecution}", readonly = true)
+	private MojoExecution mojoExecution;
 
 	protected final MavenProject project;
-	private final BuildPluginManager pluginManager;
+	private final RepositorySystem repositorySystem;
 	private final MavenSession session;
 	private final Platform platform = Platform.detected();
+	/**
+	 * The downloaded binaries; {@code null} if they have not been downloaded.
+	 */
+	private CmakeBinaries binaries;
+	/**
+	 * The span of the current goal.
+	 */
+	private Span span;
 
 	/**
 	 * Creates a new instance.
 	 *
-	 * @param project       an instance of {@code MavenProject}
-	 * @param session       an instance of {@code MavenSession}
-	 * @param pluginManager an instance of {@code PluginManager}
+	 * @param project          an instance of {@code MavenProject}
+	 * @param session          an instance of {@code MavenSession}
+	 * @param repositorySystem an instance of {@code RepositorySystem}
 	 */
 	@Inject
-	public CmakeMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	public CmakeMojo(MavenProject project, MavenSession session, RepositorySystem repositorySystem)
 	{
 		this.project = project;
-		this.pluginManager = pluginManager;
+		this.repositorySystem = repositorySystem;
 		this.session = session;
 	}
 
 	@Override
 	public void execute() throws MojoExecutionException
 	{
+		if (quiet && (quietBufferSize < 1 || quietBufferSize > MAX_QUIET_BUFFER_SIZE))
+		{
+			throw new MojoExecutionException("cmake.quiet.bufferSize must be between 1 and " +
+				MAX_QUIET_BUFFER_SIZE + " megabytes: " + quietBufferSize);
+		}
 		if (downloadBinaries == null)
 			downloadBinaries = !platform.shipsWithBinaries();
+		String traceparent = (String) session.getRepositorySession().getData().computeIfAbsent(TRACEPARENT, () ->
+		{
+			String value = System.getenv("TRACEPARENT");
+			if (Span.isValidTraceparent(value))
+				return value;
+			return Span.newTraceparent();
+		});
+		span = Span.start(mojoExecution.getGoal(), traceparent).
+			setAttribute("maven.project", project.getGroupId() + ":" + project.getArtifactId()).
+			setAttribute("maven.execution_id", mojoExecution.getExecutionId());
+		try
+		{
+			run();
+		}
+		catch (MojoExecutionException | RuntimeException e)
+		{
+			span.setError(e.toString());
+			throw e;
+		}
+		finally
+		{
+			span.close();
+			if (trace)
+				exportTrace();
+		}
 	}
 
 	/**
-	 * Downloads cmake if necessary.
+	 * Runs the goal.
 	 *
-	 * @throws MojoExecutionException if the download fails
+	 * @throws MojoExecutionException if the goal fails
 	 */
-	protected void downloadBinariesIfNecessary() throws MojoExecutionException
+	protected abstract void run() throws MojoExecutionException;
+
+	/**
+	 * @return the span of the current goal
+	 */
+	protected Span getSpan()
+	{
+		return span;
+	}
+
+	/**
+	 * @param directory the name of the report directory, relative to {@code ${project.build.directory}}
+	 * @param extension the file extension, including the leading dot
+	 * @return the path of the current goal's report
+	 */
+	protected Path getReportPath(String directory, String extension)
+	{
+		return Paths.get(project.getBuild().getDirectory(), directory,
+			mojoExecution.getGoal() + "-" + mojoExecution.getExecutionId() + extension);
+	}
+
+	/**
+	 * Exports the span of the current goal.
+	 */
+	private void exportTrace()
 	{
 		Log log = getLog();
-		log.debug("downloadBinaries: " + downloadBinaries);
-		if (!downloadBinaries)
-			return;
-		Path outputDirectory = Paths.get(project.getBuild().getDirectory(), "dependency/cmake");
-		downloadBinaries(outputDirectory);
+		Map<String, Object> resource = new LinkedHashMap<>();
+		resource.put("service.name", "cmake-maven-plugin");
+		resource.put("cmake.platform", platform.getClassifier());
+		try
+		{
+			byte[] request = OtlpExporter.toJson(span, resource);
+			Path path = getReportPath("cmake-traces", ".json");
+			OtlpExporter.write(request, path);
+			if (traceEndpoint != null)
+				OtlpExporter.send(request, traceEndpoint, log);
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not export the trace", e);
+		}
 	}
 
 	/**
-	 * Downloads cmake.
+	 * Downloads cmake if necessary.
 	 *
-	 * @param outputDirectory the directory to download into
 	 * @throws MojoExecutionException if the download fails
 	 */
-	private void downloadBinaries(Path outputDirectory)
-		throws MojoExecutionException
+	protected void downloadBinariesIfNecessary() throws MojoExecutionException
 	{
-		getLog().info("Downloading binaries to " + outputDirectory);
+		Log log = getLog();
+		log.debug("downloadBinaries: " + downloadBinaries);
+		if (!downloadBinaries)
+			return;
 		PluginDescriptor pluginDescriptor = (PluginDescriptor) getPluginContext().get("pluginDescriptor");
-		String groupId = pluginDescriptor.getGroupId();
-		String version = pluginDescriptor.getVersion();
-		String binariesArtifact = "cmake-binaries";
-		Element groupIdElement = new Element("groupId", groupId);
-		Element artifactIdElement = new Element("artifactId", binariesArtifact);
-		Element versionElement = new Element("version", version);
-		Element classifierElement = new Element("classifier", platform.getClassifier());
-		Element outputDirectoryElement = new Element("outputDirectory", outputDirectory.toString());
-		Element artifactItemElement = new Element("artifactItem", groupIdElement, artifactIdElement,
-			versionElement, classifierElement, outputDirectoryElement);
-		Element artifactItemsItem = new Element("artifactItems", artifactItemElement);
-		Xpp3Dom configuration = MojoExecutor.configuration(artifactItemsItem);
-		ExecutionEnvironment environment = MojoExecutor.executionEnvironment(project, session, pluginManager);
-		Plugin dependencyPlugin = MojoExecutor.plugin("org.apache.maven.plugins",
-			"maven-dependency-plugin", "3.6.1");
-		MojoExecutor.executeMojo(dependencyPlugin, "unpack", configuration, environment);
+		Artifact artifact = new DefaultArtifact(pluginDescriptor.getGroupId(), "cmake-binaries",
+			platform.getClassifier(), "jar", pluginDescriptor.getVersion());
+		try (Span binariesSpan = span.child("cmake-binaries"))
+		{
+			binariesSpan.setAttribute("cmake.binaries.artifact", artifact.toString());
+			binaries = CmakeBinaries.get(session, repositorySystem, project.getRemoteProjectRepositories(),
+				artifact, platform, log, binariesSpan);
+		}
 	}
 
 	/**
@@ -156,15 +272,159 @@ public abstract class CmakeMojo extends AbstractMojo
 		Log log = getLog();
 		log.debug("downloadBinaries: " + downloadBinaries);
 		if (downloadBinaries)
-		{
-			Path outputDirectory = Paths.get(project.getBuild().getDirectory(), "dependency/cmake");
-			return outputDirectory.resolve("bin");
-		}
+			return binaries.getBinDirectory();
 		if (cmakeDir == null)
 			return null;
 		return Paths.get(cmakeDir);
 	}
 
+	/**
+	 * Launches and waits for a process to complete, collecting the diagnostics in its output and measuring the
+	 * resources it uses. In quiet mode, the output is only logged if the process fails.
+	 *
+	 * @param processBuilder the process builder
+	 * @return the process exit code
+	 * @throws IOException          if an I/O error occurs while running the process
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected int waitFor(ProcessBuilder processBuilder) throws IOException, InterruptedException
+	{
+		return waitFor(processBuilder, ProcessListener.NONE);
+	}
+
+	/**
+	 * Launches and waits for a process to complete, collecting the diagnostics in its output and measuring the
+	 * resources it uses. In quiet mode, the output is only logged if the process fails.
+	 *
+	 * @param processBuilder the process builder
+	 * @param listener       observes the process's output
+	 * @return the process exit code
+	 * @throws IOException          if an I/O error occurs while running the process
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	protected int waitFor(ProcessBuilder processBuilder, ProcessListener listener)
+		throws IOException, InterruptedException
+	{
+		Log log = getLog();
+		QuietOutput quietOutput;
+		if (quiet)
+			quietOutput = new QuietOutput(log, Math.multiplyExact(quietBufferSize, 1024 * 1024));
+		else
+			quietOutput = null;
+		List<ProcessListener> listeners = new ArrayList<>();
+		listeners.add(listener);
+		DiagnosticsParser parser;
+		if (diagnostics)
+		{
+			parser = new DiagnosticsParser();
+			listeners.add(parser);
+		}
+		else
+			parser = null;
+		ProcessMetrics processMetrics;
+		if (metrics)
+		{
+			processMetrics = new ProcessMetrics();
+			listeners.add(processMetrics);
+		}
+		else
+			processMetrics = null;
+		int result;
+		try (Span processSpan = span.child("process"))
+		{
+			processSpan.setAttribute("process.executable.name",
+				Paths.get(processBuilder.command().get(0)).getFileName().toString());
+			listeners.add(new ProcessTracer(processSpan));
+			result = Mojos.waitFor(processBuilder, log, ProcessListener.of(listeners.toArray(
+				new ProcessListener[0])), quietOutput);
+			processSpan.setAttribute("process.exit_code", result);
+			if (result != 0)
+				processSpan.setError("Exit code: " + result);
+		}
+		if (parser != null)
+		{
+			parser.finish();
+			if (parser.getErrors() > 0 || parser.getWarnings() > 0)
+			{
+				Path report = getReportPath("cmake-diagnostics", ".sarif");
+				parser.writeSarif(report);
+				if (log.isInfoEnabled())
+				{
+					log.info(parser.getErrors() + " errors, " + parser.getWarnings() + " warnings (" +
+						parser.getUniqueDiagnostics() + " unique). Report: " + report);
+				}
+			}
+		}
+		if (processMetrics != null)
+		{
+			Path report = getReportPath("cmake-metrics", ".json");
+			processMetrics.writeJson(report, processBuilder);
+			if (log.isInfoEnabled())
+				log.info(processMetrics.getSummary());
+		}
+		return result;
+	}
+
+	/**
+	 * Records the time it takes to launch a process and to read its output.
+	 */
+	private static final class ProcessTracer implements ProcessListener
+	{
+		private final Span parent;
+		private final Span launch;
+		/**
+		 * {@code null} until the process starts.
+		 */
+		private Span output;
+
+		/**
+		 * @param parent the span of the process
+		 */
+		ProcessTracer(Span parent)
+		{
+			this.parent = parent;
+			this.launch = parent.child("launch");
+		}
+
+		@Override
+		public void onStart(Process process)
+		{
+			launch.close();
+			output = parent.child("output");
+		}
+
+		@Override
+		public void onLine(String line)
+		{
+		}
+
+		@Override
+		public void onExit(int exitCode)
+		{
+			if (output != null)
+				output.close();
+		}
+	}
+
+	/**
+	 * Returns the presets of a project. The presets are parsed at most once per Maven session.
+	 *
+	 * @param sourceDirectory the directory containing {@code CMakePresets.json}
+	 * @return the presets
+	 * @throws MojoExecutionException if the presets could not be read
+	 */
+	protected CmakePresets getPresets(File sourceDirectory) throws MojoExecutionException
+	{
+		try
+		{
+			return CmakePresets.get(session, sourceDirectory.toPath());
+		}
+		catch (IOException e)
+		{
+			throw new MojoExecutionException("Could not read the presets in " + sourceDirectory, e);
+		}
+	}
+
 	/**
 	 * Adds command-line options to the processBuilder.
 	 *
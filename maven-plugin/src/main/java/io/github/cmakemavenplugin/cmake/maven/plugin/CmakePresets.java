@@ -0,0 +1,435 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import org.apache.maven.execution.MavenSession;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The contents of a project's {@code CMakePresets.json} and {@code CMakeUserPresets.json} files.
+ *
+ * @see <a href="https://cmake.org/cmake/help/latest/manual/cmake-presets.7.html">cmake-presets</a>
+ */
+public final class CmakePresets
+{
+	/**
+	 * The kind of preset used to configure a project.
+	 */
+	public static final String CONFIGURE = "configurePresets";
+	/**
+	 * The kind of preset used to build a project.
+	 */
+	public static final String BUILD = "buildPresets";
+	/**
+	 * The kind of preset used to test a project.
+	 */
+	public static final String TEST = "testPresets";
+	private static final Pattern MACRO = Pattern.compile("\\$(env|penv|)\\{([^}]*)}");
+	private final Path sourceDirectory;
+	/**
+	 * Maps each kind of preset to the presets of that kind, indexed by name.
+	 */
+	private final Map<String, Map<String, Preset>> presets;
+
+	/**
+	 * Returns the presets of a project, parsing them at most once per Maven session.
+	 *
+	 * @param session         an instance of {@code MavenSession}
+	 * @param sourceDirectory the directory containing {@code CMakePresets.json}
+	 * @return the presets
+	 * @throws IOException if an I/O error occurs while reading the presets
+	 */
+	public static CmakePresets get(MavenSession session, Path sourceDirectory) throws IOException
+	{
+		Path normalizedDirectory = sourceDirectory.toAbsolutePath().normalize();
+		String key = CmakePresets.class.getName() + ":" + normalizedDirectory;
+		try
+		{
+			return (CmakePresets) session.getRepositorySession().getData().computeIfAbsent(key, () ->
+			{
+				try
+				{
+					return load(normalizedDirectory);
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Parses the presets of a project.
+	 *
+	 * @param sourceDirectory the directory containing {@code CMakePresets.json}
+	 * @return the presets
+	 * @throws IOException if an I/O error occurs while reading the presets
+	 */
+	public static CmakePresets load(Path sourceDirectory) throws IOException
+	{
+		Path presetsFile = sourceDirectory.resolve("CMakePresets.json");
+		if (Files.notExists(presetsFile))
+			throw new IOException(presetsFile + " does not exist");
+		Map<String, Map<String, Preset>> presets = new HashMap<>();
+		ObjectMapper mapper = new ObjectMapper();
+		Set<Path> visited = new HashSet<>();
+		parse(mapper, presetsFile, presets, visited);
+		Path userPresetsFile = sourceDirectory.resolve("CMakeUserPresets.json");
+		if (Files.exists(userPresetsFile))
+			parse(mapper, userPresetsFile, presets, visited);
+		return new CmakePresets(sourceDirectory, presets);
+	}
+
+	/**
+	 * Parses a presets file and the files that it includes.
+	 *
+	 * @param mapper  the JSON parser
+	 * @param file    the file to parse
+	 * @param presets the presets, indexed by kind and name, to add to
+	 * @param visited the files that have already been parsed
+	 * @throws IOException if an I/O error occurs while reading the file
+	 */
+	private static void parse(ObjectMapper mapper, Path file, Map<String, Map<String, Preset>> presets,
+		Set<Path> visited) throws IOException
+	{
+		Path normalizedFile = file.toAbsolutePath().normalize();
+		if (!visited.add(normalizedFile))
+			return;
+		JsonNode root = mapper.readTree(normalizedFile.toFile());
+		Path fileDirectory = normalizedFile.getParent();
+		for (JsonNode include : root.path("include"))
+			parse(mapper, fileDirectory.resolve(include.asText()), presets, visited);
+		for (String kind : new String[]{CONFIGURE, BUILD, TEST})
+		{
+			Map<String, Preset> presetsOfKind = presets.computeIfAbsent(kind, k -> new HashMap<>());
+			for (JsonNode node : root.path(kind))
+			{
+				String name = node.path("name").asText();
+				presetsOfKind.put(name, new Preset(node, fileDirectory));
+			}
+		}
+	}
+
+	/**
+	 * @param sourceDirectory the directory containing {@code CMakePresets.json}
+	 * @param presets         the presets, indexed by kind and name
+	 */
+	private CmakePresets(Path sourceDirectory, Map<String, Map<String, Preset>> presets)
+	{
+		this.sourceDirectory = sourceDirectory;
+		this.presets = presets;
+	}
+
+	/**
+	 * Returns the configure preset that a build or test preset refers to.
+	 *
+	 * @param kind {@link #BUILD} or {@link #TEST}
+	 * @param name the name of the preset
+	 * @return the name of the configure preset
+	 * @throws IllegalArgumentException if the preset does not exist or does not refer to a configure preset
+	 */
+	public String getConfigurePreset(String kind, String name)
+	{
+		JsonNode value = getField(kind, name, "/configurePreset", new HashSet<>());
+		if (value == null)
+			throw new IllegalArgumentException(kind + " \"" + name + "\" does not specify a configurePreset");
+		return value.asText();
+	}
+
+	/**
+	 * Returns the binary directory of a configure preset.
+	 *
+	 * @param name        the name of the configure preset
+	 * @param environment the environment that cmake will run with
+	 * @return null if the preset does not specify a binary directory
+	 * @throws IllegalArgumentException if the preset does not exist
+	 */
+	public Path getBinaryDirectory(String name, Map<String, String> environment)
+	{
+		// ${fileDir} refers to the file that declares binaryDir, which may be a parent's
+		Preset declaringPreset = getDeclaringPreset(CONFIGURE, name, "/binaryDir", new HashSet<>());
+		if (declaringPreset == null)
+			return null;
+		JsonNode generator = getField(CONFIGURE, name, "/generator", new HashSet<>());
+		String generatorName;
+		if (generator == null)
+			generatorName = "";
+		else
+			generatorName = generator.asText();
+		Map<String, String> presetEnvironment = new HashMap<>(environment);
+		getEnvironment(CONFIGURE, name, presetEnvironment, new HashSet<>());
+		String expanded = expand(declaringPreset.node.at("/binaryDir").asText(), name, generatorName,
+			declaringPreset.fileDirectory, presetEnvironment, environment);
+		return sourceDirectory.resolve(expanded).normalize();
+	}
+
+	/**
+	 * Returns the number of parallel jobs of a build or test preset.
+	 *
+	 * @param kind {@link #BUILD} or {@link #TEST}
+	 * @param name the name of the preset
+	 * @return null if the preset does not specify the number of jobs
+	 * @throws IllegalArgumentException if the preset does not exist
+	 */
+	public Integer getJobs(String kind, String name)
+	{
+		String pointer;
+		if (kind.equals(TEST))
+			pointer = "/execution/jobs";
+		else
+			pointer = "/jobs";
+		JsonNode jobs = getField(kind, name, pointer, new HashSet<>());
+		if (jobs == null)
+			return null;
+		return jobs.asInt();
+	}
+
+	/**
+	 * @param kind the kind of preset
+	 * @param name the name of the preset
+	 * @return the preset
+	 * @throws IllegalArgumentException if the preset does not exist
+	 */
+	private Preset getPreset(String kind, String name)
+	{
+		Preset result = presets.get(kind).get(name);
+		if (result == null)
+			throw new IllegalArgumentException(kind + " \"" + name + "\" does not exist");
+		return result;
+	}
+
+	/**
+	 * Returns the value of a field, taking inheritance into account.
+	 *
+	 * @param kind    the kind of preset
+	 * @param name    the name of the preset
+	 * @param field   a JSON pointer to the field, such as {@code /execution/jobs}. The fields of nested objects
+	 *                are inherited individually.
+	 * @param visited the presets that have already been visited
+	 * @return null if neither the preset nor its parents specify the field
+	 * @throws IllegalArgumentException if the preset does not exist or inherits from itself
+	 */
+	private JsonNode getField(String kind, String name, String field, Set<String> visited)
+	{
+		Preset declaringPreset = getDeclaringPreset(kind, name, field, visited);
+		if (declaringPreset == null)
+			return null;
+		return declaringPreset.node.at(field);
+	}
+
+	/**
+	 * Returns the preset that a field is inherited from.
+	 *
+	 * @param kind    the kind of preset
+	 * @param name    the name of the preset
+	 * @param field   a JSON pointer to the field
+	 * @param visited the presets that have already been visited
+	 * @return the preset itself, if it specifies the field; otherwise the closest parent that does, or null if
+	 * none of them do
+	 * @throws IllegalArgumentException if the preset does not exist or inherits from itself
+	 */
+	private Preset getDeclaringPreset(String kind, String name, String field, Set<String> visited)
+	{
+		if (!visited.add(name))
+			throw new IllegalArgumentException(kind + " \"" + name + "\" inherits from itself");
+		Preset preset = getPreset(kind, name);
+		JsonNode value = preset.node.at(field);
+		if (!value.isMissingNode() && !value.isNull())
+			return preset;
+		// Parents that are listed first take precedence
+		for (String parent : getParents(preset))
+		{
+			Preset result = getDeclaringPreset(kind, parent, field, new HashSet<>(visited));
+			if (result != null)
+				return result;
+		}
+		return null;
+	}
+
+	/**
+	 * Collects the environment variables of a preset, taking inheritance into account.
+	 *
+	 * @param kind        the kind of preset
+	 * @param name        the name of the preset
+	 * @param environment the environment to add to
+	 * @param visited     the presets that have already been visited
+	 * @throws IllegalArgumentException if the preset does not exist or inherits from itself
+	 */
+	private void getEnvironment(String kind, String name, Map<String, String> environment, Set<String> visited)
+	{
+		if (!visited.add(name))
+			throw new IllegalArgumentException(kind + " \"" + name + "\" inherits from itself");
+		Preset preset = getPreset(kind, name);
+		String[] parents = getParents(preset);
+		// Apply parents in reverse order so that the first parent wins
+		for (int i = parents.length - 1; i >= 0; --i)
+			getEnvironment(kind, parents[i], environment, new HashSet<>(visited));
+		Iterator<Entry<String, JsonNode>> fields = preset.node.path("environment").fields();
+		while (fields.hasNext())
+		{
+			Entry<String, JsonNode> entry = fields.next();
+			if (entry.getValue().isNull())
+				environment.remove(entry.getKey());
+			else
+				environment.put(entry.getKey(), entry.getValue().asText());
+		}
+	}
+
+	/**
+	 * @param preset a preset
+	 * @return the names of the presets that the preset inherits from
+	 */
+	private static String[] getParents(Preset preset)
+	{
+		JsonNode inherits = preset.node.get("inherits");
+		if (inherits == null)
+			return new String[0];
+		if (inherits.isTextual())
+			return new String[]{inherits.asText()};
+		String[] result = new String[inherits.size()];
+		for (int i = 0; i < result.length; ++i)
+			result[i] = inherits.get(i).asText();
+		return result;
+	}
+
+	/**
+	 * Expands the macros in a preset value.
+	 *
+	 * @param value              the value
+	 * @param presetName         the name of the preset
+	 * @param generator          the generator of the preset
+	 * @param fileDirectory      the directory of the file that declared the preset
+	 * @param presetEnvironment  the environment variables of the preset
+	 * @param processEnvironment the environment variables that cmake will run with
+	 * @return the expanded value
+	 */
+	private String expand(String value, String presetName, String generator, Path fileDirectory,
+		Map<String, String> presetEnvironment, Map<String, String> processEnvironment)
+	{
+		Matcher matcher = MACRO.matcher(value);
+		StringBuffer result = new StringBuffer();
+		while (matcher.find())
+		{
+			String namespace = matcher.group(1);
+			String name = matcher.group(2);
+			String replacement;
+			switch (namespace)
+			{
+				case "env":
+					replacement = presetEnvironment.getOrDefault(name, "");
+					break;
+				case "penv":
+					replacement = processEnvironment.getOrDefault(name, "");
+					break;
+				default:
+					replacement = expandMacro(name, presetName, generator, fileDirectory);
+					break;
+			}
+			matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+		}
+		matcher.appendTail(result);
+		return result.toString();
+	}
+
+	/**
+	 * @param name          the name of a macro
+	 * @param presetName    the name of the preset
+	 * @param generator     the generator of the preset
+	 * @param fileDirectory the directory of the file that declared the preset
+	 * @return the value of the macro
+	 * @throws IllegalArgumentException if the macro is not supported
+	 */
+	private String expandMacro(String name, String presetName, String generator, Path fileDirectory)
+	{
+		switch (name)
+		{
+			case "sourceDir":
+				return sourceDirectory.toString();
+			case "sourceParentDir":
+			{
+				Path parent = sourceDirectory.getParent();
+				if (parent == null)
+					return "";
+				return parent.toString();
+			}
+			case "sourceDirName":
+				return sourceDirectory.getFileName().toString();
+			case "presetName":
+				return presetName;
+			case "generator":
+				return generator;
+			case "fileDir":
+				return fileDirectory.toString();
+			case "dollar":
+				return "$";
+			case "pathListSep":
+				return File.pathSeparator;
+			case "hostSystemName":
+				return getHostSystemName();
+			default:
+				throw new IllegalArgumentException("Unsupported macro: ${" + name + "}");
+		}
+	}
+
+	/**
+	 * @return the value of {@code CMAKE_HOST_SYSTEM_NAME}
+	 */
+	private static String getHostSystemName()
+	{
+		switch (Platform.detected().operatingSystem)
+		{
+			case WINDOWS:
+				return "Windows";
+			case OSX:
+				return "Darwin";
+			case FREEBSD:
+				return "FreeBSD";
+			default:
+				return "Linux";
+		}
+	}
+
+	/**
+	 * A single preset.
+	 */
+	private static final class Preset
+	{
+		/**
+		 * The JSON representation of the preset.
+		 */
+		final JsonNode node;
+		/**
+		 * The directory of the file that declared the preset.
+		 */
+		final Path fileDirectory;
+
+		/**
+		 * @param node          the JSON representation of the preset
+		 * @param fileDirectory the directory of the file that declared the preset
+		 */
+		Preset(JsonNode node, Path fileDirectory)
+		{
+			this.node = node;
+			this.fileDirectory = fileDirectory;
+		}
+	}
+}
@@ -1,19 +1,21 @@
 package io.github.cmakemavenplugin.cmake.maven.plugin;
 
+import io.github.cmakemavenplugin.cmake.common.Platform.OperatingSystem;
 import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.Collections;
 
 /**
@@ -37,27 +39,60 @@ public class CompileMojo extends CmakeMojo
 	 */
 	@Parameter(defaultValue = "${project.build.directory}/cmake")
 	private File projectDirectory;
+	/**
+	 * The build preset to use, equivalent to {@code cmake --build --preset {preset}}. If the preset's configure
+	 * preset specifies a {@code binaryDir}, it overrides {@link #projectDirectory}.
+	 */
+	@Parameter(property = "cmake.buildPreset")
+	private String preset;
+	/**
+	 * The directory containing {@code CMakePresets.json}. Only used if {@link #preset} is set.
+	 */
+	@Parameter(defaultValue = "${project.basedir}")
+	private File sourcePath;
+	/**
+	 * {@code true} if the jobs of a Ninja build should be written to
+	 * {@code ${project.build.directory}/cmake-timeline/<goal>-<execution>.json} in the Chrome Trace Event
+	 * format, with one lane per worker slot. Other generators do not record the timing of their jobs.
+	 */
+	@Parameter(property = "cmake.timeline", defaultValue = "false")
+	private boolean timeline;
 
 	/**
 	 * Creates a new instance.
 	 *
-	 * @param project       an instance of {@code MavenProject}
-	 * @param pluginManager an instance of {@code PluginManager}
-	 * @param session       an instance of {@code MavenSession}
+	 * @param project          an instance of {@code MavenProject}
+	 * @param repositorySystem an instance of {@code RepositorySystem}
+	 * @param session          an instance of {@code MavenSession}
 	 */
 	@Inject
-	public CompileMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	public CompileMojo(MavenProject project, MavenSession session, RepositorySystem repositorySystem)
 	{
-		super(project, session, pluginManager);
+		super(project, session, repositorySystem);
 	}
 
 	@Override
-	public void execute()
-		throws MojoExecutionException
+	protected void run() throws MojoExecutionException
 	{
-		super.execute();
 		try
 		{
+			ProcessBuilder processBuilder = new ProcessBuilder();
+			overrideEnvironmentVariables(processBuilder);
+			if (preset != null)
+			{
+				CmakePresets presets = getPresets(sourcePath);
+				try
+				{
+					Path binaryDirectory = presets.getBinaryDirectory(presets.getConfigurePreset(CmakePresets.BUILD,
+						preset), processBuilder.environment());
+					if (binaryDirectory != null)
+						projectDirectory = binaryDirectory.toFile();
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new MojoExecutionException(e.getMessage(), e);
+				}
+			}
 			Path projectPath = projectDirectory.toPath();
 			if (Files.notExists(projectPath))
 				throw new MojoExecutionException(projectPath.toAbsolutePath() + " does not exist");
@@ -66,13 +101,17 @@ public class CompileMojo extends CmakeMojo
 
 			downloadBinariesIfNecessary();
 
-			ProcessBuilder processBuilder = new ProcessBuilder();
-			overrideEnvironmentVariables(processBuilder);
-
 			String cmakePath = getBinaryPath("cmake", processBuilder).toString();
 			processBuilder.command().add(cmakePath);
 
-			Collections.addAll(processBuilder.command(), "--build", projectPath.toString());
+			if (preset != null)
+			{
+				// cmake looks for CMakePresets.json in the current directory
+				processBuilder.directory(sourcePath);
+				Collections.addAll(processBuilder.command(), "--build", "--preset", preset);
+			}
+			else
+				Collections.addAll(processBuilder.command(), "--build", projectPath.toString());
 			if (target != null)
 				Collections.addAll(processBuilder.command(), "--target", target);
 			if (config != null)
@@ -83,12 +122,19 @@ public class CompileMojo extends CmakeMojo
 			if (log.isDebugEnabled())
 			{
 				log.debug("projectDirectory: " + projectPath);
+				log.debug("preset: " + preset);
 				log.debug("target: " + target);
 				log.debug("config: " + config);
 				log.debug("Environment: " + processBuilder.environment());
 				log.debug("Command-line: " + processBuilder.command());
 			}
-			int returnCode = Mojos.waitFor(processBuilder, getLog());
+			getSpan().setAttribute("cmake.target", target).
+				setAttribute("cmake.config", config).
+				setAttribute("cmake.preset", preset);
+			Instant start = Instant.now();
+			int returnCode = waitFor(processBuilder);
+			if (timeline)
+				writeTimeline(projectPath, start);
 			if (returnCode != 0)
 				throw new MojoExecutionException("Return code: " + returnCode);
 		}
@@ -97,4 +143,29 @@ public class CompileMojo extends CmakeMojo
 			throw new MojoExecutionException("", e);
 		}
 	}
-}
+
+	/**
+	 * Converts {@code .ninja_log} to a timeline.
+	 *
+	 * @param projectPath the project binary directory
+	 * @param start       the time that the build started
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void writeTimeline(Path projectPath, Instant start) throws IOException
+	{
+		Log log = getLog();
+		Path ninjaLog = projectPath.resolve(".ninja_log");
+		if (Files.notExists(ninjaLog))
+		{
+			log.warn("Skipping the timeline because " + ninjaLog + " does not exist. Only the Ninja generators " +
+				"record the timing of jobs.");
+			return;
+		}
+		ChromeTrace trace = new ChromeTrace();
+		int jobs = NinjaLog.addBuild(ninjaLog, start, OperatingSystem.detected(), trace);
+		Path path = getReportPath("cmake-timeline", ".json");
+		trace.write(path);
+		if (log.isInfoEnabled())
+			log.info("Timeline of " + jobs + " jobs: " + path);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,548 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import io.github.cmakemavenplugin.cmake.common.Digests;
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A cache of configured CMake state that is shared between builds.
+ * <p>
+ * After a project directory is configured for the first time, its {@code CMakeCache.txt} and the compiler
+ * detection results in {@code CMakeFiles/<version>} are copied into the cache. Later builds that configure
+ * a fresh project directory with the same toolchain and the same CMake scripts start from that snapshot,
+ * which lets CMake skip compiler detection, {@code try_compile()} checks and cached {@code find_package()}
+ * lookups.
+ */
+public final class ConfigureCache
+{
+	/**
+	 * Environment variables that influence compiler detection.
+	 */
+	private static final List<String> TOOLCHAIN_VARIABLES = Arrays.asList("PATH", "CC", "CXX", "FC", "ASM",
+		"CUDACXX", "OBJC", "OBJCXX", "CFLAGS", "CXXFLAGS", "CPPFLAGS", "FFLAGS", "LDFLAGS", "CUDAFLAGS",
+		"CMAKE_GENERATOR", "CMAKE_TOOLCHAIN_FILE", "CMAKE_PREFIX_PATH", "SDKROOT", "MACOSX_DEPLOYMENT_TARGET",
+		"INCLUDE", "LIB", "LIBPATH", "VCToolsVersion", "WindowsSdkVersion");
+	/**
+	 * Matches the name of the directory that holds CMake's compiler detection results.
+	 */
+	private static final Pattern VERSION_DIRECTORY = Pattern.compile("\\d+\\.\\d+.*");
+	/**
+	 * Matches the compilers that CMake detected, in {@code CMakeFiles/<version>/CMake<LANG>Compiler.cmake}.
+	 */
+	private static final Pattern COMPILER = Pattern.compile("^set\\(CMAKE_\\w+_COMPILER \"([^\"]+)\"\\)$",
+		Pattern.MULTILINE);
+	private static final String CACHE_FILENAME = "CMakeCache.txt";
+	/**
+	 * The file in a snapshot that lists the compilers that CMake detected, with their size and modification
+	 * time. It is not copied into project directories.
+	 */
+	private static final String COMPILERS_FILENAME = "compilers.tsv";
+	private static final String SOURCE_PLACEHOLDER = "@CMAKE_MAVEN_PLUGIN_SOURCE_DIR@";
+	private static final String BINARY_PLACEHOLDER = "@CMAKE_MAVEN_PLUGIN_BINARY_DIR@";
+	private final Path directory;
+	private final Log log;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory the directory that contains the snapshots
+	 * @param log       the Maven log
+	 * @throws AssertionError if any of the arguments are null
+	 */
+	public ConfigureCache(Path directory, Log log)
+	{
+		assert (directory != null) : "directory may not be null";
+		assert (log != null) : "log may not be null";
+		this.directory = directory;
+		this.log = log;
+	}
+
+	/**
+	 * Returns a fingerprint of everything that affects the outcome of configuring a project: the cmake
+	 * executable, the command-line, the toolchain-related environment variables and the project's CMake
+	 * scripts.
+	 * <p>
+	 * The fingerprint does not depend on the location of the source directory, the project directory or
+	 * the cmake executable, so workspaces that check out the same project in different directories share
+	 * snapshots.
+	 *
+	 * The compilers are not part of the fingerprint, because they are only known once CMake detects them.
+	 * {@link #restore} checks them instead.
+	 *
+	 * @param processBuilder   the process that will configure the project
+	 * @param sourcePath       the directory containing {@code CMakeLists.txt}
+	 * @param projectDirectory the project binary directory
+	 * @param buildDirectory   the Maven build directory, whose contents are not part of the project's scripts
+	 * @return the fingerprint
+	 * @throws IOException if an I/O error occurs while reading the scripts
+	 */
+	public String getFingerprint(ProcessBuilder processBuilder, Path sourcePath, Path projectDirectory,
+		Path buildDirectory) throws IOException
+	{
+		MessageDigest digest = Digests.newSha256();
+		List<String> command = new ArrayList<>(processBuilder.command());
+		Path cmake = Paths.get(command.get(0));
+		command.set(0, cmake.getFileName().toString());
+		String commandLine = String.join("\0", command);
+		for (Entry<String, String> entry : getPlaceholders(sourcePath, projectDirectory).entrySet())
+			commandLine = commandLine.replace(entry.getKey(), entry.getValue());
+		update(digest, "command", commandLine);
+		if (Files.isRegularFile(cmake))
+		{
+			// Identify the executable by its contents, since each workspace may have its own copy
+			update(digest, "cmake", "");
+			Digests.update(digest, cmake);
+		}
+		Map<String, String> environment = processBuilder.environment();
+		for (String name : TOOLCHAIN_VARIABLES)
+		{
+			String value = environment.get(name);
+			if (value != null)
+				update(digest, name, value);
+		}
+		for (String option : command)
+		{
+			if (option.startsWith("-DCMAKE_TOOLCHAIN_FILE"))
+			{
+				Path toolchainFile = Paths.get(option.substring(option.indexOf('=') + 1));
+				if (Files.isRegularFile(toolchainFile))
+					Digests.update(digest, toolchainFile);
+			}
+		}
+		for (Path script : getScripts(sourcePath, projectDirectory, buildDirectory))
+		{
+			update(digest, "script", sourcePath.relativize(script).toString());
+			Digests.update(digest, script);
+		}
+		return Digests.toHex(digest.digest());
+	}
+
+	/**
+	 * Seeds a project directory from a snapshot, unless a compiler that the snapshot was configured with has
+	 * changed since.
+	 *
+	 * @param fingerprint      the fingerprint returned by {@link #getFingerprint}
+	 * @param processBuilder   the process that will configure the project
+	 * @param sourcePath       the directory containing {@code CMakeLists.txt}
+	 * @param projectDirectory the project binary directory
+	 * @return {@code false} if no matching snapshot was found
+	 * @throws IOException if an I/O error occurs
+	 */
+	public boolean restore(String fingerprint, ProcessBuilder processBuilder, Path sourcePath,
+		Path projectDirectory) throws IOException
+	{
+		Path snapshot = directory.resolve(fingerprint);
+		if (!Files.isRegularFile(snapshot.resolve(CACHE_FILENAME)))
+		{
+			log.info("No configure snapshot found for fingerprint " + fingerprint);
+			return false;
+		}
+		List<String> searchList = Arrays.asList(SOURCE_PLACEHOLDER, BINARY_PLACEHOLDER);
+		List<String> replacements = Arrays.asList(toCmakePath(sourcePath), toCmakePath(projectDirectory));
+		String changedCompiler = getChangedCompiler(snapshot, Platform.detected().getEnvironment(processBuilder, "PATH"),
+			searchList, replacements);
+		if (changedCompiler != null)
+		{
+			log.warn("Not seeding " + projectDirectory + " from " + snapshot + " because " + changedCompiler +
+				" changed since the snapshot was saved. Delete the snapshot to save a new one.");
+			return false;
+		}
+		log.info("Seeding " + projectDirectory + " from " + snapshot);
+		copyTree(snapshot, projectDirectory, searchList, replacements);
+		return true;
+	}
+
+	/**
+	 * @param snapshot     a snapshot
+	 * @param path         the {@code PATH} that CMake will search for compilers; {@code null} if unset
+	 * @param searchList   the placeholders to search for in the list of compilers
+	 * @param replacements the paths to replace them with
+	 * @return the first compiler that was modified, removed or is now hidden by another compiler of the same
+	 * name earlier on the {@code PATH}; {@code null} if the compilers did not change
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static String getChangedCompiler(Path snapshot, String path, List<String> searchList,
+		List<String> replacements) throws IOException
+	{
+		Path compilers = snapshot.resolve(COMPILERS_FILENAME);
+		if (!Files.isRegularFile(compilers))
+			return "the list of compilers";
+		String text = new String(Files.readAllBytes(compilers), StandardCharsets.UTF_8);
+		for (int i = 0; i < searchList.size(); ++i)
+			text = text.replace(searchList.get(i), replacements.get(i));
+		for (String line : text.split("\n"))
+		{
+			if (line.isEmpty())
+				continue;
+			// <path>\t<size>\t<last modified>
+			String[] fields = line.split("\t");
+			Path compiler = Paths.get(fields[0]);
+			if (!Files.isRegularFile(compiler) || !getFileVersion(compiler).equals(fields[1] + "\t" + fields[2]))
+				return compiler.toString();
+			if (path == null || compiler.getParent() == null)
+				continue;
+			// A compiler that CMake found on the PATH must still be the first one on the PATH
+			Path compilerDirectory = compiler.getParent().toAbsolutePath().normalize();
+			Path first = null;
+			boolean onPath = false;
+			for (String dirname : path.split(File.pathSeparator))
+			{
+				if (dirname.isEmpty())
+					continue;
+				Path candidate = Paths.get(dirname).resolve(compiler.getFileName().toString());
+				if (first == null && Files.isRegularFile(candidate))
+					first = candidate;
+				if (candidate.getParent().toAbsolutePath().normalize().equals(compilerDirectory))
+					onPath = true;
+			}
+			if (onPath && first != null && !Files.isSameFile(first, compiler))
+				return compiler.toString();
+		}
+		return null;
+	}
+
+	/**
+	 * @param file a file
+	 * @return the size and modification time of the file, separated by a tab
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static String getFileVersion(Path file) throws IOException
+	{
+		return Files.size(file) + "\t" + Files.getLastModifiedTime(file).toMillis();
+	}
+
+	/**
+	 * Saves a snapshot of a project directory that was just configured.
+	 *
+	 * @param fingerprint      the fingerprint returned by {@link #getFingerprint}
+	 * @param sourcePath       the directory containing {@code CMakeLists.txt}
+	 * @param projectDirectory the project binary directory
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void save(String fingerprint, Path sourcePath, Path projectDirectory) throws IOException
+	{
+		Path snapshot = directory.resolve(fingerprint);
+		if (Files.exists(snapshot))
+			return;
+		Path versionDirectory = getVersionDirectory(projectDirectory);
+		if (versionDirectory == null)
+		{
+			log.debug("Could not find CMakeFiles/<version> in " + projectDirectory + ", skipping snapshot");
+			return;
+		}
+
+		// Build the snapshot next to its final location, then publish it atomically
+		Files.createDirectories(directory);
+		Path staging = directory.resolve(fingerprint + "." + UUID.randomUUID() + ".tmp");
+		Map<String, String> pathToPlaceholder = getPlaceholders(sourcePath, projectDirectory);
+		List<String> paths = new ArrayList<>(pathToPlaceholder.keySet());
+		List<String> placeholders = new ArrayList<>(pathToPlaceholder.values());
+		try
+		{
+			Files.createDirectories(staging);
+			copyFile(projectDirectory.resolve(CACHE_FILENAME), staging.resolve(CACHE_FILENAME), paths,
+				placeholders);
+			Path targetVersionDirectory = staging.resolve(projectDirectory.relativize(versionDirectory));
+			Files.createDirectories(targetVersionDirectory);
+			StringBuilder compilers = new StringBuilder();
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(versionDirectory, Files::isRegularFile))
+			{
+				for (Path file : files)
+				{
+					copyFile(file, targetVersionDirectory.resolve(file.getFileName().toString()), paths,
+						placeholders);
+					addCompilers(file, compilers);
+				}
+			}
+			String compilerList = compilers.toString();
+			for (int i = 0; i < paths.size(); ++i)
+				compilerList = compilerList.replace(paths.get(i), placeholders.get(i));
+			Files.write(staging.resolve(COMPILERS_FILENAME), compilerList.getBytes(StandardCharsets.UTF_8));
+			try
+			{
+				Files.move(staging, snapshot, StandardCopyOption.ATOMIC_MOVE);
+				log.info("Saved configure snapshot to " + snapshot);
+			}
+			catch (FileAlreadyExistsException | DirectoryNotEmptyException e)
+			{
+				// Another build published the same snapshot first
+				log.debug("Could not publish " + snapshot + ": " + e);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				log.warn("Could not save a configure snapshot because " + directory + " does not support " +
+					"atomic moves. Set cmake.configureCache to a directory on a local filesystem.");
+			}
+		}
+		finally
+		{
+			deleteTree(staging);
+		}
+	}
+
+	/**
+	 * Appends the compilers that a {@code CMake<LANG>Compiler.cmake} file refers to, with their size and
+	 * modification time, to a list.
+	 *
+	 * @param file      a file in {@code CMakeFiles/<version>}
+	 * @param compilers the list to append {@code <path>\t<size>\t<last modified>} lines to
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void addCompilers(Path file, StringBuilder compilers) throws IOException
+	{
+		String filename = file.getFileName().toString();
+		if (!filename.startsWith("CMake") || !filename.endsWith("Compiler.cmake"))
+			return;
+		Matcher matcher = COMPILER.matcher(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		while (matcher.find())
+		{
+			Path compiler = Paths.get(matcher.group(1));
+			if (Files.isRegularFile(compiler))
+			{
+				compilers.append(matcher.group(1)).append('\t').append(getFileVersion(compiler)).
+					append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Returns the placeholders that stand in for the source and project directories in snapshots and
+	 * fingerprints.
+	 *
+	 * @param sourcePath       the directory containing {@code CMakeLists.txt}
+	 * @param projectDirectory the project binary directory
+	 * @return a map from each way of spelling either directory to its placeholder, longest paths first in case
+	 * one directory contains the other
+	 */
+	private static Map<String, String> getPlaceholders(Path sourcePath, Path projectDirectory)
+	{
+		Map<String, String> pathToPlaceholder = new HashMap<>();
+		for (String path : getSpellings(projectDirectory))
+			pathToPlaceholder.put(path, BINARY_PLACEHOLDER);
+		for (String path : getSpellings(sourcePath))
+			pathToPlaceholder.put(path, SOURCE_PLACEHOLDER);
+		List<String> paths = new ArrayList<>(pathToPlaceholder.keySet());
+		paths.sort(Comparator.comparingInt(String::length).reversed());
+		Map<String, String> result = new LinkedHashMap<>();
+		for (String path : paths)
+			result.put(path, pathToPlaceholder.get(path));
+		return result;
+	}
+
+	/**
+	 * @param path a path
+	 * @return the ways that CMake or the plugin may spell the absolute form of the path
+	 */
+	private static Set<String> getSpellings(Path path)
+	{
+		Set<String> result = new HashSet<>();
+		for (Path absolutePath : Arrays.asList(path.toAbsolutePath(), path.toAbsolutePath().normalize()))
+		{
+			result.add(absolutePath.toString());
+			result.add(absolutePath.toString().replace('\\', '/'));
+		}
+		return result;
+	}
+
+	/**
+	 * @param projectDirectory the project binary directory
+	 * @return {@code CMakeFiles/<version>}, or null if it does not exist
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static Path getVersionDirectory(Path projectDirectory) throws IOException
+	{
+		Path cmakeFiles = projectDirectory.resolve("CMakeFiles");
+		if (!Files.isDirectory(cmakeFiles))
+			return null;
+		try (DirectoryStream<Path> children = Files.newDirectoryStream(cmakeFiles))
+		{
+			for (Path child : children)
+			{
+				if (VERSION_DIRECTORY.matcher(child.getFileName().toString()).matches() &&
+					Files.isRegularFile(child.resolve("CMakeSystem.cmake")))
+				{
+					return child;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param sourcePath       the directory containing {@code CMakeLists.txt}
+	 * @param projectDirectory the project binary directory, which is excluded from the search
+	 * @param buildDirectory   the Maven build directory, which is excluded from the search
+	 * @return the project's CMake scripts, in a stable order
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static List<Path> getScripts(Path sourcePath, Path projectDirectory, Path buildDirectory)
+		throws IOException
+	{
+		List<Path> result = new ArrayList<>();
+		Set<Path> excluded = new HashSet<>(Arrays.asList(projectDirectory.toAbsolutePath().normalize(),
+			buildDirectory.toAbsolutePath().normalize()));
+		Files.walkFileTree(sourcePath, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+			{
+				if (excluded.contains(dir.toAbsolutePath().normalize()) ||
+					(!dir.equals(sourcePath) && dir.getFileName().toString().startsWith(".")))
+				{
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+			{
+				String filename = file.getFileName().toString();
+				if (filename.equals("CMakeLists.txt") || filename.endsWith(".cmake") ||
+					filename.equals("CMakePresets.json"))
+				{
+					result.add(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Copies a snapshot, except for its list of compilers, replacing strings in text files.
+	 *
+	 * @param source       the snapshot to copy from
+	 * @param target       the directory to copy to
+	 * @param searchList   the strings to search for
+	 * @param replacements the strings to replace them with
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void copyTree(Path source, Path target, List<String> searchList, List<String> replacements)
+		throws IOException
+	{
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+			{
+				Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+			{
+				if (!file.equals(source.resolve(COMPILERS_FILENAME)))
+					copyFile(file, target.resolve(source.relativize(file).toString()), searchList, replacements);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Copies a file, replacing strings if it is a CMake script or cache.
+	 *
+	 * @param source       the file to copy from
+	 * @param target       the file to copy to
+	 * @param searchList   the strings to search for
+	 * @param replacements the strings to replace them with
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void copyFile(Path source, Path target, List<String> searchList, List<String> replacements)
+		throws IOException
+	{
+		String filename = source.getFileName().toString();
+		if (!filename.endsWith(".cmake") && !filename.endsWith(".txt"))
+		{
+			Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+			return;
+		}
+		String text = new String(Files.readAllBytes(source), StandardCharsets.UTF_8);
+		for (int i = 0; i < searchList.size(); ++i)
+			text = text.replace(searchList.get(i), replacements.get(i));
+		Files.write(target, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Deletes a directory and its contents, if it exists.
+	 *
+	 * @param path the directory
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void deleteTree(Path path) throws IOException
+	{
+		if (Files.notExists(path))
+			return;
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+			{
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException
+			{
+				if (e != null)
+					throw e;
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * @param path a path
+	 * @return the absolute form of the path, using the forward slashes that CMake writes on all platforms
+	 */
+	private static String toCmakePath(Path path)
+	{
+		return path.toAbsolutePath().normalize().toString().replace('\\', '/');
+	}
+
+	/**
+	 * Adds a name-value pair to a digest.
+	 *
+	 * @param digest a digest
+	 * @param name   the name of the value
+	 * @param value  the value
+	 */
+	private static void update(MessageDigest digest, String name, String value)
+	{
+		digest.update((name + "=" + value + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,253 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.cmakemavenplugin.cmake.common.Digests;
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lists the tests of a build tree using {@code ctest --show-only=json-v1}.
+ * <p>
+ * Listing tests requires CTest to evaluate every {@code CTestTestfile.cmake} in the build tree, which takes
+ * seconds on large projects. The list is therefore cached along with a fingerprint of those files and of
+ * the command line, and reused until either changes. Files written by {@code gtest_discover_tests()}
+ * ({@code *_tests.cmake} and {@code *_include.cmake}) are part of the fingerprint, because
+ * {@code CTestTestfile.cmake} includes them.
+ */
+public final class CtestDiscovery
+{
+	private static final String CACHE_VERSION = "1";
+
+	/**
+	 * Returns the tests of a build tree.
+	 *
+	 * @param processBuilder runs ctest in the build tree, without any test selection options
+	 * @param buildTree      the build tree
+	 * @param cache          the file to cache the list in
+	 * @param timeout        the number of seconds after which ctest and its descendants are terminated;
+	 *                       {@code 0} to wait indefinitely
+	 * @param platform       the current platform
+	 * @param log            the logger to report progress to
+	 * @return the tests, in the order that CTest numbers them
+	 * @throws IOException          if an I/O error occurs, or ctest fails or times out
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	public static List<CtestTest> getTests(ProcessBuilder processBuilder, Path buildTree, Path cache, int timeout,
+		Platform platform, Log log) throws IOException, InterruptedException
+	{
+		String fingerprint = getFingerprint(processBuilder, buildTree);
+		ObjectMapper mapper = new ObjectMapper();
+		if (Files.exists(cache))
+		{
+			try
+			{
+				JsonNode cached = mapper.readTree(cache.toFile());
+				if (cached != null && cached.path("fingerprint").asText().equals(fingerprint))
+				{
+					log.debug("Reusing the list of tests in " + cache);
+					return parseTests(cached.path("tests"));
+				}
+			}
+			catch (IOException e)
+			{
+				log.debug("Ignoring corrupt test list " + cache, e);
+			}
+		}
+
+		byte[] output = showOnly(processBuilder, cache, timeout, platform, log);
+		List<CtestTest> tests = new ArrayList<>();
+		for (JsonNode test : mapper.readTree(output).path("tests"))
+		{
+			List<String> labels = new ArrayList<>();
+			for (JsonNode property : test.path("properties"))
+			{
+				if (property.path("name").asText().equals("LABELS"))
+				{
+					for (JsonNode label : property.path("value"))
+						labels.add(label.asText());
+				}
+			}
+			tests.add(new CtestTest(test.path("name").asText(), labels));
+		}
+
+		ObjectNode root = mapper.createObjectNode();
+		root.put("fingerprint", fingerprint);
+		ArrayNode testsNode = root.putArray("tests");
+		for (CtestTest test : tests)
+		{
+			ObjectNode testNode = testsNode.addObject();
+			testNode.put("name", test.getName());
+			ArrayNode labelsNode = testNode.putArray("labels");
+			for (String label : test.getLabels())
+				labelsNode.add(label);
+		}
+		Files.createDirectories(cache.getParent());
+		Path temporary = cache.resolveSibling(cache.getFileName() + "." + UUID.randomUUID());
+		mapper.writeValue(temporary.toFile(), root);
+		Files.move(temporary, cache, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		return tests;
+	}
+
+	/**
+	 * Runs {@code ctest --show-only=json-v1}.
+	 * <p>
+	 * The output is redirected to files instead of being read by {@link Mojos#waitFor}, because the JSON document
+	 * must not be mixed with the warnings that ctest writes to stderr. Those are logged at the debug level, or as
+	 * warnings if ctest fails.
+	 *
+	 * @param processBuilder runs ctest in the build tree
+	 * @param cache          the file to cache the list in; the output is written next to it
+	 * @param timeout        the number of seconds after which ctest and its descendants are terminated;
+	 *                       {@code 0} to wait indefinitely
+	 * @param platform       the current platform
+	 * @param log            the logger to report to
+	 * @return the standard output of ctest
+	 * @throws IOException          if an I/O error occurs, or ctest fails or times out
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private static byte[] showOnly(ProcessBuilder processBuilder, Path cache, int timeout, Platform platform,
+		Log log) throws IOException, InterruptedException
+	{
+		List<String> command = new ArrayList<>(processBuilder.command());
+		command.add("--show-only=json-v1");
+		Files.createDirectories(cache.getParent());
+		String prefix = cache.getFileName() + "." + UUID.randomUUID();
+		Path output = cache.resolveSibling(prefix + ".out");
+		Path errors = cache.resolveSibling(prefix + ".err");
+		ProcessBuilder discovery = new ProcessBuilder(command).directory(processBuilder.directory()).
+			redirectOutput(output.toFile()).redirectError(errors.toFile());
+		discovery.environment().clear();
+		discovery.environment().putAll(processBuilder.environment());
+		try
+		{
+			Process process = discovery.start();
+			if (timeout != 0 && !process.waitFor(timeout, TimeUnit.SECONDS))
+			{
+				log.warn("ctest did not list the tests within " + timeout + " seconds. Terminating the process " +
+					"and its descendants.");
+				ProcessTree.logStackTraces(process, platform, log);
+				ProcessTree.destroy(process, platform, log);
+				process.waitFor();
+				logErrors(errors, log, true);
+				throw new IOException(command + " did not finish within " + timeout + " seconds");
+			}
+			int exitCode = process.waitFor();
+			logErrors(errors, log, exitCode != 0);
+			if (exitCode != 0)
+				throw new IOException(command + " returned " + exitCode);
+			return Files.readAllBytes(output);
+		}
+		finally
+		{
+			Files.deleteIfExists(output);
+			Files.deleteIfExists(errors);
+		}
+	}
+
+	/**
+	 * Logs the lines that ctest wrote to stderr.
+	 *
+	 * @param errors the file that stderr was redirected to
+	 * @param log    the logger to write to
+	 * @param failed {@code true} if ctest failed
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void logErrors(Path errors, Log log, boolean failed) throws IOException
+	{
+		String text = new String(Files.readAllBytes(errors), Charset.defaultCharset());
+		if (text.isEmpty())
+			return;
+		for (String line : text.split("\\R"))
+		{
+			if (failed)
+				log.warn(line);
+			else
+				log.debug(line);
+		}
+	}
+
+	/**
+	 * @param tests the cached tests
+	 * @return the tests
+	 */
+	private static List<CtestTest> parseTests(JsonNode tests)
+	{
+		List<CtestTest> result = new ArrayList<>();
+		for (JsonNode test : tests)
+		{
+			List<String> labels = new ArrayList<>();
+			for (JsonNode label : test.path("labels"))
+				labels.add(label.asText());
+			result.add(new CtestTest(test.path("name").asText(), labels));
+		}
+		return result;
+	}
+
+	/**
+	 * @param processBuilder runs ctest in the build tree
+	 * @param buildTree      the build tree
+	 * @return a hash of the command line and the files that define the tests
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static String getFingerprint(ProcessBuilder processBuilder, Path buildTree) throws IOException
+	{
+		// Sort the files so that the hash does not depend on the order that the filesystem returns them in
+		TreeMap<String, String> files = new TreeMap<>();
+		Files.walkFileTree(buildTree, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+			{
+				// Contains object files and other build outputs, but never tests
+				if (dir.getFileName() != null && dir.getFileName().toString().equals("CMakeFiles"))
+					return FileVisitResult.SKIP_SUBTREE;
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+			{
+				String name = file.getFileName().toString();
+				if (name.equals("CTestTestfile.cmake") || name.endsWith("_tests.cmake") ||
+					name.endsWith("_include.cmake"))
+				{
+					files.put(buildTree.relativize(file).toString().replace('\\', '/'),
+						attrs.size() + ":" + attrs.lastModifiedTime().toMillis());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		StringBuilder input = new StringBuilder(CACHE_VERSION).append('\n');
+		for (String argument : processBuilder.command())
+			input.append(argument).append('\0');
+		input.append('\n').append(processBuilder.directory()).append('\n');
+		for (Entry<String, String> entry : files.entrySet())
+			input.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+		return Digests.sha256(input.toString());
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private CtestDiscovery()
+	{
+	}
+}
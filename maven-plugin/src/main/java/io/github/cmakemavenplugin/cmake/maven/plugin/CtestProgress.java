@@ -0,0 +1,224 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the progress of a test run, based on the lines that CTest prints.
+ * <p>
+ * CTest prints {@code Start N: name} when a test starts and {@code i/n Test #N: name ... Passed 0.01 sec} when
+ * it ends. Start and end times are those at which the lines were read, so they are accurate to within the
+ * latency of the process's output.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class CtestProgress implements ProcessListener
+{
+	private static final Pattern START = Pattern.compile("^\\s*Start\\s+(\\d+): (.+)$");
+	private static final Pattern END = Pattern.compile("^\\s*\\d+/\\d+ Test\\s+#(\\d+): (.+?) \\.+\\s*" +
+		"(?:\\*\\*\\*)?(.+?)\\s+([\\d.]+) sec");
+	private final long origin = System.nanoTime();
+	/**
+	 * Maps the number of each running test to the test.
+	 */
+	private final Map<String, Test> running = new LinkedHashMap<>();
+	private final List<Test> finished = new ArrayList<>();
+	private final List<Test> unfinished = new ArrayList<>();
+
+	@Override
+	public void onLine(String line)
+	{
+		// Cheap check first, since most lines are test output
+		if (!line.contains("Start") && !line.contains("Test"))
+			return;
+		Matcher matcher = START.matcher(line);
+		if (matcher.matches())
+		{
+			running.put(matcher.group(1), new Test(matcher.group(2), now()));
+			return;
+		}
+		matcher = END.matcher(line);
+		if (matcher.lookingAt())
+		{
+			long end = now();
+			Test test = running.remove(matcher.group(1));
+			if (test == null)
+				test = new Test(matcher.group(2), end);
+			test.end = end;
+			test.status = matcher.group(3);
+			test.seconds = matcher.group(4);
+			finished.add(test);
+		}
+	}
+
+	@Override
+	public void onExit(int exitCode)
+	{
+		long end = now();
+		for (Test test : running.values())
+		{
+			test.end = end;
+			unfinished.add(test);
+		}
+		running.clear();
+	}
+
+	/**
+	 * @return the time since this object was created, in microseconds
+	 */
+	private long now()
+	{
+		return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - origin);
+	}
+
+	/**
+	 * Adds the tests to a timeline.
+	 *
+	 * @param timeline the timeline to add to
+	 */
+	public void addTo(ChromeTrace timeline)
+	{
+		for (Test test : finished)
+			timeline.add(test.name, "test", test.start, test.end);
+		for (Test test : unfinished)
+			timeline.add(test.name + " (unfinished)", "test", test.start, test.end);
+	}
+
+	/**
+	 * Returns a CTest report of the tests that were seen, for runs in which CTest did not write one. Tests that
+	 * never finished are reported as failures.
+	 *
+	 * @param reason the reason that the run was incomplete
+	 * @return a document in the format of CTest's {@code Test.xml}
+	 */
+	public Source toCtestReport(String reason)
+	{
+		Document document;
+		try
+		{
+			document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		}
+		catch (ParserConfigurationException e)
+		{
+			throw new AssertionError(e);
+		}
+		Element site = document.createElement("Site");
+		document.appendChild(site);
+		Element testing = append(site, "Testing", null);
+		append(testing, "StartTestTime", "0");
+		append(testing, "EndTestTime", Long.toString(TimeUnit.MICROSECONDS.toSeconds(now())));
+		for (Test test : finished)
+		{
+			String status;
+			if (test.status.equals("Passed"))
+				status = "passed";
+			else if (test.status.startsWith("Not Run") || test.status.startsWith("Disabled"))
+				status = "notrun";
+			else
+				status = "failed";
+			addTest(testing, test.name, status, test.seconds, test.status, "see the build log");
+		}
+		for (Test test : unfinished)
+		{
+			String seconds = Double.toString((test.end - test.start) / 1e6);
+			addTest(testing, test.name, "failed", seconds, "Unfinished", reason);
+		}
+		return new DOMSource(document);
+	}
+
+	/**
+	 * @param testing   the {@code Testing} element
+	 * @param name      the name of the test
+	 * @param status    {@code passed}, {@code failed} or {@code notrun}
+	 * @param seconds   the execution time of the test, in seconds
+	 * @param exitCode  the outcome reported by CTest
+	 * @param exitValue details of the outcome
+	 */
+	private static void addTest(Element testing, String name, String status, String seconds, String exitCode,
+		String exitValue)
+	{
+		Element test = append(testing, "Test", null);
+		test.setAttribute("Status", status);
+		append(test, "Name", name);
+		append(test, "Path", ".");
+		Element results = append(test, "Results", null);
+		addMeasurement(results, "Execution Time", seconds);
+		if (status.equals("failed"))
+		{
+			addMeasurement(results, "Exit Code", exitCode);
+			addMeasurement(results, "Exit Value", exitValue);
+		}
+		append(append(results, "Measurement", null), "Value", "");
+	}
+
+	/**
+	 * @param results the {@code Results} element
+	 * @param name    the name of the measurement
+	 * @param value   the value of the measurement
+	 */
+	private static void addMeasurement(Element results, String name, String value)
+	{
+		Element measurement = append(results, "NamedMeasurement", null);
+		measurement.setAttribute("name", name);
+		append(measurement, "Value", value);
+	}
+
+	/**
+	 * @param parent the parent element
+	 * @param name   the name of the child element
+	 * @param text   the text of the child element; {@code null} if it has none
+	 * @return the child element
+	 */
+	private static Element append(Element parent, String name, String text)
+	{
+		Element child = parent.getOwnerDocument().createElement(name);
+		if (text != null)
+			child.setTextContent(text);
+		parent.appendChild(child);
+		return child;
+	}
+
+	/**
+	 * A test.
+	 */
+	private static final class Test
+	{
+		final String name;
+		/**
+		 * In microseconds.
+		 */
+		final long start;
+		long end;
+		/**
+		 * The outcome reported by CTest, such as {@code Passed} or {@code Failed}; {@code null} if the test did
+		 * not finish.
+		 */
+		String status;
+		/**
+		 * The execution time reported by CTest.
+		 */
+		String seconds;
+
+		/**
+		 * @param name  the name of the test
+		 * @param start the time the test started, in microseconds
+		 */
+		Test(String name, long start)
+		{
+			this.name = name;
+			this.start = start;
+		}
+	}
+}
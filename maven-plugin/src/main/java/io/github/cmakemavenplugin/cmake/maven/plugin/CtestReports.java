@@ -0,0 +1,59 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import com.github.cowwoc.pouch.core.ConcurrentLazyReference;
+import com.github.cowwoc.pouch.core.Reference;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Converts CTest reports to the JUnit format used by Surefire.
+ */
+public final class CtestReports
+{
+	/**
+	 * The compiled stylesheet. {@code Templates} is thread-safe, so it is shared by all conversions.
+	 */
+	private static final Reference<Templates> TEMPLATES = ConcurrentLazyReference.create(() ->
+	{
+		try (InputStream stream = CtestReports.class.getResourceAsStream("/ctest2junit.xsl"))
+		{
+			return TransformerFactory.newInstance().newTemplates(new StreamSource(stream));
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		catch (TransformerConfigurationException e)
+		{
+			throw new AssertionError("ctest2junit.xsl is invalid", e);
+		}
+	});
+
+	/**
+	 * Converts a CTest report to JUnit format.
+	 *
+	 * @param ctestReport the {@code Test.xml} file written by CTest
+	 * @param junitReport the JUnit report to write
+	 * @throws TransformerException if an error occurs while converting the report
+	 */
+	public static void toJunit(Source ctestReport, Result junitReport) throws TransformerException
+	{
+		TEMPLATES.getValue().newTransformer().transform(ctestReport, junitReport);
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private CtestReports()
+	{
+	}
+}
@@ -0,0 +1,109 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Writes CTest resource specification files.
+ * <p>
+ * The file describes two pooled resources: {@code cpus}, with one slot per CPU, and {@code mem}, with one slot
+ * per MiB of memory. Tests request them through the {@code RESOURCE_GROUPS} property, e.g.
+ * {@code set_tests_properties(heavy PROPERTIES RESOURCE_GROUPS "cpus:2,mem:4096")}, and CTest only runs a test
+ * once enough slots are free.
+ *
+ * @see <a href="https://cmake.org/cmake/help/latest/manual/ctest.1.html#resource-specification-file">Resource
+ * Specification File</a>
+ */
+public final class CtestResourceSpec
+{
+	/**
+	 * Writes a resource specification file.
+	 *
+	 * @param path   the file to write to
+	 * @param cpus   the number of CPU slots
+	 * @param memory the amount of memory, in MiB
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void write(Path path, int cpus, long memory) throws IOException
+	{
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectNode root = mapper.createObjectNode();
+		ObjectNode version = root.putObject("version");
+		version.put("major", 1);
+		version.put("minor", 0);
+		ObjectNode local = root.putArray("local").addObject();
+		local.putArray("cpus").addObject().put("id", "0").put("slots", cpus);
+		local.putArray("mem").addObject().put("id", "0").put("slots", memory);
+		Files.createDirectories(path.getParent());
+		mapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), root);
+	}
+
+	/**
+	 * Returns the memory available to the tests of one module: the memory that the host can hand out without
+	 * swapping, shared evenly by the modules that may be testing at the same time.
+	 * <p>
+	 * On Linux, this is {@code MemAvailable} from {@code /proc/meminfo}, which counts reclaimable caches.
+	 * Elsewhere, it is the free physical memory. Both are measured before the tests start, so memory that the
+	 * tests of other modules or other processes allocate later is not accounted for.
+	 *
+	 * @param concurrentModules the number of modules that may be testing at the same time
+	 * @return the amount of memory, in MiB; {@code 0} if it cannot be determined
+	 * @throws IllegalArgumentException if {@code concurrentModules} is not positive
+	 */
+	public static long getAvailableMemory(int concurrentModules)
+	{
+		if (concurrentModules <= 0)
+			throw new IllegalArgumentException("concurrentModules must be positive: " + concurrentModules);
+		long available = getMemInfoAvailable(Paths.get("/proc/meminfo"));
+		if (available < 0)
+		{
+			OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+			if (!(os instanceof com.sun.management.OperatingSystemMXBean))
+				return 0;
+			available = ((com.sun.management.OperatingSystemMXBean) os).getFreePhysicalMemorySize();
+		}
+		return available / concurrentModules / (1024 * 1024);
+	}
+
+	/**
+	 * @param memInfo a file in the format of {@code /proc/meminfo}
+	 * @return the number of bytes of {@code MemAvailable}; {@code -1} if the file or the field does not exist, or
+	 * is malformed
+	 */
+	public static long getMemInfoAvailable(Path memInfo)
+	{
+		if (Files.notExists(memInfo))
+			return -1;
+		try
+		{
+			for (String line : Files.readAllLines(memInfo, StandardCharsets.US_ASCII))
+			{
+				// MemAvailable:   12345678 kB
+				if (!line.startsWith("MemAvailable:"))
+					continue;
+				String[] fields = line.substring("MemAvailable:".length()).trim().split("\\s+");
+				return Long.parseLong(fields[0]) * 1024;
+			}
+		}
+		catch (IOException | NumberFormatException e)
+		{
+			return -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private CtestResourceSpec()
+	{
+	}
+}
@@ -0,0 +1,54 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A test, as listed by {@code ctest --show-only}.
+ */
+public final class CtestTest
+{
+	private final String name;
+	private final List<String> labels;
+
+	/**
+	 * Creates a new test.
+	 *
+	 * @param name   the name of the test
+	 * @param labels the values of the test's {@code LABELS} property
+	 * @throws NullPointerException if {@code name} or {@code labels} are null
+	 */
+	public CtestTest(String name, List<String> labels)
+	{
+		if (name == null)
+			throw new NullPointerException("name may not be null");
+		if (labels == null)
+			throw new NullPointerException("labels may not be null");
+		this.name = name;
+		this.labels = Collections.unmodifiableList(labels);
+	}
+
+	/**
+	 * @return the name of the test
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return the values of the test's {@code LABELS} property
+	 */
+	public List<String> getLabels()
+	{
+		return labels;
+	}
+
+	@Override
+	public String toString()
+	{
+		if (labels.isEmpty())
+			return name;
+		return name + " " + labels;
+	}
+}
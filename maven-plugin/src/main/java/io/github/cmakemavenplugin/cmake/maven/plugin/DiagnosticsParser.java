@@ -0,0 +1,368 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recognizes compiler and CMake diagnostics in the output of a process.
+ * <p>
+ * Supported formats:
+ * <ul>
+ * <li>GCC and Clang: {@code file:line:column: warning: message [-Wcategory]}</li>
+ * <li>MSVC: {@code file(line,column): warning C4996: message}</li>
+ * <li>CMake: {@code CMake Error at file:line (command):}, followed by an indented message</li>
+ * </ul>
+ * Repeated diagnostics, such as a warning in a header that many source files include, are reported once
+ * along with the number of times that they occurred. Counts are kept for every diagnostic, but at most
+ * {@link #MAX_UNIQUE_DIAGNOSTICS} unique diagnostics are retained so that memory use does not grow with the
+ * size of the log. For the same reason, counts are broken down by at most {@link #MAX_FILES} files and
+ * {@link #MAX_CATEGORIES} categories; the rest are counted under {@value #OTHER}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class DiagnosticsParser implements ProcessListener
+{
+	/**
+	 * The maximum number of unique diagnostics to retain.
+	 */
+	private static final int MAX_UNIQUE_DIAGNOSTICS = 10_000;
+	/**
+	 * The maximum number of strings to intern.
+	 */
+	private static final int MAX_INTERNED_STRINGS = 4 * MAX_UNIQUE_DIAGNOSTICS;
+	/**
+	 * The maximum number of files to count diagnostics for individually.
+	 */
+	private static final int MAX_FILES = 1000;
+	/**
+	 * The maximum number of categories to count diagnostics for individually.
+	 */
+	private static final int MAX_CATEGORIES = 1000;
+	/**
+	 * The file or category that diagnostics are counted under once the maximum is reached.
+	 */
+	public static final String OTHER = "(other)";
+	private static final Pattern GCC = Pattern.compile(
+		"^(.+?):(\\d+):(?:(\\d+):)? (fatal error|error|warning): (.*?)(?: \\[(-W[^\\]]+)])?$");
+	private static final Pattern MSVC = Pattern.compile(
+		"^\\s*(.+?)\\((\\d+)(?:,(\\d+))?\\)\\s*: (fatal error|error|warning) ([A-Z]+\\d+): (.*)$");
+	private static final Pattern CMAKE = Pattern.compile(
+		"^CMake (Error|Warning|Warning \\(dev\\)|Deprecation Warning|Deprecation Error) at (.+?):(\\d+)" +
+			"(?: \\((\\w+)\\))?:$");
+	/**
+	 * Maps each string to a canonical instance, so that repeated file names, categories and messages are
+	 * stored once.
+	 */
+	private final Map<String, String> strings = new HashMap<>();
+	/**
+	 * Maps each unique diagnostic to the number of times that it occurred.
+	 */
+	private final Map<Diagnostic, Integer> diagnostics = new LinkedHashMap<>();
+	/**
+	 * Maps each file to the number of errors and warnings in it.
+	 */
+	private final Map<String, Counts> countsByFile = new TreeMap<>();
+	/**
+	 * Maps each category to the number of diagnostics in it.
+	 */
+	private final Map<String, Integer> countsByCategory = new TreeMap<>();
+	private final Counts total = new Counts();
+	/**
+	 * A CMake diagnostic whose message is on the following lines; {@code null} if none.
+	 */
+	private Diagnostic pendingCmakeDiagnostic;
+
+	@Override
+	public void onLine(String line)
+	{
+		if (pendingCmakeDiagnostic != null)
+		{
+			if (line.trim().isEmpty())
+				return;
+			Diagnostic diagnostic = pendingCmakeDiagnostic;
+			pendingCmakeDiagnostic = null;
+			if (line.startsWith(" "))
+			{
+				add(new Diagnostic(diagnostic.level, diagnostic.category, diagnostic.file, diagnostic.line, 0,
+					intern(line.trim())));
+				return;
+			}
+			add(diagnostic);
+		}
+		// Cheap checks first, since most lines are not diagnostics
+		if (line.startsWith("CMake "))
+		{
+			Matcher matcher = CMAKE.matcher(line);
+			if (matcher.matches())
+			{
+				String level = toLevel(matcher.group(1));
+				String command = matcher.group(4);
+				String category;
+				if (command == null)
+					category = "cmake";
+				else
+					category = intern("cmake:" + command);
+				pendingCmakeDiagnostic = new Diagnostic(level, category, intern(matcher.group(2)),
+					Integer.parseInt(matcher.group(3)), 0, "");
+			}
+			return;
+		}
+		if (!line.contains("error") && !line.contains("warning"))
+			return;
+		Matcher matcher = GCC.matcher(line);
+		if (matcher.matches())
+		{
+			String category = matcher.group(6);
+			if (category == null)
+				category = matcher.group(4);
+			add(new Diagnostic(toLevel(matcher.group(4)), intern(category), intern(matcher.group(1)),
+				Integer.parseInt(matcher.group(2)), parseColumn(matcher.group(3)), intern(matcher.group(5))));
+			return;
+		}
+		matcher = MSVC.matcher(line);
+		if (matcher.matches())
+		{
+			add(new Diagnostic(toLevel(matcher.group(4)), intern(matcher.group(5)), intern(matcher.group(1)),
+				Integer.parseInt(matcher.group(2)), parseColumn(matcher.group(3)), intern(matcher.group(6))));
+		}
+	}
+
+	/**
+	 * Records a diagnostic whose message is still pending, if any. Must be invoked after the last line of
+	 * output.
+	 */
+	public void finish()
+	{
+		if (pendingCmakeDiagnostic != null)
+		{
+			add(pendingCmakeDiagnostic);
+			pendingCmakeDiagnostic = null;
+		}
+	}
+
+	/**
+	 * @param diagnostic a diagnostic
+	 */
+	private void add(Diagnostic diagnostic)
+	{
+		total.add(diagnostic.level);
+		countsByFile.computeIfAbsent(getKey(countsByFile, diagnostic.file, MAX_FILES), key -> new Counts()).
+			add(diagnostic.level);
+		countsByCategory.merge(getKey(countsByCategory, diagnostic.category, MAX_CATEGORIES), 1, Integer::sum);
+		Integer occurrences = diagnostics.get(diagnostic);
+		if (occurrences != null)
+			diagnostics.put(diagnostic, occurrences + 1);
+		else if (diagnostics.size() < MAX_UNIQUE_DIAGNOSTICS)
+			diagnostics.put(diagnostic, 1);
+	}
+
+	/**
+	 * @param counts     counts, indexed by file or category
+	 * @param key        the file or category of a diagnostic
+	 * @param maxEntries the maximum number of files or categories to count individually
+	 * @return the key to count the diagnostic under
+	 */
+	private static String getKey(Map<String, ?> counts, String key, int maxEntries)
+	{
+		if (counts.size() < maxEntries || counts.containsKey(key))
+			return key;
+		return OTHER;
+	}
+
+	/**
+	 * @param value a string
+	 * @return the canonical instance of the string
+	 */
+	private String intern(String value)
+	{
+		String existing = strings.get(value);
+		if (existing != null)
+			return existing;
+		if (strings.size() < MAX_INTERNED_STRINGS)
+			strings.put(value, value);
+		return value;
+	}
+
+	/**
+	 * @param value a column number, or {@code null}
+	 * @return the column number, or 0 if it is unknown
+	 */
+	private static int parseColumn(String value)
+	{
+		if (value == null)
+			return 0;
+		return Integer.parseInt(value);
+	}
+
+	/**
+	 * @param severity the severity reported by a tool
+	 * @return the equivalent SARIF level
+	 */
+	private static String toLevel(String severity)
+	{
+		if (severity.contains("rror"))
+			return "error";
+		return "warning";
+	}
+
+	/**
+	 * @return the number of errors
+	 */
+	public int getErrors()
+	{
+		return total.errors;
+	}
+
+	/**
+	 * @return the number of warnings
+	 */
+	public int getWarnings()
+	{
+		return total.warnings;
+	}
+
+	/**
+	 * @return the number of unique diagnostics
+	 */
+	public int getUniqueDiagnostics()
+	{
+		return diagnostics.size();
+	}
+
+	/**
+	 * Writes the diagnostics in SARIF format.
+	 *
+	 * @param path the file to write to
+	 * @throws IOException if an I/O error occurs
+	 * @see <a href="https://docs.oasis-open.org/sarif/sarif/v2.1.0/sarif-v2.1.0.html">SARIF 2.1.0</a>
+	 */
+	public void writeSarif(Path path) throws IOException
+	{
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectNode root = mapper.createObjectNode();
+		root.put("version", "2.1.0");
+		root.put("$schema", "https://json.schemastore.org/sarif-2.1.0.json");
+		ObjectNode run = root.putArray("runs").addObject();
+		ObjectNode driver = run.putObject("tool").putObject("driver");
+		driver.put("name", "cmake-maven-plugin");
+		ArrayNode rules = driver.putArray("rules");
+		for (String category : countsByCategory.keySet())
+			if (!category.equals(OTHER))
+				rules.addObject().put("id", category);
+
+		ArrayNode results = run.putArray("results");
+		for (Entry<Diagnostic, Integer> entry : diagnostics.entrySet())
+		{
+			Diagnostic diagnostic = entry.getKey();
+			ObjectNode result = results.addObject();
+			result.put("ruleId", diagnostic.category);
+			result.put("level", diagnostic.level);
+			result.putObject("message").put("text", diagnostic.message);
+			ObjectNode physicalLocation = result.putArray("locations").addObject().
+				putObject("physicalLocation");
+			physicalLocation.putObject("artifactLocation").put("uri", diagnostic.file.replace('\\', '/'));
+			ObjectNode region = physicalLocation.putObject("region");
+			region.put("startLine", diagnostic.line);
+			if (diagnostic.column > 0)
+				region.put("startColumn", diagnostic.column);
+			result.put("occurrenceCount", entry.getValue());
+		}
+
+		ObjectNode properties = run.putObject("properties");
+		properties.put("errors", total.errors);
+		properties.put("warnings", total.warnings);
+		ObjectNode files = properties.putObject("files");
+		for (Entry<String, Counts> entry : countsByFile.entrySet())
+		{
+			ObjectNode counts = files.putObject(entry.getKey());
+			counts.put("errors", entry.getValue().errors);
+			counts.put("warnings", entry.getValue().warnings);
+		}
+		ObjectNode categories = properties.putObject("categories");
+		for (Entry<String, Integer> entry : countsByCategory.entrySet())
+			categories.put(entry.getKey(), entry.getValue());
+
+		Files.createDirectories(path.getParent());
+		mapper.writeValue(path.toFile(), root);
+	}
+
+	/**
+	 * The number of errors and warnings.
+	 */
+	private static final class Counts
+	{
+		int errors;
+		int warnings;
+
+		/**
+		 * @param level the SARIF level of a diagnostic
+		 */
+		void add(String level)
+		{
+			if (level.equals("error"))
+				++errors;
+			else
+				++warnings;
+		}
+	}
+
+	/**
+	 * A diagnostic, without the number of times that it occurred.
+	 */
+	private static final class Diagnostic
+	{
+		final String level;
+		final String category;
+		final String file;
+		final int line;
+		final int column;
+		final String message;
+
+		/**
+		 * @param level    the SARIF level ({@code error} or {@code warning})
+		 * @param category the warning flag, error code or CMake command that produced the diagnostic
+		 * @param file     the file that the diagnostic refers to
+		 * @param line     the line number
+		 * @param column   the column number, or 0 if it is unknown
+		 * @param message  the message
+		 */
+		Diagnostic(String level, String category, String file, int line, int column, String message)
+		{
+			this.level = level;
+			this.category = category;
+			this.file = file;
+			this.line = line;
+			this.column = column;
+			this.message = message;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(file, line, column, message);
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Diagnostic))
+				return false;
+			Diagnostic other = (Diagnostic) o;
+			return line == other.line && column == other.column && file.equals(other.file) &&
+				message.equals(other.message) && level.equals(other.level);
+		}
+	}
+}
@@ -0,0 +1,331 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.archivers.zip.DefaultBackingStoreSupplier;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.UnixStat;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+
+/**
+ * Packages a directory into an archive, reading each file directly from the directory.
+ */
+public final class DirectoryArchiver
+{
+	/**
+	 * Packages a directory into a ZIP file.
+	 *
+	 * @param source  the directory to package
+	 * @param target  the ZIP file to write
+	 * @param threads the number of threads to compress entries with. If greater than 1, entries are compressed
+	 *                concurrently into temporary files under {@code scratch} before being merged into
+	 *                {@code target}.
+	 * @param scratch the directory to write temporary files to. It is deleted before the method returns.
+	 * @param log     the logger to report problems to
+	 * @throws IOException          if an I/O error occurs
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	public static void zip(Path source, Path target, int threads, Path scratch, Log log)
+		throws IOException, InterruptedException
+	{
+		List<ArchiveItem> items = listItems(source);
+		Files.createDirectories(target.getParent());
+		if (threads <= 1)
+		{
+			try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(target))
+			{
+				for (ArchiveItem item : items)
+				{
+					out.putArchiveEntry(item.toZipEntry());
+					try (InputStream in = item.open())
+					{
+						copy(in, out);
+					}
+					out.closeArchiveEntry();
+				}
+			}
+			return;
+		}
+		Files.createDirectories(scratch);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			ParallelScatterZipCreator creator = new ParallelScatterZipCreator(executor,
+				new DefaultBackingStoreSupplier(scratch));
+			for (ArchiveItem item : items)
+			{
+				InputStreamSupplier supplier = () ->
+				{
+					try
+					{
+						return item.open();
+					}
+					catch (IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
+				};
+				creator.addArchiveEntry(item.toZipEntry(), supplier);
+			}
+			try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(target))
+			{
+				creator.writeTo(out);
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof UncheckedIOException)
+					throw ((UncheckedIOException) cause).getCause();
+				throw new IOException(cause);
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+			FileOperations.deleteRecursively(scratch, log);
+		}
+	}
+
+	/**
+	 * Packages a directory into a TAR stream.
+	 *
+	 * @param source the directory to package
+	 * @param out    the stream to write the TAR to. The stream is finished but not closed.
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void tar(Path source, OutputStream out) throws IOException
+	{
+		List<ArchiveItem> items = listItems(source);
+		TarArchiveOutputStream tar = new TarArchiveOutputStream(out, StandardCharsets.UTF_8.name());
+		tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+		tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+		for (ArchiveItem item : items)
+		{
+			tar.putArchiveEntry(item.toTarEntry());
+			if (item.attributes.isRegularFile())
+			{
+				try (InputStream in = item.open())
+				{
+					copy(in, tar);
+				}
+			}
+			tar.closeArchiveEntry();
+		}
+		tar.finish();
+	}
+
+	/**
+	 * Lists the contents of a directory, parents before children.
+	 *
+	 * @param source the directory
+	 * @return the directories, files and symbolic links under {@code source}
+	 * @throws IOException if an I/O error occurs
+	 */
+	static List<ArchiveItem> listItems(Path source) throws IOException
+	{
+		boolean posix = Files.getFileAttributeView(source, PosixFileAttributeView.class) != null;
+		List<ArchiveItem> result = new ArrayList<>();
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+			{
+				if (!dir.equals(source))
+				{
+					int mode = getMode(dir, posix, UnixStat.DEFAULT_DIR_PERM);
+					result.add(new ArchiveItem(source, dir, attrs, mode));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+			{
+				int defaultMode;
+				if (attrs.isSymbolicLink())
+					defaultMode = UnixStat.DEFAULT_LINK_PERM;
+				else
+					defaultMode = UnixStat.DEFAULT_FILE_PERM;
+				result.add(new ArchiveItem(source, file, attrs, getMode(file, posix, defaultMode)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException
+			{
+				throw e;
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @param path        a path
+	 * @param posix       {@code true} if the filesystem supports POSIX permissions
+	 * @param defaultMode the permissions to use if the filesystem does not support POSIX permissions
+	 * @return the unix permission bits of the path
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static int getMode(Path path, boolean posix, int defaultMode) throws IOException
+	{
+		if (!posix || Files.isSymbolicLink(path))
+			return defaultMode;
+		Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+		int result = 0;
+		for (PosixFilePermission permission : permissions)
+		{
+			// PosixFilePermission is declared in order OWNER_READ (0400) ... OTHERS_EXECUTE (0001)
+			result |= 1 << (8 - permission.ordinal());
+		}
+		return result;
+	}
+
+	/**
+	 * Copies the contents of an {@code InputStream} to an {@code OutputStream}.
+	 *
+	 * @param in  the stream to read from
+	 * @param out the stream to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void copy(InputStream in, OutputStream out) throws IOException
+	{
+		byte[] buffer = new byte[64 * 1024];
+		while (true)
+		{
+			int count = in.read(buffer);
+			if (count == -1)
+				break;
+			out.write(buffer, 0, count);
+		}
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private DirectoryArchiver()
+	{
+	}
+
+	/**
+	 * A directory, file or symbolic link that will be written to an archive.
+	 */
+	static final class ArchiveItem
+	{
+		/**
+		 * The path of the item on the filesystem.
+		 */
+		final Path path;
+		/**
+		 * The name of the item in the archive.
+		 */
+		final String name;
+		/**
+		 * The attributes of the item.
+		 */
+		final BasicFileAttributes attributes;
+		/**
+		 * The unix permission bits of the item.
+		 */
+		final int mode;
+
+		/**
+		 * @param root       the directory being packaged
+		 * @param path       the path of the item
+		 * @param attributes the attributes of the item
+		 * @param mode       the unix permission bits of the item
+		 */
+		ArchiveItem(Path root, Path path, BasicFileAttributes attributes, int mode)
+		{
+			this.path = path;
+			String relativePath = root.relativize(path).toString().replace('\\', '/');
+			if (attributes.isDirectory())
+				this.name = relativePath + "/";
+			else
+				this.name = relativePath;
+			this.attributes = attributes;
+			this.mode = mode;
+		}
+
+		/**
+		 * @return the contents of the item. Directories are empty; symbolic links contain the link target.
+		 * @throws IOException if an I/O error occurs
+		 */
+		InputStream open() throws IOException
+		{
+			if (attributes.isDirectory())
+				return new ByteArrayInputStream(new byte[0]);
+			if (attributes.isSymbolicLink())
+			{
+				String linkTarget = Files.readSymbolicLink(path).toString().replace('\\', '/');
+				return new ByteArrayInputStream(linkTarget.getBytes(StandardCharsets.UTF_8));
+			}
+			return Files.newInputStream(path);
+		}
+
+		/**
+		 * @return a TAR entry describing the item
+		 * @throws IOException if an I/O error occurs
+		 */
+		TarArchiveEntry toTarEntry() throws IOException
+		{
+			TarArchiveEntry result;
+			if (attributes.isSymbolicLink())
+			{
+				result = new TarArchiveEntry(name, TarConstants.LF_SYMLINK);
+				result.setLinkName(Files.readSymbolicLink(path).toString().replace('\\', '/'));
+			}
+			else
+			{
+				result = new TarArchiveEntry(name);
+				if (attributes.isRegularFile())
+					result.setSize(attributes.size());
+			}
+			result.setMode(mode);
+			result.setModTime(attributes.lastModifiedTime());
+			return result;
+		}
+
+		/**
+		 * @return a ZIP entry describing the item
+		 */
+		ZipArchiveEntry toZipEntry()
+		{
+			ZipArchiveEntry result = new ZipArchiveEntry(name);
+			result.setMethod(ZipEntry.DEFLATED);
+			result.setTime(attributes.lastModifiedTime().toMillis());
+			if (attributes.isSymbolicLink())
+				result.setUnixMode(UnixStat.LINK_FLAG | mode);
+			else if (attributes.isDirectory())
+				result.setUnixMode(UnixStat.DIR_FLAG | mode);
+			else
+				result.setUnixMode(UnixStat.FILE_FLAG | mode);
+			return result;
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package io.github.cmakemavenplugin.cmake.maven.plugin;
 
 import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugin.logging.Log;
@@ -9,12 +8,14 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 
 /**
@@ -46,25 +47,39 @@ public class GenerateMojo extends CmakeMojo
 	 */
 	@Parameter
 	private String generator;
+	/**
+	 * The configure preset to use, equivalent to {@code cmake --preset {preset}}. The preset is read from the
+	 * {@code CMakePresets.json} file in {@link #sourcePath}. If the preset specifies a {@code binaryDir}, it
+	 * overrides {@link #projectDirectory}.
+	 */
+	@Parameter(property = "cmake.configurePreset")
+	private String preset;
+	/**
+	 * A directory, typically shared between builds, that caches the state of configured projects. When set,
+	 * a {@link #projectDirectory} that has not been configured yet is seeded with the {@code CMakeCache.txt}
+	 * and compiler detection results of an earlier build that used the same toolchain and CMake scripts. A
+	 * snapshot is not used if one of the compilers it detected was modified, or is no longer the first match
+	 * on the {@code PATH}.
+	 */
+	@Parameter(property = "cmake.configureCache")
+	private File configureCache;
 
 	/**
 	 * Creates a new instance.
 	 *
-	 * @param project       an instance of {@code MavenProject}
-	 * @param pluginManager an instance of {@code PluginManager}
-	 * @param session       an instance of {@code MavenSession}
+	 * @param project          an instance of {@code MavenProject}
+	 * @param repositorySystem an instance of {@code RepositorySystem}
+	 * @param session          an instance of {@code MavenSession}
 	 */
 	@Inject
-	public GenerateMojo(MavenProject project, BuildPluginManager pluginManager, MavenSession session)
+	public GenerateMojo(MavenProject project, RepositorySystem repositorySystem, MavenSession session)
 	{
-		super(project, session, pluginManager);
+		super(project, session, repositorySystem);
 	}
 
 	@Override
-	public void execute()
-		throws MojoExecutionException
+	protected void run() throws MojoExecutionException
 	{
-		super.execute();
 		try
 		{
 			if (!sourcePath.exists())
@@ -82,34 +97,87 @@ public class GenerateMojo extends CmakeMojo
 					pluginDescriptor.getGroupId() + ":" + pluginDescriptor.getArtifactId() + ":" +
 					pluginDescriptor.getVersion() + ":" + pluginDescriptor.getName() + " are missing or invalid");
 			}
+			ProcessBuilder processBuilder = new ProcessBuilder();
+			overrideEnvironmentVariables(processBuilder);
+			boolean binaryDirectoryInPreset = false;
+			if (preset != null)
+			{
+				Path binaryDirectory;
+				try
+				{
+					binaryDirectory = getPresets(sourcePath).getBinaryDirectory(preset, processBuilder.environment());
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new MojoExecutionException(e.getMessage(), e);
+				}
+				if (binaryDirectory != null)
+				{
+					projectDirectory = binaryDirectory.toFile();
+					binaryDirectoryInPreset = true;
+				}
+			}
 			Path projectPath = projectDirectory.toPath();
 			Files.createDirectories(projectPath);
 
 			downloadBinariesIfNecessary();
 
-			ProcessBuilder processBuilder = new ProcessBuilder().directory(projectDirectory);
-			overrideEnvironmentVariables(processBuilder);
-
 			String cmakePath = getBinaryPath("cmake", processBuilder).toString();
 			processBuilder.command().add(cmakePath);
 
+			if (preset != null)
+			{
+				// cmake looks for CMakePresets.json in the source directory
+				processBuilder.directory(sourcePath);
+				Collections.addAll(processBuilder.command(), "-S", sourcePath.getAbsolutePath(), "--preset",
+					preset);
+				if (!binaryDirectoryInPreset)
+					Collections.addAll(processBuilder.command(), "-B", projectPath.toAbsolutePath().toString());
+			}
+			else
+				processBuilder.directory(projectDirectory);
+
 			if (generator != null && !generator.trim().isEmpty())
 				Collections.addAll(processBuilder.command(), "-G", generator);
 
 			addOptions(processBuilder);
-			processBuilder.command().add(sourcePath.getAbsolutePath());
+			if (preset == null)
+				processBuilder.command().add(sourcePath.getAbsolutePath());
 
 			Log log = getLog();
 			if (log.isDebugEnabled())
 			{
 				log.debug("sourcePath: " + sourcePath);
 				log.debug("projectDirectory: " + projectPath);
+				log.debug("preset: " + preset);
 				log.debug("Environment: " + processBuilder.environment());
 				log.debug("Command-line: " + processBuilder.command());
 			}
-			int returnCode = Mojos.waitFor(processBuilder, getLog());
+			ConfigureCache cache = null;
+			String fingerprint = null;
+			boolean seeded = false;
+			if (configureCache != null && Files.notExists(projectPath.resolve("CMakeCache.txt")))
+			{
+				cache = new ConfigureCache(configureCache.toPath(), log);
+				fingerprint = cache.getFingerprint(processBuilder, sourcePath.toPath(), projectPath,
+					Paths.get(project.getBuild().getDirectory()));
+				seeded = cache.restore(fingerprint, processBuilder, sourcePath.toPath(), projectPath);
+			}
+			getSpan().setAttribute("cmake.generator", generator).
+				setAttribute("cmake.preset", preset).
+				setAttribute("cmake.configure_cache.seeded", seeded);
+			int returnCode = waitFor(processBuilder);
 			if (returnCode != 0)
+			{
+				if (seeded)
+				{
+					log.warn(projectPath + " was seeded from " + configureCache.toPath().resolve(fingerprint) +
+						". Delete the snapshot if it is stale.");
+				}
 				throw new MojoExecutionException("Return code: " + returnCode);
+			}
+			if (cache != null && !seeded)
+				cache.save(fingerprint, sourcePath.toPath(), projectPath);
 		}
 		catch (InterruptedException | IOException e)
 		{
@@ -0,0 +1,111 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Terminates a process and its descendants if the process stops producing output.
+ * <p>
+ * Before terminating the processes, the watchdog logs their stack traces, if a debugger is available, so
+ * that the cause of the hang can be diagnosed.
+ */
+public final class IdleWatchdog implements ProcessListener
+{
+	private final long timeout;
+	private final Platform platform;
+	private final Log log;
+	/**
+	 * The time of the last line of output, in nanoseconds.
+	 */
+	private volatile long lastOutput;
+	private volatile boolean fired;
+	private volatile boolean stopped;
+	private Thread watcher;
+
+	/**
+	 * Creates a new watchdog.
+	 *
+	 * @param timeout  the number of seconds without output after which the process is terminated
+	 * @param platform the current platform
+	 * @param log      the logger to report to
+	 * @throws NullPointerException     if {@code platform} or {@code log} are null
+	 * @throws IllegalArgumentException if {@code timeout} is not positive
+	 */
+	public IdleWatchdog(int timeout, Platform platform, Log log)
+	{
+		if (timeout <= 0)
+			throw new IllegalArgumentException("timeout must be positive: " + timeout);
+		if (platform == null)
+			throw new NullPointerException("platform may not be null");
+		if (log == null)
+			throw new NullPointerException("log may not be null");
+		this.timeout = TimeUnit.SECONDS.toNanos(timeout);
+		this.platform = platform;
+		this.log = log;
+	}
+
+	@Override
+	public void onStart(Process process)
+	{
+		lastOutput = System.nanoTime();
+		watcher = new Thread(() ->
+		{
+			while (!stopped && process.isAlive())
+			{
+				long idle = System.nanoTime() - lastOutput;
+				if (idle >= timeout)
+				{
+					fired = true;
+					log.warn("No output for " + TimeUnit.NANOSECONDS.toSeconds(idle) + " seconds. Terminating " +
+						"the process and its descendants.");
+					ProcessTree.logStackTraces(process, platform, log);
+					ProcessTree.destroy(process, platform, log);
+					return;
+				}
+				try
+				{
+					Thread.sleep(Math.min(TimeUnit.NANOSECONDS.toMillis(timeout - idle) + 1, 1000));
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+			}
+		}, "cmake-watchdog");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	@Override
+	public void onLine(String line)
+	{
+		lastOutput = System.nanoTime();
+	}
+
+	@Override
+	public void onExit(int exitCode)
+	{
+		if (watcher == null)
+			return;
+		stopped = true;
+		watcher.interrupt();
+		try
+		{
+			watcher.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return {@code true} if the watchdog terminated the process
+	 */
+	public boolean hasFired()
+	{
+		return fired;
+	}
+}
@@ -0,0 +1,499 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The files installed by {@code cmake --install}, along with enough state to detect whether a subsequent
+ * installation would change anything.
+ * <p>
+ * CMake lists the installed files in {@code install_manifest.txt}. The files they are installed from are
+ * listed by the {@code file(INSTALL ... FILES ...)} commands of the {@code cmake_install.cmake} scripts in the
+ * build tree. If every source file, every script and every installed file still has the size and timestamp
+ * it had during the previous installation, re-running the installation would be a no-op. Timestamps are
+ * compared for equality, so files that are replaced by older copies (e.g. restored from a cache) are
+ * detected as well.
+ * <p>
+ * Files written by {@code install(CODE)} are not tracked.
+ */
+public final class InstallManifest
+{
+	/**
+	 * The name of the manifest that CMake writes into the build tree.
+	 */
+	private static final String MANIFEST_FILENAME = "install_manifest.txt";
+	/**
+	 * The name of the file that records the state of the previous installation.
+	 */
+	private static final String STATE_FILENAME = "install_manifest.state";
+	/**
+	 * The name of the install scripts that CMake writes into each directory of the build tree.
+	 */
+	private static final String SCRIPT_FILENAME = "cmake_install.cmake";
+	private static final String COMMAND_PREFIX = "#command=";
+	private static final String SOURCE_TYPE = "source";
+	private static final String INSTALLED_TYPE = "installed";
+	/**
+	 * Matches the start of a {@code file(INSTALL ...)} or {@code include(...)} command.
+	 */
+	private static final Pattern COMMAND = Pattern.compile("\\b(file|include)\\s*\\(\\s*(INSTALL\\b)?");
+	/**
+	 * Matches a quoted or unquoted argument, or the end of the command.
+	 */
+	private static final Pattern ARGUMENT = Pattern.compile("\\s*(?:\"((?:[^\"\\\\]|\\\\.)*)\"|([^\\s()\"]+)|(\\)))");
+
+	private final String command;
+	private final Map<Path, FileState> sources;
+	private final Map<Path, FileState> files;
+
+	/**
+	 * Returns the files listed in the manifest that CMake wrote during the last installation.
+	 *
+	 * @param projectDirectory the project binary directory
+	 * @return an empty set if the manifest does not exist
+	 * @throws IOException if an I/O error occurs while reading the manifest
+	 */
+	public static Set<Path> readFiles(Path projectDirectory) throws IOException
+	{
+		Path manifest = projectDirectory.resolve(MANIFEST_FILENAME);
+		if (Files.notExists(manifest))
+			return Collections.emptySet();
+		Set<Path> result = new LinkedHashSet<>();
+		try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8))
+		{
+			while (true)
+			{
+				String line = reader.readLine();
+				if (line == null)
+					break;
+				line = line.trim();
+				if (!line.isEmpty())
+					result.add(Paths.get(line));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Captures the state of an installation that just completed.
+	 *
+	 * @param command the command-line that performed the installation
+	 * @param sources the state of the source files before the installation, as returned by
+	 *                {@link #getSources(Path)}
+	 * @param files   the installed files
+	 * @return the installation state
+	 * @throws IOException if an I/O error occurs while reading the file attributes
+	 */
+	public static InstallManifest capture(List<String> command, Map<Path, FileState> sources, Set<Path> files)
+		throws IOException
+	{
+		Map<Path, FileState> states = new LinkedHashMap<>();
+		for (Path file : files)
+		{
+			FileState state = FileState.of(file);
+			if (state != null)
+				states.put(file, state);
+		}
+		return new InstallManifest(String.join(" ", command), sources, states);
+	}
+
+	/**
+	 * Loads the state of the previous installation.
+	 *
+	 * @param projectDirectory the project binary directory
+	 * @return null if there is no previous state
+	 * @throws IOException if an I/O error occurs while reading the state
+	 */
+	public static InstallManifest load(Path projectDirectory) throws IOException
+	{
+		Path stateFile = projectDirectory.resolve(STATE_FILENAME);
+		if (Files.notExists(stateFile))
+			return null;
+		String command = null;
+		Map<Path, FileState> sources = new LinkedHashMap<>();
+		Map<Path, FileState> files = new LinkedHashMap<>();
+		try (BufferedReader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8))
+		{
+			while (true)
+			{
+				String line = reader.readLine();
+				if (line == null)
+					break;
+				if (line.startsWith(COMMAND_PREFIX))
+				{
+					command = line.substring(COMMAND_PREFIX.length());
+					continue;
+				}
+				// <type>\t<size>\t<lastModified>\t<path>
+				String[] tokens = line.split("\t", 4);
+				if (tokens.length != 4)
+					return null;
+				Map<Path, FileState> target;
+				switch (tokens[0])
+				{
+					case SOURCE_TYPE:
+						target = sources;
+						break;
+					case INSTALLED_TYPE:
+						target = files;
+						break;
+					default:
+						return null;
+				}
+				try
+				{
+					target.put(Paths.get(tokens[3]),
+						new FileState(Long.parseLong(tokens[1]), Long.parseLong(tokens[2])));
+				}
+				catch (NumberFormatException e)
+				{
+					return null;
+				}
+			}
+		}
+		if (command == null)
+			return null;
+		return new InstallManifest(command, sources, files);
+	}
+
+	/**
+	 * Returns the state of the files that an installation would copy, and of the install scripts that list
+	 * them.
+	 *
+	 * @param projectDirectory the project binary directory
+	 * @return the state of each file ({@link FileState#MISSING} if it does not exist); {@code null} if the
+	 * install scripts refer to files through variables, so the files cannot be determined
+	 * @throws IOException if an I/O error occurs while reading the files
+	 */
+	public static Map<Path, FileState> getSources(Path projectDirectory) throws IOException
+	{
+		Map<Path, FileState> result = new TreeMap<>();
+		if (!addSources(projectDirectory.resolve(SCRIPT_FILENAME), result))
+			return null;
+		return result;
+	}
+
+	/**
+	 * Adds an install script, and the files that it installs, to a set of sources.
+	 *
+	 * @param script  an install script
+	 * @param sources the sources to add to
+	 * @return {@code false} if the script refers to files through variables
+	 * @throws IOException if an I/O error occurs while reading the files
+	 */
+	private static boolean addSources(Path script, Map<Path, FileState> sources) throws IOException
+	{
+		if (sources.containsKey(script))
+			return true;
+		FileState scriptState = FileState.of(script);
+		if (scriptState == null)
+		{
+			sources.put(script, FileState.MISSING);
+			return true;
+		}
+		sources.put(script, scriptState);
+		String contents = new String(Files.readAllBytes(script), StandardCharsets.UTF_8);
+		Matcher command = COMMAND.matcher(contents);
+		while (command.find())
+		{
+			boolean include = command.group(1).equals("include");
+			if (!include && command.group(2) == null)
+				continue;
+			// Quoted arguments are paths, unquoted arguments are keywords
+			List<String> arguments = new ArrayList<>();
+			BitSet quoted = new BitSet();
+			Matcher argument = ARGUMENT.matcher(contents);
+			argument.region(command.end(), contents.length());
+			while (argument.lookingAt() && argument.group(3) == null)
+			{
+				if (argument.group(1) != null)
+				{
+					quoted.set(arguments.size());
+					arguments.add(unescape(argument.group(1)));
+				}
+				else
+					arguments.add(argument.group(2));
+				argument.region(argument.end(), contents.length());
+			}
+			if (include)
+			{
+				// install(SCRIPT) and the scripts of subdirectories
+				if (arguments.isEmpty())
+					continue;
+				String path = arguments.get(0).replace("${CMAKE_CURRENT_LIST_DIR}",
+					script.getParent().toString());
+				if (path.contains("$") || !addSources(Paths.get(path), sources))
+					return false;
+				continue;
+			}
+			int files = arguments.indexOf("FILES");
+			if (files == -1)
+				continue;
+			for (int i = files + 1; i < arguments.size() && quoted.get(i); ++i)
+			{
+				String file = arguments.get(i);
+				if (file.contains("$"))
+					return false;
+				addFiles(Paths.get(file), sources);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a file, or the contents of a directory, to a set of sources.
+	 *
+	 * @param path    a file or directory
+	 * @param sources the sources to add to
+	 * @throws IOException if an I/O error occurs while reading the files
+	 */
+	private static void addFiles(Path path, Map<Path, FileState> sources) throws IOException
+	{
+		if (!Files.isDirectory(path))
+		{
+			FileState state = FileState.of(path);
+			if (state == null)
+				state = FileState.MISSING;
+			sources.put(path, state);
+			return;
+		}
+		// install(DIRECTORY) copies the entire tree, minus the files excluded by patterns
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+			{
+				sources.put(file, new FileState(attrs.size(), attrs.lastModifiedTime().toMillis()));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * @param argument a quoted CMake argument, without the quotes
+	 * @return the value of the argument
+	 */
+	private static String unescape(String argument)
+	{
+		if (argument.indexOf('\\') == -1)
+			return argument;
+		StringBuilder result = new StringBuilder(argument.length());
+		for (int i = 0; i < argument.length(); ++i)
+		{
+			char c = argument.charAt(i);
+			if (c == '\\' && i + 1 < argument.length())
+				c = argument.charAt(++i);
+			result.append(c);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @param command the command-line that performed the installation
+	 * @param sources the state of each source file before the installation
+	 * @param files   the state of each installed file
+	 * @throws AssertionError if any of the arguments are null
+	 */
+	private InstallManifest(String command, Map<Path, FileState> sources, Map<Path, FileState> files)
+	{
+		assert (command != null) : "command may not be null";
+		assert (sources != null) : "sources may not be null";
+		assert (files != null) : "files may not be null";
+		this.command = command;
+		this.sources = sources;
+		this.files = files;
+	}
+
+	/**
+	 * Indicates if re-running the installation would not change anything.
+	 *
+	 * @param command       the command-line that will perform the installation
+	 * @param sources       the current state of the source files, as returned by {@link #getSources(Path)}
+	 * @param manifestFiles the files listed in CMake's install manifest
+	 * @return {@code true} if the installation may be skipped
+	 * @throws IOException if an I/O error occurs while reading the file attributes
+	 */
+	public boolean isUpToDate(List<String> command, Map<Path, FileState> sources, Set<Path> manifestFiles)
+		throws IOException
+	{
+		if (!this.command.equals(String.join(" ", command)) || !this.sources.equals(sources) ||
+			!files.keySet().equals(manifestFiles))
+		{
+			return false;
+		}
+		for (Entry<Path, FileState> entry : files.entrySet())
+		{
+			if (!entry.getValue().equals(FileState.of(entry.getKey())))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the state to disk.
+	 *
+	 * @param projectDirectory the project binary directory
+	 * @throws IOException if an I/O error occurs while writing the state
+	 */
+	public void save(Path projectDirectory) throws IOException
+	{
+		Path stateFile = projectDirectory.resolve(STATE_FILENAME);
+		try (BufferedWriter writer = Files.newBufferedWriter(stateFile, StandardCharsets.UTF_8))
+		{
+			writer.write(COMMAND_PREFIX + command + "\n");
+			write(writer, SOURCE_TYPE, sources);
+			write(writer, INSTALLED_TYPE, files);
+		}
+	}
+
+	/**
+	 * @param writer the writer to write to
+	 * @param type   the type of the files
+	 * @param files  the state of each file
+	 * @throws IOException if an I/O error occurs while writing the state
+	 */
+	private static void write(BufferedWriter writer, String type, Map<Path, FileState> files) throws IOException
+	{
+		for (Entry<Path, FileState> entry : files.entrySet())
+		{
+			FileState state = entry.getValue();
+			writer.write(type + "\t" + state.size + "\t" + state.lastModified + "\t" + entry.getKey() + "\n");
+		}
+	}
+
+	/**
+	 * Deletes the state of the previous installation, forcing the next installation to run.
+	 *
+	 * @param projectDirectory the project binary directory
+	 * @throws IOException if an I/O error occurs while deleting the state
+	 */
+	public static void invalidate(Path projectDirectory) throws IOException
+	{
+		Files.deleteIfExists(projectDirectory.resolve(STATE_FILENAME));
+	}
+
+	/**
+	 * Deletes files that were installed by a previous installation but not by the current one.
+	 *
+	 * @param previous the files installed by the previous installation
+	 * @param current  the files installed by the current installation
+	 * @param prefix   the installation prefix ({@code null} if unknown). Directories under the prefix that
+	 *                 become empty are deleted as well.
+	 * @return the files that were deleted
+	 * @throws IOException if an I/O error occurs while deleting the files
+	 */
+	public static List<Path> deleteStaleFiles(Set<Path> previous, Set<Path> current, Path prefix)
+		throws IOException
+	{
+		List<Path> result = new ArrayList<>();
+		for (Path file : previous)
+		{
+			if (current.contains(file) || !Files.deleteIfExists(file))
+				continue;
+			result.add(file);
+			if (prefix == null)
+				continue;
+			Path parent = file.getParent();
+			while (parent != null && parent.startsWith(prefix) && !parent.equals(prefix) && isEmpty(parent))
+			{
+				Files.delete(parent);
+				parent = parent.getParent();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param directory a directory
+	 * @return {@code true} if the directory exists and is empty
+	 * @throws IOException if an I/O error occurs while listing the directory
+	 */
+	private static boolean isEmpty(Path directory) throws IOException
+	{
+		if (!Files.isDirectory(directory))
+			return false;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory))
+		{
+			return !stream.iterator().hasNext();
+		}
+	}
+
+	/**
+	 * The size and timestamp of a file.
+	 */
+	public static final class FileState
+	{
+		/**
+		 * The state of a file that does not exist.
+		 */
+		public static final FileState MISSING = new FileState(-1, -1);
+		private final long size;
+		private final long lastModified;
+
+		/**
+		 * @param file a file
+		 * @return null if the file does not exist
+		 * @throws IOException if an I/O error occurs while reading the file attributes
+		 */
+		public static FileState of(Path file) throws IOException
+		{
+			try
+			{
+				BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+				return new FileState(attributes.size(), attributes.lastModifiedTime().toMillis());
+			}
+			catch (NoSuchFileException e)
+			{
+				return null;
+			}
+		}
+
+		/**
+		 * @param size         the size of the file
+		 * @param lastModified the time the file was last modified, in milliseconds since the epoch
+		 */
+		FileState(long size, long lastModified)
+		{
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof FileState))
+				return false;
+			FileState other = (FileState) o;
+			return size == other.size && lastModified == other.lastModified;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(size, lastModified);
+		}
+	}
+}
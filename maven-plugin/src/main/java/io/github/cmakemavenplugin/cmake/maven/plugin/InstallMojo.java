@@ -1,19 +1,24 @@
 package io.github.cmakemavenplugin.cmake.maven.plugin;
 
+import io.github.cmakemavenplugin.cmake.maven.plugin.InstallManifest.FileState;
 import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.eclipse.aether.RepositorySystem;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Goal which installs project files generated by CMake, equivalent to {@code cmake --install {projectDirectory}}.
@@ -45,24 +50,49 @@ public class InstallMojo extends CmakeMojo
 	@Parameter(defaultValue = "${project.build.directory}/cmake")
 	private File projectDirectory;
 
+	/**
+	 * {@code true} if the installation should be skipped when neither the files being installed nor the
+	 * previously installed files have changed size or timestamp since the last run. Files that were installed
+	 * by the previous run but are no longer listed in {@code install_manifest.txt} are removed.
+	 */
+	@Parameter(property = "cmake.install.incremental", defaultValue = "false")
+	private boolean incremental;
+
+	/**
+	 * If set, the contents of {@link #prefix} are packaged into a ZIP file and attached to the project using
+	 * this classifier.
+	 */
+	@Parameter(property = "cmake.install.classifier")
+	private String classifier;
+
+	/**
+	 * The number of threads used to compress the attached artifact; if not specified, uses
+	 * <code>Runtime.getRuntime().availableProcessors()</code>.
+	 */
+	@Parameter(property = "cmake.install.packagingThreads", defaultValue = "0")
+	private int packagingThreads;
+
+	private final MavenProjectHelper projectHelper;
+
 	/**
 	 * Creates a new instance.
 	 *
-	 * @param project       an instance of {@code MavenProject}
-	 * @param pluginManager an instance of {@code PluginManager}
-	 * @param session       an instance of {@code MavenSession}
+	 * @param project          an instance of {@code MavenProject}
+	 * @param repositorySystem an instance of {@code RepositorySystem}
+	 * @param session          an instance of {@code MavenSession}
+	 * @param projectHelper    an instance of {@code MavenProjectHelper}
 	 */
 	@Inject
-	public InstallMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	public InstallMojo(MavenProject project, MavenSession session, RepositorySystem repositorySystem,
+		MavenProjectHelper projectHelper)
 	{
-		super(project, session, pluginManager);
+		super(project, session, repositorySystem);
+		this.projectHelper = projectHelper;
 	}
 
 	@Override
-	public void execute()
-		throws MojoExecutionException
+	protected void run() throws MojoExecutionException
 	{
-		super.execute();
 		try
 		{
 			Path projectPath = projectDirectory.toPath();
@@ -93,16 +123,101 @@ public class InstallMojo extends CmakeMojo
 			{
 				log.debug("projectDirectory: " + projectPath);
 				log.debug("config: " + config);
+				log.debug("incremental: " + incremental);
 				log.debug("Environment: " + processBuilder.environment());
 				log.debug("Command-line: " + processBuilder.command());
 			}
-			int returnCode = Mojos.waitFor(processBuilder, getLog());
-			if (returnCode != 0)
-				throw new MojoExecutionException("Return code: " + returnCode);
+			getSpan().setAttribute("cmake.config", config).
+				setAttribute("cmake.install.incremental", incremental);
+			install(processBuilder, projectPath);
+			if (classifier != null)
+			{
+				try (Span attachSpan = getSpan().child("attach-artifact"))
+				{
+					attachSpan.setAttribute("maven.classifier", classifier);
+					attachArtifact();
+				}
+			}
 		}
 		catch (InterruptedException | IOException e)
 		{
 			throw new MojoExecutionException("", e);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Runs the installation, skipping it if incremental mode is enabled and nothing changed.
+	 *
+	 * @param processBuilder the process that runs the installation
+	 * @param projectPath    the project binary directory
+	 * @throws IOException            if an I/O error occurs
+	 * @throws InterruptedException   if the thread was interrupted
+	 * @throws MojoExecutionException if the installation fails
+	 */
+	private void install(ProcessBuilder processBuilder, Path projectPath)
+		throws IOException, InterruptedException, MojoExecutionException
+	{
+		Log log = getLog();
+		Set<Path> previousFiles = Collections.emptySet();
+		Map<Path, FileState> sources = null;
+		if (incremental)
+		{
+			previousFiles = InstallManifest.readFiles(projectPath);
+			sources = InstallManifest.getSources(projectPath);
+			InstallManifest previousState = InstallManifest.load(projectPath);
+			if (sources == null)
+				log.debug("The install scripts refer to files through variables. Installing all files.");
+			else if (previousState != null &&
+				previousState.isUpToDate(processBuilder.command(), sources, previousFiles))
+			{
+				log.info("Installation is up-to-date");
+				getSpan().setAttribute("cmake.install.up_to_date", true);
+				return;
+			}
+			InstallManifest.invalidate(projectPath);
+		}
+		int returnCode = waitFor(processBuilder);
+		if (returnCode != 0)
+			throw new MojoExecutionException("Return code: " + returnCode);
+		if (incremental)
+		{
+			Set<Path> currentFiles = InstallManifest.readFiles(projectPath);
+			Path prefixPath;
+			if (prefix == null)
+				prefixPath = null;
+			else
+				prefixPath = Paths.get(prefix).toAbsolutePath();
+			for (Path file : InstallManifest.deleteStaleFiles(previousFiles, currentFiles, prefixPath))
+				log.info("Removed stale file: " + file);
+			if (sources != null)
+				InstallManifest.capture(processBuilder.command(), sources, currentFiles).save(projectPath);
+		}
+	}
+
+	/**
+	 * Packages the installation prefix and attaches it to the project.
+	 *
+	 * @throws IOException            if an I/O error occurs
+	 * @throws InterruptedException   if the thread was interrupted
+	 * @throws MojoExecutionException if {@code prefix} is not set
+	 */
+	private void attachArtifact() throws IOException, InterruptedException, MojoExecutionException
+	{
+		if (prefix == null)
+			throw new MojoExecutionException("\"prefix\" must be set in order to attach \"" + classifier + "\"");
+		Path prefixPath = Paths.get(prefix).toAbsolutePath();
+		if (!Files.isDirectory(prefixPath))
+			throw new MojoExecutionException(prefixPath + " must be a directory");
+		int threads = packagingThreads;
+		if (threads == 0)
+			threads = Runtime.getRuntime().availableProcessors();
+
+		Path buildDirectory = Paths.get(project.getBuild().getDirectory());
+		Path archive = buildDirectory.resolve(project.getBuild().getFinalName() + "-" + classifier + ".zip");
+		Log log = getLog();
+		if (log.isInfoEnabled())
+			log.info("Packaging " + prefixPath + " into " + archive);
+		DirectoryArchiver.zip(prefixPath, archive, threads, buildDirectory.resolve("cmake-package.tmp"), log);
+		projectHelper.attachArtifact(project, "zip", classifier, archive.toFile());
+	}
+}
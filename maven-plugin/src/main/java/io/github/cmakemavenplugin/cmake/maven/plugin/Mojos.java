@@ -67,21 +67,55 @@ public final class Mojos
 	 */
 	public static int waitFor(ProcessBuilder processBuilder, Log log)
 		throws IOException, InterruptedException
+	{
+		return waitFor(processBuilder, log, ProcessListener.NONE);
+	}
+
+	/**
+	 * Launches and waits for a process to complete.
+	 *
+	 * @param processBuilder the process builder
+	 * @param log            the Maven log
+	 * @param listener       observes the process's output
+	 * @return the process exit code
+	 * @throws IOException          if an I/O error occurs while running the process
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	public static int waitFor(ProcessBuilder processBuilder, Log log, ProcessListener listener)
+		throws IOException, InterruptedException
+	{
+		return waitFor(processBuilder, log, listener, null);
+	}
+
+	/**
+	 * Launches and waits for a process to complete.
+	 *
+	 * @param processBuilder the process builder
+	 * @param log            the Maven log
+	 * @param listener       observes the process's output
+	 * @param quiet          retains the process's output instead of logging it, and logs it if the process
+	 *                       fails; {@code null} to log all output
+	 * @return the process exit code
+	 * @throws IOException          if an I/O error occurs while running the process
+	 * @throws InterruptedException if the thread was interrupted
+	 * @see OutputReader
+	 */
+	public static int waitFor(ProcessBuilder processBuilder, Log log, ProcessListener listener, QuietOutput quiet)
+		throws IOException, InterruptedException
 	{
 		Process process = processBuilder.redirectErrorStream(true).start();
-		try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream())))
-		{
-			while (true)
-			{
-				String line = in.readLine();
-				if (line == null)
-					break;
-				log.info(line);
-			}
-		}
+		listener.onStart(process);
+		OutputReader reader = new OutputReader(process, log, listener, quiet);
+		Thread thread = new Thread(reader, "cmake-output");
+		thread.setDaemon(true);
+		thread.start();
 		int result = process.waitFor();
+		reader.awaitEndOfOutput(thread);
+		listener.onExit(result);
 		if (result != 0)
 		{
+			if (quiet != null)
+				quiet.dump(log);
 			log.warn("Command: " + processBuilder.command());
 			log.warn("Directory: " + processBuilder.directory());
 			log.warn("Environment: " + processBuilder.environment());
@@ -96,4 +130,116 @@ public final class Mojos
 	private Mojos()
 	{
 	}
+
+	/**
+	 * Forwards the output of a process.
+	 * <p>
+	 * Descendants that outlive the process, such as daemons or processes that a watchdog failed to terminate,
+	 * inherit its output pipe and keep it open. Once the process exits, the reader is abandoned as soon as the
+	 * output stops, instead of waiting for the pipe to close.
+	 */
+	private static final class OutputReader implements Runnable
+	{
+		/**
+		 * The number of milliseconds without output, after the process exits, after which the reader is
+		 * abandoned.
+		 */
+		private static final long ABANDON_AFTER = 1000;
+		private final Process process;
+		private final Log log;
+		private final ProcessListener listener;
+		private final QuietOutput quiet;
+		/**
+		 * Guards {@link #abandoned} and the forwarding of each line.
+		 */
+		private final Object lock = new Object();
+		private boolean abandoned;
+		private volatile long lines;
+		private volatile IOException failure;
+
+		/**
+		 * @param process  the process
+		 * @param log      the Maven log
+		 * @param listener observes the process's output
+		 * @param quiet    retains the process's output instead of logging it; {@code null} to log all output
+		 */
+		OutputReader(Process process, Log log, ProcessListener listener, QuietOutput quiet)
+		{
+			this.process = process;
+			this.log = log;
+			this.listener = listener;
+			this.quiet = quiet;
+		}
+
+		@Override
+		public void run()
+		{
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream())))
+			{
+				while (true)
+				{
+					String line = in.readLine();
+					if (line == null)
+						break;
+					synchronized (lock)
+					{
+						if (abandoned)
+							return;
+						listener.onLine(line);
+						if (quiet == null)
+							log.info(line);
+						else
+							quiet.onLine(line);
+					}
+					++lines;
+				}
+			}
+			catch (IOException e)
+			{
+				failure = e;
+			}
+		}
+
+		/**
+		 * Waits for the reader to consume the remaining output of a process that exited.
+		 *
+		 * @param thread the thread that runs the reader
+		 * @throws IOException          if an I/O error occurs while reading the output
+		 * @throws InterruptedException if the thread was interrupted
+		 */
+		void awaitEndOfOutput(Thread thread) throws IOException, InterruptedException
+		{
+			long linesBefore = lines;
+			while (true)
+			{
+				thread.join(ABANDON_AFTER);
+				if (!thread.isAlive())
+					break;
+				long linesAfter = lines;
+				if (linesAfter == linesBefore)
+				{
+					synchronized (lock)
+					{
+						abandoned = true;
+					}
+					log.warn("The process exited but its descendants are still holding its output open. " +
+						"Ignoring their output.");
+					try
+					{
+						// Unblocks the reader on platforms that support it
+						process.getInputStream().close();
+					}
+					catch (IOException e)
+					{
+						log.debug("Failed to close the output of the process", e);
+					}
+					return;
+				}
+				linesBefore = linesAfter;
+			}
+			IOException e = failure;
+			if (e != null)
+				throw e;
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import io.github.cmakemavenplugin.cmake.common.Platform.OperatingSystem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the {@code .ninja_log} file that Ninja writes to the build directory.
+ */
+public final class NinjaLog
+{
+	/**
+	 * The number of seconds between the Unix epoch and the epoch of Ninja's timestamps on Windows. Ninja
+	 * subtracts 12622770400 seconds from the Windows epoch (1601-01-01) to keep its timestamps small.
+	 */
+	private static final long WINDOWS_EPOCH_SECONDS = 12622770400L - 11644473600L;
+
+	/**
+	 * Adds the jobs that a build wrote to a timeline.
+	 * <p>
+	 * Ninja appends to the log on every build, and records times relative to the start of each build. The
+	 * jobs of a build are identified by the modification time of their output, which Ninja records once the
+	 * job ends. Jobs whose output is older than {@code start}, such as outputs that were left unchanged by a
+	 * {@code restat} rule, are omitted.
+	 *
+	 * @param ninjaLog        the {@code .ninja_log} file
+	 * @param start           the time that the build started
+	 * @param operatingSystem the operating system that Ninja ran on
+	 * @param timeline        the timeline to add to
+	 * @return the number of jobs that were added
+	 * @throws NullPointerException if any of the arguments are null
+	 * @throws IOException          if an I/O error occurs
+	 */
+	public static int addBuild(Path ninjaLog, Instant start, OperatingSystem operatingSystem,
+		ChromeTrace timeline) throws IOException
+	{
+		long minimumMtime = toNinjaTime(start, operatingSystem);
+		List<String[]> build = new ArrayList<>();
+		for (String line : Files.readAllLines(ninjaLog, StandardCharsets.UTF_8))
+		{
+			// # ninja log v5
+			if (line.startsWith("#"))
+				continue;
+			// <start ms>\t<end ms>\t<mtime>\t<output>\t<command hash>
+			String[] fields = line.split("\t");
+			if (fields.length != 5)
+				continue;
+			if (Long.parseLong(fields[2]) >= minimumMtime)
+				build.add(fields);
+		}
+
+		// Commands with multiple outputs are logged once per output
+		Map<String, String[]> jobs = new LinkedHashMap<>();
+		for (String[] fields : build)
+		{
+			String key = fields[0] + "\t" + fields[1] + "\t" + fields[4];
+			String[] existing = jobs.get(key);
+			if (existing == null)
+				jobs.put(key, fields);
+			else
+				existing[3] += ", " + fields[3];
+		}
+		for (String[] fields : jobs.values())
+		{
+			timeline.add(fields[3], "build", Long.parseLong(fields[0]) * 1000,
+				Long.parseLong(fields[1]) * 1000);
+		}
+		return jobs.size();
+	}
+
+	/**
+	 * @param time            a point in time
+	 * @param operatingSystem the operating system that Ninja ran on
+	 * @return the modification time that Ninja records for files that were written at {@code time}
+	 */
+	private static long toNinjaTime(Instant time, OperatingSystem operatingSystem)
+	{
+		// Filesystems with a coarse resolution may round the modification time down to the second
+		long seconds = time.getEpochSecond();
+		if (operatingSystem == OperatingSystem.WINDOWS)
+		{
+			// Intervals of 100 nanoseconds
+			return (seconds - WINDOWS_EPOCH_SECONDS) * 10_000_000L;
+		}
+		return TimeUnit.SECONDS.toNanos(seconds);
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private NinjaLog()
+	{
+	}
+}
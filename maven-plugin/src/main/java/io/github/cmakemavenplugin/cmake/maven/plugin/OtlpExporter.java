@@ -0,0 +1,166 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Exports spans in the OTLP/JSON format used by OpenTelemetry collectors.
+ *
+ * @see <a href="https://opentelemetry.io/docs/specs/otlp/#json-protobuf-encoding">OTLP/JSON</a>
+ */
+public final class OtlpExporter
+{
+	/**
+	 * The timeout of requests to the collector, in milliseconds.
+	 */
+	private static final int TIMEOUT = 5000;
+	/**
+	 * {@code STATUS_CODE_ERROR}.
+	 */
+	private static final int STATUS_ERROR = 2;
+	/**
+	 * {@code SPAN_KIND_INTERNAL}.
+	 */
+	private static final int KIND_INTERNAL = 1;
+
+	/**
+	 * Converts a tree of spans to an {@code ExportTraceServiceRequest}.
+	 *
+	 * @param root     the root of the tree
+	 * @param resource the attributes of the entity that produced the spans
+	 * @return the request, in JSON format
+	 * @throws JsonProcessingException if the request could not be serialized
+	 */
+	public static byte[] toJson(Span root, Map<String, Object> resource) throws JsonProcessingException
+	{
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectNode request = mapper.createObjectNode();
+		ObjectNode resourceSpans = request.putArray("resourceSpans").addObject();
+		addAttributes(resourceSpans.putObject("resource").putArray("attributes"), resource);
+		ObjectNode scopeSpans = resourceSpans.putArray("scopeSpans").addObject();
+		scopeSpans.putObject("scope").put("name", "cmake-maven-plugin");
+		addSpan(scopeSpans.putArray("spans"), root);
+		return mapper.writeValueAsBytes(request);
+	}
+
+	/**
+	 * Adds a span and its descendants.
+	 *
+	 * @param spans the array to add to
+	 * @param span  the span
+	 */
+	private static void addSpan(ArrayNode spans, Span span)
+	{
+		ObjectNode node = spans.addObject();
+		node.put("traceId", span.getTraceId());
+		node.put("spanId", span.getSpanId());
+		if (span.getParentSpanId() != null)
+			node.put("parentSpanId", span.getParentSpanId());
+		node.put("name", span.getName());
+		node.put("kind", KIND_INTERNAL);
+		// 64-bit integers are encoded as strings
+		node.put("startTimeUnixNano", Long.toString(span.getStartTime()));
+		long endTime = span.getEndTime();
+		if (endTime == 0)
+			endTime = span.getStartTime();
+		node.put("endTimeUnixNano", Long.toString(endTime));
+		addAttributes(node.putArray("attributes"), span.getAttributes());
+		if (span.getError() != null)
+			node.putObject("status").put("code", STATUS_ERROR).put("message", span.getError());
+		for (Span child : span.getChildren())
+			addSpan(spans, child);
+	}
+
+	/**
+	 * @param target     the array to add to
+	 * @param attributes the attributes to add
+	 */
+	private static void addAttributes(ArrayNode target, Map<String, Object> attributes)
+	{
+		for (Entry<String, Object> entry : attributes.entrySet())
+		{
+			ObjectNode attribute = target.addObject();
+			attribute.put("key", entry.getKey());
+			ObjectNode value = attribute.putObject("value");
+			Object rawValue = entry.getValue();
+			if (rawValue instanceof Boolean)
+				value.put("boolValue", (Boolean) rawValue);
+			else if (rawValue instanceof Integer || rawValue instanceof Long)
+				value.put("intValue", rawValue.toString());
+			else
+				value.put("stringValue", rawValue.toString());
+		}
+	}
+
+	/**
+	 * Writes a request to disk.
+	 *
+	 * @param request the request returned by {@link #toJson(Span, Map)}
+	 * @param path    the file to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void write(byte[] request, Path path) throws IOException
+	{
+		Files.createDirectories(path.getParent());
+		Files.write(path, request);
+	}
+
+	/**
+	 * Sends a request to a collector. Failures are logged, because tracing should never fail the build.
+	 *
+	 * @param request  the request returned by {@link #toJson(Span, Map)}
+	 * @param endpoint the collector's OTLP/HTTP traces endpoint, such as
+	 *                 {@code http://localhost:4318/v1/traces}
+	 * @param log      the logger to report failures to
+	 */
+	public static void send(byte[] request, URL endpoint, Log log)
+	{
+		try
+		{
+			HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+			try
+			{
+				connection.setConnectTimeout(TIMEOUT);
+				connection.setReadTimeout(TIMEOUT);
+				connection.setRequestMethod("POST");
+				connection.setRequestProperty("Content-Type", "application/json");
+				connection.setDoOutput(true);
+				connection.setFixedLengthStreamingMode(request.length);
+				try (OutputStream out = connection.getOutputStream())
+				{
+					out.write(request);
+				}
+				int status = connection.getResponseCode();
+				if (status / 100 != 2)
+					log.warn("Could not export the trace to " + endpoint + ": HTTP " + status);
+			}
+			finally
+			{
+				connection.disconnect();
+			}
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not export the trace to " + endpoint + ": " + e);
+		}
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private OtlpExporter()
+	{
+	}
+}
@@ -0,0 +1,136 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+
+import javax.inject.Inject;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Goal which packages native outputs into a compressed TAR file and attaches it to the project.
+ */
+@Mojo(name = "package", defaultPhase = LifecyclePhase.PACKAGE)
+public class PackageMojo extends AbstractMojo
+{
+	/**
+	 * The directory to package.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/cmake")
+	private File directory;
+
+	/**
+	 * The archive format: {@code tar.zst} or {@code tar.gz}.
+	 */
+	@Parameter(property = "cmake.package.format", defaultValue = "tar.zst")
+	private String format;
+
+	/**
+	 * The compression level. Defaults to 3 for {@code tar.zst} and 6 for {@code tar.gz}.
+	 */
+	@Parameter(property = "cmake.package.level")
+	private Integer level;
+
+	/**
+	 * The number of threads to compress with; if not specified, uses
+	 * <code>Runtime.getRuntime().availableProcessors()</code>.
+	 */
+	@Parameter(property = "cmake.package.threads", defaultValue = "0")
+	private int threads;
+
+	/**
+	 * The classifier of the attached artifact.
+	 */
+	@Parameter(property = "cmake.package.classifier", defaultValue = "cmake")
+	private String classifier;
+
+	private final MavenProject project;
+	private final MavenProjectHelper projectHelper;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param project       an instance of {@code MavenProject}
+	 * @param projectHelper an instance of {@code MavenProjectHelper}
+	 */
+	@Inject
+	public PackageMojo(MavenProject project, MavenProjectHelper projectHelper)
+	{
+		this.project = project;
+		this.projectHelper = projectHelper;
+	}
+
+	@Override
+	public void execute() throws MojoExecutionException
+	{
+		Path source = directory.toPath();
+		if (!Files.isDirectory(source))
+			throw new MojoExecutionException(source.toAbsolutePath() + " must be a directory");
+		if (!format.equals("tar.zst") && !format.equals("tar.gz"))
+		{
+			throw new MojoExecutionException("Unsupported format: " + format + ". Expected \"tar.zst\" or " +
+				"\"tar.gz\".");
+		}
+		if (threads == 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		Path archive = Paths.get(project.getBuild().getDirectory(),
+			project.getBuild().getFinalName() + "-" + classifier + "." + format);
+
+		Log log = getLog();
+		if (log.isInfoEnabled())
+			log.info("Packaging " + source + " into " + archive + " using " + threads + " threads");
+		try
+		{
+			Files.createDirectories(archive.getParent());
+			try (OutputStream out = compress(new BufferedOutputStream(Files.newOutputStream(archive),
+				1024 * 1024)))
+			{
+				DirectoryArchiver.tar(source, out);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new MojoExecutionException("", e);
+		}
+		projectHelper.attachArtifact(project, format, classifier, archive.toFile());
+	}
+
+	/**
+	 * @param out the stream to write compressed data to
+	 * @return a stream that compresses data using {@link #format}
+	 * @throws IOException if an I/O error occurs
+	 */
+	private OutputStream compress(OutputStream out) throws IOException
+	{
+		if (format.equals("tar.gz"))
+		{
+			int gzipLevel;
+			if (level == null)
+				gzipLevel = 6;
+			else
+				gzipLevel = level;
+			return new ParallelGzipOutputStream(out, gzipLevel, threads);
+		}
+		int zstdLevel;
+		if (level == null)
+			zstdLevel = 3;
+		else
+			zstdLevel = level;
+		ZstdOutputStream result = new ZstdOutputStream(out, zstdLevel);
+		if (threads > 1)
+			result.setWorkers(threads);
+		return result;
+	}
+}
@@ -0,0 +1,237 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a gzip stream, compressing blocks of input concurrently.
+ * <p>
+ * Uses the same approach as <a href="https://zlib.net/pigz/">pigz</a>: the input is split into fixed-size
+ * blocks, each block is deflated independently using the last 32 KiB of the previous block as a preset
+ * dictionary, and all blocks but the last end on a byte boundary. The result is a single gzip member that
+ * any gzip decoder can read.
+ */
+public final class ParallelGzipOutputStream extends OutputStream
+{
+	/**
+	 * The number of bytes compressed by each task.
+	 */
+	private static final int BLOCK_SIZE = 128 * 1024;
+	/**
+	 * The size of the deflate window.
+	 */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+	private final OutputStream out;
+	private final int level;
+	private final ExecutorService executor;
+	/**
+	 * The maximum number of blocks that may be compressed or awaiting output at any time.
+	 */
+	private final int maxPendingBlocks;
+	private final Queue<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+	private final CRC32 crc = new CRC32();
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int blockLength;
+	/**
+	 * The last {@code DICTIONARY_SIZE} bytes of the previous block, or null if this is the first block.
+	 */
+	private byte[] dictionary;
+	private long uncompressedSize;
+	private boolean closed;
+
+	/**
+	 * Creates a new stream.
+	 *
+	 * @param out     the stream to write compressed data to
+	 * @param level   the compression level (0-9)
+	 * @param threads the number of threads to compress with
+	 * @throws IOException if an I/O error occurs while writing the gzip header
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int level, int threads) throws IOException
+	{
+		this.out = out;
+		this.level = level;
+		this.executor = Executors.newFixedThreadPool(threads, runnable ->
+		{
+			Thread thread = new Thread(runnable, "ParallelGzipOutputStream");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.maxPendingBlocks = threads * 2;
+		// ID1, ID2, CM = deflate, FLG = 0, MTIME = 0, XFL = 0, OS = unknown
+		out.write(new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 255});
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		write(new byte[]{(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if (closed)
+			throw new IOException("Stream closed");
+		crc.update(b, off, len);
+		uncompressedSize += len;
+		while (len > 0)
+		{
+			int count = Math.min(len, BLOCK_SIZE - blockLength);
+			System.arraycopy(b, off, block, blockLength, count);
+			blockLength += count;
+			off += count;
+			len -= count;
+			if (blockLength == BLOCK_SIZE)
+				submitBlock(false);
+		}
+	}
+
+	/**
+	 * Hands the current block to a compression thread.
+	 *
+	 * @param last {@code true} if this is the last block of the stream
+	 * @throws IOException if an I/O error occurs while writing previously compressed blocks
+	 */
+	private void submitBlock(boolean last) throws IOException
+	{
+		if (last)
+			closed = true;
+		byte[] input = block;
+		int length = blockLength;
+		byte[] blockDictionary = dictionary;
+		pendingBlocks.add(executor.submit(() -> deflate(input, length, blockDictionary, last)));
+		// All blocks but the last one are full
+		if (!last)
+			dictionary = Arrays.copyOfRange(input, length - DICTIONARY_SIZE, length);
+		block = new byte[BLOCK_SIZE];
+		blockLength = 0;
+		while (pendingBlocks.size() >= maxPendingBlocks)
+			writeNextBlock();
+	}
+
+	/**
+	 * Writes the oldest compressed block to the underlying stream, waiting for it to be compressed if
+	 * necessary.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void writeNextBlock() throws IOException
+	{
+		Future<byte[]> future = pendingBlocks.remove();
+		try
+		{
+			out.write(future.get());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e)
+		{
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Compresses a single block.
+	 *
+	 * @param input      the uncompressed data
+	 * @param length     the number of bytes in {@code input}
+	 * @param dictionary the tail of the previous block ({@code null} if this is the first block)
+	 * @param last       {@code true} if this is the last block of the stream
+	 * @return the raw deflate data
+	 */
+	private byte[] deflate(byte[] input, int length, byte[] dictionary, boolean last)
+	{
+		Deflater deflater = new Deflater(level, true);
+		try
+		{
+			if (dictionary != null)
+				deflater.setDictionary(dictionary);
+			deflater.setInput(input, 0, length);
+			ByteArrayOutputStream result = new ByteArrayOutputStream(length / 2 + 64);
+			byte[] buffer = new byte[16 * 1024];
+			if (last)
+			{
+				deflater.finish();
+				while (!deflater.finished())
+				{
+					int count = deflater.deflate(buffer);
+					result.write(buffer, 0, count);
+				}
+			}
+			else
+			{
+				// SYNC_FLUSH terminates the block on a byte boundary so blocks can be concatenated
+				while (true)
+				{
+					int count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					result.write(buffer, 0, count);
+					if (count < buffer.length)
+						break;
+				}
+			}
+			return result.toByteArray();
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	/**
+	 * Writes the remaining data and the gzip trailer, then closes the underlying stream.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+			return;
+		try
+		{
+			submitBlock(true);
+			while (!pendingBlocks.isEmpty())
+				writeNextBlock();
+			writeIntLittleEndian((int) crc.getValue());
+			writeIntLittleEndian((int) uncompressedSize);
+		}
+		finally
+		{
+			executor.shutdownNow();
+			out.close();
+		}
+	}
+
+	/**
+	 * @param value a value to write to the underlying stream in little-endian order
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void writeIntLittleEndian(int value) throws IOException
+	{
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+}
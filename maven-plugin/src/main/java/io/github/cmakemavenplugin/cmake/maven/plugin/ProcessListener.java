@@ -0,0 +1,72 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+/**
+ * Observes a process launched by {@link Mojos#waitFor(ProcessBuilder, org.apache.maven.plugin.logging.Log,
+ * ProcessListener)}.
+ */
+@FunctionalInterface
+public interface ProcessListener
+{
+	/**
+	 * Ignores all output.
+	 */
+	ProcessListener NONE = line ->
+	{
+	};
+
+	/**
+	 * Invoked after the process starts.
+	 *
+	 * @param process the process
+	 */
+	default void onStart(Process process)
+	{
+	}
+
+	/**
+	 * Invoked for each line of output, on the thread that reads the process's output.
+	 *
+	 * @param line a line of output, without line terminators
+	 */
+	void onLine(String line);
+
+	/**
+	 * Invoked after the process exits.
+	 *
+	 * @param exitCode the process's exit code
+	 */
+	default void onExit(int exitCode)
+	{
+	}
+
+	/**
+	 * @param listeners the listeners to notify, in order
+	 * @return a listener that notifies all of {@code listeners}
+	 */
+	static ProcessListener of(ProcessListener... listeners)
+	{
+		return new ProcessListener()
+		{
+			@Override
+			public void onStart(Process process)
+			{
+				for (ProcessListener listener : listeners)
+					listener.onStart(process);
+			}
+
+			@Override
+			public void onLine(String line)
+			{
+				for (ProcessListener listener : listeners)
+					listener.onLine(line);
+			}
+
+			@Override
+			public void onExit(int exitCode)
+			{
+				for (ProcessListener listener : listeners)
+					listener.onExit(exitCode);
+			}
+		};
+	}
+}
@@ -0,0 +1,279 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the resources used by a process and its descendants.
+ * <p>
+ * Wall time is measured on all platforms. On Linux, the process tree is sampled through {@code /proc} while it
+ * runs to measure CPU time, peak resident set size and the number of concurrent descendants. Because the
+ * tree is sampled, processes that start and exit between two samples may be missed, and the CPU time that
+ * the tree uses after the last sample is not counted.
+ */
+public final class ProcessMetrics implements ProcessListener
+{
+	/**
+	 * The time between two samples, in milliseconds.
+	 */
+	private static final long SAMPLE_INTERVAL = 250;
+	/**
+	 * The number of clock ticks per second used by {@code /proc/<pid>/stat}. The kernel reports
+	 * {@code USER_HZ}, which is 100 on all mainstream architectures.
+	 */
+	private static final long CLOCK_TICKS_PER_SECOND = 100;
+	private static final Path PROC = Paths.get("/proc");
+	private final Path proc;
+	private long startTime;
+	private long wallTime;
+	private int exitCode;
+	/**
+	 * The CPU time, in clock ticks; {@code -1} if unknown.
+	 */
+	private long userTicks = -1;
+	private long systemTicks = -1;
+	/**
+	 * In bytes; {@code -1} if unknown.
+	 */
+	private long peakRss = -1;
+	private int maxDescendants = -1;
+	private int samples;
+	private Thread sampler;
+	private volatile boolean stopped;
+
+	/**
+	 * Creates a new instance that samples {@code /proc}.
+	 */
+	public ProcessMetrics()
+	{
+		this(PROC);
+	}
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param proc the directory that the proc filesystem is mounted at
+	 * @throws NullPointerException if {@code proc} is null
+	 */
+	public ProcessMetrics(Path proc)
+	{
+		if (proc == null)
+			throw new NullPointerException("proc may not be null");
+		this.proc = proc;
+	}
+
+	@Override
+	public void onStart(Process process)
+	{
+		startTime = System.nanoTime();
+		long pid = ProcessTree.getPid(process);
+		if (pid == -1 || !Files.isDirectory(proc.resolve("self")))
+			return;
+		sampler = new Thread(() ->
+		{
+			while (!stopped && process.isAlive())
+			{
+				sample(pid);
+				try
+				{
+					Thread.sleep(SAMPLE_INTERVAL);
+				}
+				catch (InterruptedException e)
+				{
+					break;
+				}
+			}
+		}, "cmake-metrics");
+		sampler.setDaemon(true);
+		sampler.start();
+	}
+
+	@Override
+	public void onLine(String line)
+	{
+	}
+
+	@Override
+	public void onExit(int exitCode)
+	{
+		wallTime = System.nanoTime() - startTime;
+		this.exitCode = exitCode;
+		if (sampler == null)
+			return;
+		stopped = true;
+		sampler.interrupt();
+		try
+		{
+			sampler.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Samples the process tree. Invoked periodically while the process runs.
+	 *
+	 * @param root the ID of the root process
+	 */
+	public void sample(long root)
+	{
+		Map<Long, List<Long>> childrenByParent = new HashMap<>();
+		Map<Long, long[]> statsByPid = new HashMap<>();
+		try (DirectoryStream<Path> processes = Files.newDirectoryStream(proc, "[0-9]*"))
+		{
+			for (Path process : processes)
+			{
+				long[] stats = readStat(process);
+				if (stats == null)
+					continue;
+				long pid = Long.parseLong(process.getFileName().toString());
+				statsByPid.put(pid, stats);
+				childrenByParent.computeIfAbsent(stats[0], key -> new ArrayList<>()).add(pid);
+			}
+		}
+		catch (IOException e)
+		{
+			return;
+		}
+		if (!statsByPid.containsKey(root))
+			return;
+
+		long user = 0;
+		long system = 0;
+		long rss = 0;
+		int descendants = -1;
+		List<Long> pending = new ArrayList<>();
+		pending.add(root);
+		while (!pending.isEmpty())
+		{
+			long pid = pending.remove(pending.size() - 1);
+			long[] stats = statsByPid.get(pid);
+			if (stats == null)
+				continue;
+			++descendants;
+			// Children that exited and were waited for are included in the parent's cutime and cstime
+			user += stats[1] + stats[3];
+			system += stats[2] + stats[4];
+			rss += readRss(proc.resolve(Long.toString(pid)));
+			List<Long> children = childrenByParent.get(pid);
+			if (children != null)
+				pending.addAll(children);
+		}
+		++samples;
+		userTicks = Math.max(userTicks, user);
+		systemTicks = Math.max(systemTicks, system);
+		peakRss = Math.max(peakRss, rss);
+		maxDescendants = Math.max(maxDescendants, descendants);
+	}
+
+	/**
+	 * @param process a directory in {@code /proc}
+	 * @return the parent ID, {@code utime}, {@code stime}, {@code cutime} and {@code cstime} of the process;
+	 * {@code null} if the process exited
+	 */
+	private static long[] readStat(Path process)
+	{
+		String stat;
+		try
+		{
+			stat = new String(Files.readAllBytes(process.resolve("stat")), StandardCharsets.UTF_8);
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		// The process name may contain spaces and parentheses
+		int endOfName = stat.lastIndexOf(')');
+		if (endOfName == -1)
+			return null;
+		// Fields 3 onwards: state ppid pgrp session tty_nr tpgid flags minflt cminflt majflt cmajflt utime
+		// stime cutime cstime
+		String[] fields = stat.substring(endOfName + 2).split(" ");
+		if (fields.length < 15)
+			return null;
+		return new long[]{Long.parseLong(fields[1]), Long.parseLong(fields[11]), Long.parseLong(fields[12]),
+			Long.parseLong(fields[13]), Long.parseLong(fields[14])};
+	}
+
+	/**
+	 * @param process a directory in {@code /proc}
+	 * @return the resident set size of the process, in bytes; {@code 0} if the process exited
+	 */
+	private static long readRss(Path process)
+	{
+		try
+		{
+			for (String line : Files.readAllLines(process.resolve("status"), StandardCharsets.UTF_8))
+			{
+				// VmRSS:     1234 kB
+				if (line.startsWith("VmRSS:"))
+					return Long.parseLong(line.substring(6).trim().split("\\s+")[0]) * 1024;
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			// The process exited
+		}
+		return 0;
+	}
+
+	/**
+	 * @return a one-line summary of the metrics
+	 */
+	public String getSummary()
+	{
+		StringBuilder result = new StringBuilder();
+		result.append("Wall time: ").append(String.format("%.1f", wallTime / 1e9)).append(" s");
+		if (samples > 0)
+		{
+			result.append(", user: ").append(String.format("%.1f", userTicks / (double) CLOCK_TICKS_PER_SECOND)).
+				append(" s, system: ").append(String.format("%.1f", systemTicks / (double) CLOCK_TICKS_PER_SECOND)).
+				append(" s, peak RSS: ").append(peakRss / (1024 * 1024)).append(" MiB, max descendants: ").
+				append(maxDescendants);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Writes the metrics in JSON format.
+	 *
+	 * @param path           the file to write to
+	 * @param processBuilder the process builder that launched the process
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void writeJson(Path path, ProcessBuilder processBuilder) throws IOException
+	{
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectNode root = mapper.createObjectNode();
+		ObjectNode command = root.putObject("command");
+		command.putPOJO("arguments", processBuilder.command());
+		if (processBuilder.directory() != null)
+			command.put("directory", processBuilder.directory().toString());
+		root.put("exitCode", exitCode);
+		root.put("wallTimeMillis", TimeUnit.NANOSECONDS.toMillis(wallTime));
+		root.put("samples", samples);
+		if (samples > 0)
+		{
+			root.put("userCpuMillis", userTicks * 1000 / CLOCK_TICKS_PER_SECOND);
+			root.put("systemCpuMillis", systemTicks * 1000 / CLOCK_TICKS_PER_SECOND);
+			root.put("peakRssBytes", peakRss);
+			root.put("maxDescendants", maxDescendants);
+		}
+		Files.createDirectories(path.getParent());
+		mapper.writeValue(path.toFile(), root);
+	}
+}
@@ -0,0 +1,257 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import io.github.cmakemavenplugin.cmake.common.Platform.OperatingSystem;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inspects and terminates a process and its descendants.
+ * <p>
+ * This plugin runs on Java 8, which lacks {@code ProcessHandle}, so descendants are listed using {@code ps}
+ * and terminated using {@code kill}, or {@code taskkill} on Windows.
+ */
+public final class ProcessTree
+{
+	/**
+	 * The maximum amount of time to wait for a helper process, in seconds.
+	 */
+	private static final long HELPER_TIMEOUT = 30;
+	/**
+	 * The maximum number of processes to capture stack traces of.
+	 */
+	private static final int MAX_STACK_DUMPS = 16;
+
+	/**
+	 * @param process a process
+	 * @return the process ID, or {@code -1} if it cannot be determined
+	 */
+	public static long getPid(Process process)
+	{
+		try
+		{
+			// Java 9+
+			Method pid = Process.class.getMethod("pid");
+			return (Long) pid.invoke(process);
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			// Java 8: java.lang.UNIXProcess.pid
+			try
+			{
+				Field pid = process.getClass().getDeclaredField("pid");
+				pid.setAccessible(true);
+				return pid.getInt(process);
+			}
+			catch (ReflectiveOperationException | RuntimeException unused)
+			{
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Lists the descendants of a process, parents before children. Not supported on Windows.
+	 *
+	 * @param pid the ID of a process
+	 * @return the IDs of the process's descendants
+	 * @throws IOException if the processes could not be listed
+	 */
+	public static List<Long> getDescendants(long pid) throws IOException
+	{
+		Map<Long, List<Long>> childrenByParent = new HashMap<>();
+		for (String line : run("ps", "-A", "-o", "pid=", "-o", "ppid="))
+		{
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length != 2)
+				continue;
+			childrenByParent.computeIfAbsent(Long.parseLong(fields[1]), key -> new ArrayList<>()).
+				add(Long.parseLong(fields[0]));
+		}
+		List<Long> result = new ArrayList<>();
+		List<Long> children = childrenByParent.getOrDefault(pid, Collections.emptyList());
+		while (!children.isEmpty())
+		{
+			result.addAll(children);
+			List<Long> grandchildren = new ArrayList<>();
+			for (long child : children)
+				grandchildren.addAll(childrenByParent.getOrDefault(child, Collections.emptyList()));
+			children = grandchildren;
+		}
+		return result;
+	}
+
+	/**
+	 * Logs the stack traces of a process and its descendants, using {@code eu-stack} or {@code gdb} if either
+	 * is on the {@code PATH}.
+	 *
+	 * @param process  a process
+	 * @param platform the current platform
+	 * @param log      the logger to write to
+	 */
+	public static void logStackTraces(Process process, Platform platform, Log log)
+	{
+		long pid = getPid(process);
+		if (pid == -1 || platform.operatingSystem == OperatingSystem.WINDOWS)
+			return;
+		String path = System.getenv("PATH");
+		if (path == null)
+			return;
+		List<String> debugger = new ArrayList<>();
+		try
+		{
+			Path euStack = platform.getExecutableOnPath("eu-stack", path);
+			Collections.addAll(debugger, euStack.toString(), "-p");
+		}
+		catch (FileNotFoundException e)
+		{
+			try
+			{
+				Path gdb = platform.getExecutableOnPath("gdb", path);
+				Collections.addAll(debugger, gdb.toString(), "-batch", "-ex", "thread apply all bt", "-p");
+			}
+			catch (FileNotFoundException unused)
+			{
+				log.warn("Install eu-stack or gdb to capture the stack traces of hung processes");
+				return;
+			}
+		}
+		try
+		{
+			List<Long> pids = new ArrayList<>();
+			pids.add(pid);
+			pids.addAll(getDescendants(pid));
+			// The most deeply nested processes are the most likely to be stuck
+			Collections.reverse(pids);
+			for (long target : pids.subList(0, Math.min(pids.size(), MAX_STACK_DUMPS)))
+			{
+				List<String> command = new ArrayList<>(debugger);
+				command.add(Long.toString(target));
+				log.warn("Stack traces of process " + target + ":");
+				for (String line : run(command.toArray(new String[0])))
+					log.warn(line);
+			}
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not capture stack traces", e);
+		}
+	}
+
+	/**
+	 * Forcibly terminates a process and its descendants.
+	 *
+	 * @param process  a process
+	 * @param platform the current platform
+	 * @param log      the logger to report problems to
+	 */
+	public static void destroy(Process process, Platform platform, Log log)
+	{
+		long pid = getPid(process);
+		if (pid != -1)
+		{
+			try
+			{
+				if (platform.operatingSystem == OperatingSystem.WINDOWS)
+					run("taskkill", "/F", "/T", "/PID", Long.toString(pid));
+				else
+				{
+					// Stop the parent first so that it does not launch replacements for its children
+					List<String> command = new ArrayList<>();
+					Collections.addAll(command, "kill", "-STOP", Long.toString(pid));
+					run(command.toArray(new String[0]));
+					List<Long> descendants = getDescendants(pid);
+					if (!descendants.isEmpty())
+					{
+						command.clear();
+						Collections.addAll(command, "kill", "-KILL");
+						for (long descendant : descendants)
+							command.add(Long.toString(descendant));
+						run(command.toArray(new String[0]));
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				log.warn("Could not terminate the descendants of process " + pid, e);
+			}
+		}
+		process.destroyForcibly();
+	}
+
+	/**
+	 * Runs a helper process.
+	 *
+	 * @param command the command to run
+	 * @return the lines of output
+	 * @throws IOException if the process could not be run
+	 */
+	private static List<String> run(String... command) throws IOException
+	{
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		List<String> lines = new ArrayList<>();
+		Thread reader = new Thread(() ->
+		{
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(),
+				StandardCharsets.UTF_8)))
+			{
+				while (true)
+				{
+					String line = in.readLine();
+					if (line == null)
+						break;
+					synchronized (lines)
+					{
+						lines.add(line);
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				// The process was destroyed
+			}
+		}, "cmake-process-tree");
+		reader.setDaemon(true);
+		reader.start();
+		try
+		{
+			if (!process.waitFor(HELPER_TIMEOUT, TimeUnit.SECONDS))
+			{
+				process.destroyForcibly();
+				throw new IOException(command[0] + " did not complete within " + HELPER_TIMEOUT + " seconds");
+			}
+			reader.join(TimeUnit.SECONDS.toMillis(HELPER_TIMEOUT));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			process.destroyForcibly();
+			throw new IOException("Interrupted while waiting for " + command[0], e);
+		}
+		synchronized (lines)
+		{
+			return new ArrayList<>(lines);
+		}
+	}
+
+	/**
+	 * Prevent construction.
+	 */
+	private ProcessTree()
+	{
+	}
+}
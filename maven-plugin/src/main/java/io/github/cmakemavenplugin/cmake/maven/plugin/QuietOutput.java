@@ -0,0 +1,160 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the output of a process out of the Maven log unless the process fails.
+ * <p>
+ * Summary lines are logged as they arrive and progress lines are logged at most once every
+ * {@link #PROGRESS_INTERVAL}. Everything else is kept in a fixed-size ring buffer that holds the most recent
+ * output, so that it can be logged if the process fails.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class QuietOutput implements ProcessListener
+{
+	/**
+	 * The minimum time between two progress lines, in nanoseconds.
+	 */
+	private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+	/**
+	 * Make ({@code [ 42%]}), Ninja ({@code [42/100]}) and CTest ({@code 42/100 Test #42}) progress.
+	 */
+	private static final Pattern PROGRESS = Pattern.compile("^(?:\\[\\s*\\d+%]|\\[\\d+/\\d+]|\\s*\\d+/\\d+ Test\\s+#)");
+	private static final Pattern SUMMARY = Pattern.compile("^(?:-- (?:Configuring done|Generating done|" +
+		"Build files have been written)|\\d+% tests passed|Total Test time)");
+	private static final byte[] NEWLINE = {'\n'};
+	private final Log log;
+	private final byte[] buffer;
+	/**
+	 * The position that the next byte will be written to.
+	 */
+	private int end;
+	/**
+	 * The number of bytes in the buffer.
+	 */
+	private int size;
+	/**
+	 * {@code true} if the oldest byte in the buffer is the first byte of a line.
+	 */
+	private boolean atLineStart = true;
+	/**
+	 * The total number of bytes written to the buffer.
+	 */
+	private long written;
+	private long lastProgress;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param log      the logger to report progress to
+	 * @param capacity the number of bytes of output to retain
+	 * @throws NullPointerException     if {@code log} is null
+	 * @throws IllegalArgumentException if {@code capacity} is not positive
+	 */
+	public QuietOutput(Log log, int capacity)
+	{
+		if (log == null)
+			throw new NullPointerException("log may not be null");
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.log = log;
+		this.buffer = new byte[capacity];
+		this.lastProgress = System.nanoTime() - PROGRESS_INTERVAL;
+	}
+
+	@Override
+	public void onLine(String line)
+	{
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		append(bytes, 0, bytes.length);
+		append(NEWLINE, 0, NEWLINE.length);
+		if (SUMMARY.matcher(line).lookingAt())
+		{
+			log.info(line);
+			return;
+		}
+		if (PROGRESS.matcher(line).lookingAt())
+		{
+			long now = System.nanoTime();
+			if (now - lastProgress >= PROGRESS_INTERVAL)
+			{
+				lastProgress = now;
+				log.info(line);
+			}
+		}
+	}
+
+	/**
+	 * Adds bytes to the ring buffer, overwriting the oldest bytes if it is full.
+	 *
+	 * @param bytes  the bytes to add
+	 * @param offset the index of the first byte to add
+	 * @param length the number of bytes to add
+	 */
+	private void append(byte[] bytes, int offset, int length)
+	{
+		written += length;
+		int skipped = 0;
+		if (length > buffer.length)
+		{
+			// Only the end of the array fits
+			skipped = length - buffer.length;
+			offset += skipped;
+			length = buffer.length;
+		}
+		while (length > 0)
+		{
+			int count = Math.min(length, buffer.length - end);
+			if (size == buffer.length)
+			{
+				// The newest of the bytes that are about to be overwritten precedes the oldest byte that remains
+				atLineStart = buffer[end + count - 1] == '\n';
+			}
+			System.arraycopy(bytes, offset, buffer, end, count);
+			offset += count;
+			length -= count;
+			end = (end + count) % buffer.length;
+			size = Math.min(size + count, buffer.length);
+		}
+		if (skipped > 0)
+			atLineStart = bytes[offset - buffer.length - 1] == '\n';
+	}
+
+	/**
+	 * Logs the retained output, oldest line first.
+	 *
+	 * @param log the logger to write to
+	 */
+	public void dump(Log log)
+	{
+		byte[] tail = new byte[size];
+		int oldest = (end - size + buffer.length) % buffer.length;
+		int firstPart = Math.min(size, buffer.length - oldest);
+		System.arraycopy(buffer, oldest, tail, 0, firstPart);
+		System.arraycopy(buffer, 0, tail, firstPart, size - firstPart);
+		int start = 0;
+		if (!atLineStart)
+		{
+			// Skip the partial line at the beginning of the buffer
+			while (start < tail.length && tail[start] != '\n')
+				++start;
+			start = Math.min(start + 1, tail.length);
+		}
+		long omitted = written - size + start;
+		if (omitted > 0)
+			log.warn("Omitted " + omitted + " bytes of earlier output");
+		for (int i = start; i < tail.length; ++i)
+		{
+			if (tail[i] == '\n')
+			{
+				log.info(new String(tail, start, i - start, StandardCharsets.UTF_8));
+				start = i + 1;
+			}
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import io.github.cmakemavenplugin.cmake.common.Digests;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A timed operation, modelled after OpenTelemetry spans.
+ * <p>
+ * Spans form a tree. The root span of each goal is exported by {@link OtlpExporter} once it ends.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class Span implements AutoCloseable
+{
+	/**
+	 * The difference between the epoch time and {@link System#nanoTime()}, in nanoseconds.
+	 */
+	private static final long EPOCH_OFFSET = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+	/**
+	 * A W3C {@code traceparent} header: {@code <version>-<trace-id>-<parent-id>-<flags>}.
+	 */
+	private static final Pattern TRACEPARENT = Pattern.compile("^[0-9a-f]{2}-([0-9a-f]{32})-([0-9a-f]{16})-" +
+		"[0-9a-f]{2}$");
+	private static final String NO_PARENT = "0000000000000000";
+	private static final Random RANDOM = new SecureRandom();
+	private final String name;
+	private final String traceId;
+	private final String spanId;
+	private final String parentSpanId;
+	private final long startTime;
+	private long endTime;
+	private final Map<String, Object> attributes = new LinkedHashMap<>();
+	private final List<Span> children = new ArrayList<>();
+	private String error;
+
+	/**
+	 * @param name         the name of the operation
+	 * @param traceId      the ID of the trace that the span belongs to
+	 * @param parentSpanId the ID of the parent span; {@code null} if this is a root span
+	 */
+	private Span(String name, String traceId, String parentSpanId)
+	{
+		this.name = name;
+		this.traceId = traceId;
+		this.spanId = newId(8);
+		this.parentSpanId = parentSpanId;
+		this.startTime = now();
+	}
+
+	/**
+	 * Starts a new root span.
+	 *
+	 * @param name        the name of the operation
+	 * @param traceparent a W3C {@code traceparent} that identifies the trace and the parent span, such as the
+	 *                    value returned by {@link #newTraceparent()}
+	 * @return the span
+	 * @throws NullPointerException     if any of the arguments are null
+	 * @throws IllegalArgumentException if {@code traceparent} is malformed
+	 */
+	public static Span start(String name, String traceparent)
+	{
+		if (name == null)
+			throw new NullPointerException("name may not be null");
+		if (traceparent == null)
+			throw new NullPointerException("traceparent may not be null");
+		Matcher matcher = TRACEPARENT.matcher(traceparent);
+		if (!matcher.matches())
+			throw new IllegalArgumentException("Malformed traceparent: " + traceparent);
+		String parentSpanId = matcher.group(2);
+		if (parentSpanId.equals(NO_PARENT))
+			parentSpanId = null;
+		return new Span(name, matcher.group(1), parentSpanId);
+	}
+
+	/**
+	 * @param traceparent a W3C {@code traceparent}
+	 * @return {@code true} if {@code traceparent} is well-formed
+	 */
+	public static boolean isValidTraceparent(String traceparent)
+	{
+		return traceparent != null && TRACEPARENT.matcher(traceparent).matches();
+	}
+
+	/**
+	 * @return a W3C {@code traceparent} for a new trace without a parent span
+	 */
+	public static String newTraceparent()
+	{
+		return "00-" + newId(16) + "-" + NO_PARENT + "-01";
+	}
+
+	/**
+	 * @param length the number of random bytes
+	 * @return a random ID in hex
+	 */
+	private static String newId(int length)
+	{
+		byte[] bytes = new byte[length];
+		RANDOM.nextBytes(bytes);
+		return Digests.toHex(bytes);
+	}
+
+	/**
+	 * @return the current time, in nanoseconds since the epoch
+	 */
+	private static long now()
+	{
+		return EPOCH_OFFSET + System.nanoTime();
+	}
+
+	/**
+	 * Starts a child span.
+	 *
+	 * @param name the name of the operation
+	 * @return the child span
+	 */
+	public Span child(String name)
+	{
+		Span child = new Span(name, traceId, spanId);
+		children.add(child);
+		return child;
+	}
+
+	/**
+	 * Sets an attribute. Attributes with a {@code null} value are ignored.
+	 *
+	 * @param key   the name of the attribute
+	 * @param value a {@code String}, {@code Boolean}, {@code Integer} or {@code Long}
+	 * @return this
+	 */
+	public Span setAttribute(String key, Object value)
+	{
+		if (value != null)
+			attributes.put(key, value);
+		return this;
+	}
+
+	/**
+	 * Marks the operation as failed.
+	 *
+	 * @param message a description of the failure
+	 */
+	public void setError(String message)
+	{
+		this.error = message;
+	}
+
+	/**
+	 * Ends the span. Subsequent invocations have no effect.
+	 */
+	@Override
+	public void close()
+	{
+		if (endTime == 0)
+			endTime = now();
+	}
+
+	/**
+	 * @return the name of the operation
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return the ID of the trace, in hex
+	 */
+	public String getTraceId()
+	{
+		return traceId;
+	}
+
+	/**
+	 * @return the ID of the span, in hex
+	 */
+	public String getSpanId()
+	{
+		return spanId;
+	}
+
+	/**
+	 * @return the ID of the parent span, in hex; {@code null} if there is none
+	 */
+	public String getParentSpanId()
+	{
+		return parentSpanId;
+	}
+
+	/**
+	 * @return the start time, in nanoseconds since the epoch
+	 */
+	public long getStartTime()
+	{
+		return startTime;
+	}
+
+	/**
+	 * @return the end time, in nanoseconds since the epoch; {@code 0} if the span has not ended
+	 */
+	public long getEndTime()
+	{
+		return endTime;
+	}
+
+	/**
+	 * @return the attributes
+	 */
+	public Map<String, Object> getAttributes()
+	{
+		return Collections.unmodifiableMap(attributes);
+	}
+
+	/**
+	 * @return the child spans
+	 */
+	public List<Span> getChildren()
+	{
+		return Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * @return a description of the failure; {@code null} if the operation succeeded
+	 */
+	public String getError()
+	{
+		return error;
+	}
+}
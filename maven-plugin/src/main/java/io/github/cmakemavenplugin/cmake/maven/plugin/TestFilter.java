@@ -0,0 +1,260 @@
+package io.github.cmakemavenplugin.cmake.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Selects tests by name and label, with the same semantics as ctest's {@code -R}, {@code -E}, {@code -L} and
+ * {@code -LE} options: patterns are regular expressions that may match any part of a name or label.
+ * <p>
+ * Patterns are evaluated both by Java and by ctest, so they are limited to the syntax that both understand:
+ * literals, {@code .}, {@code ^}, {@code $}, {@code *}, {@code +}, {@code ?}, {@code |}, groups, bracket
+ * expressions and backslash-escaped punctuation. Escape sequences such as {@code \d} or {@code \b}, counted
+ * repetitions such as {@code {1,3}}, flags such as {@code (?i)} and lazy quantifiers are rejected.
+ *
+ * @see <a href="https://cmake.org/cmake/help/latest/command/string.html#regex-specification">CMake regular
+ * expressions</a>
+ */
+public final class TestFilter
+{
+	private final List<Pattern> includes;
+	private final List<Pattern> excludes;
+	private final List<Pattern> includedLabels;
+	private final List<Pattern> excludedLabels;
+	private final List<String> options = new ArrayList<>();
+
+	/**
+	 * Creates a new filter.
+	 *
+	 * @param includes tests must match at least one of these patterns, unless the list is empty
+	 * @param excludes tests must not match any of these patterns
+	 * @param labels   tests must have a label that matches at least one of these patterns, unless there are
+	 *                 none. Patterns that start with {@code !} instead exclude the tests that have a matching
+	 *                 label.
+	 * @throws NullPointerException     if any of the arguments are null
+	 * @throws IllegalArgumentException if a pattern is invalid, or uses syntax that ctest does not support
+	 */
+	public TestFilter(List<String> includes, List<String> excludes, List<String> labels)
+	{
+		if (includes == null)
+			throw new NullPointerException("includes may not be null");
+		if (excludes == null)
+			throw new NullPointerException("excludes may not be null");
+		if (labels == null)
+			throw new NullPointerException("labels may not be null");
+		this.includes = compile(includes);
+		this.excludes = compile(excludes);
+		List<String> included = new ArrayList<>();
+		List<String> excluded = new ArrayList<>();
+		for (String label : labels)
+		{
+			if (label.startsWith("!"))
+				excluded.add(label.substring(1));
+			else
+				included.add(label);
+		}
+		this.includedLabels = compile(included);
+		this.excludedLabels = compile(excluded);
+
+		// ctest accepts a single pattern per option, so the alternatives are combined
+		addOption("-R", includes);
+		addOption("-E", excludes);
+		addOption("-L", included);
+		addOption("-LE", excluded);
+	}
+
+	/**
+	 * Converts a Surefire-style test pattern, such as {@code Foo*} or {@code FooTest#bar}, into a regular
+	 * expression that matches entire test names. {@code *} matches any number of characters, {@code ?} matches a
+	 * single character and {@code #} matches the {@code .} that separates a GoogleTest suite from its tests.
+	 *
+	 * @param glob a test pattern
+	 * @return the regular expression
+	 * @throws NullPointerException if {@code glob} is null
+	 */
+	public static String globToRegex(String glob)
+	{
+		StringBuilder result = new StringBuilder("^");
+		for (int i = 0; i < glob.length(); ++i)
+		{
+			char c = glob.charAt(i);
+			switch (c)
+			{
+				case '*':
+					result.append(".*");
+					break;
+				case '?':
+					result.append('.');
+					break;
+				case '#':
+					result.append("\\.");
+					break;
+				default:
+					// Both Java and CMake regular expressions accept a backslash before any of these characters
+					if ("\\^$.|+()[]{}".indexOf(c) != -1)
+						result.append('\\');
+					result.append(c);
+					break;
+			}
+		}
+		return result.append('$').toString();
+	}
+
+	/**
+	 * @param name     the name of the ctest option
+	 * @param patterns regular expressions
+	 */
+	private void addOption(String name, List<String> patterns)
+	{
+		if (patterns.isEmpty())
+			return;
+		options.add(name);
+		options.add(String.join("|", patterns));
+	}
+
+	/**
+	 * @return the ctest options that select the same tests as this filter
+	 */
+	public List<String> getOptions()
+	{
+		return Collections.unmodifiableList(options);
+	}
+
+	/**
+	 * @param patterns regular expressions
+	 * @return the compiled expressions
+	 * @throws IllegalArgumentException if a pattern is invalid, or uses syntax that ctest does not support
+	 */
+	private static List<Pattern> compile(List<String> patterns)
+	{
+		List<Pattern> result = new ArrayList<>(patterns.size());
+		for (String pattern : patterns)
+		{
+			checkCmakeSyntax(pattern);
+			result.add(Pattern.compile(pattern));
+		}
+		return result;
+	}
+
+	/**
+	 * Rejects the syntax of Java regular expressions that CMake does not support, or that CMake interprets
+	 * differently.
+	 *
+	 * @param pattern a regular expression
+	 * @throws IllegalArgumentException if {@code pattern} uses syntax that ctest does not support
+	 */
+	private static void checkCmakeSyntax(String pattern)
+	{
+		boolean inBrackets = false;
+		for (int i = 0; i < pattern.length(); ++i)
+		{
+			char c = pattern.charAt(i);
+			char next;
+			if (i + 1 < pattern.length())
+				next = pattern.charAt(i + 1);
+			else
+				next = '\0';
+			if (inBrackets)
+			{
+				// CMake does not treat these characters specially inside brackets, but Java does
+				if (c == '\\' || c == '[' || (c == '&' && next == '&'))
+					throw unsupported(pattern, "\"" + c + "\" inside brackets");
+				if (c == ']')
+					inBrackets = false;
+				continue;
+			}
+			switch (c)
+			{
+				case '\\':
+					// CMake treats "\d" as the letter "d"
+					if (Character.isLetterOrDigit(next))
+						throw unsupported(pattern, "the escape sequence \"\\" + next + "\"");
+					++i;
+					break;
+				case '[':
+					inBrackets = true;
+					// Skip the "^" that negates the expression
+					if (next == '^')
+						++i;
+					break;
+				case '{':
+					throw unsupported(pattern, "counted repetition");
+				case '(':
+					if (next == '?')
+						throw unsupported(pattern, "\"(?\"");
+					break;
+				case '*':
+				case '+':
+				case '?':
+					if (next == '?' || next == '+')
+						throw unsupported(pattern, "the lazy or possessive quantifier \"" + c + next + "\"");
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	/**
+	 * @param pattern a regular expression
+	 * @param syntax  the syntax that is not supported
+	 * @return the exception to throw
+	 */
+	private static IllegalArgumentException unsupported(String pattern, String syntax)
+	{
+		return new IllegalArgumentException("\"" + pattern + "\" uses " + syntax + ", which ctest does not " +
+			"support. Patterns must use the regular expression syntax that both Java and CMake accept.");
+	}
+
+	/**
+	 * @return {@code true} if the filter accepts all tests
+	 */
+	public boolean isEmpty()
+	{
+		return includes.isEmpty() && excludes.isEmpty() && includedLabels.isEmpty() && excludedLabels.isEmpty();
+	}
+
+	/**
+	 * @param test a test
+	 * @return {@code true} if the test is selected
+	 */
+	public boolean accepts(CtestTest test)
+	{
+		if (!includes.isEmpty() && !findAny(includes, Collections.singletonList(test.getName())))
+			return false;
+		if (findAny(excludes, Collections.singletonList(test.getName())))
+			return false;
+		if (!includedLabels.isEmpty() && !findAny(includedLabels, test.getLabels()))
+			return false;
+		return !findAny(excludedLabels, test.getLabels());
+	}
+
+	/**
+	 * @param tests tests
+	 * @return the selected tests, in their original order
+	 */
+	public List<CtestTest> filter(List<CtestTest> tests)
+	{
+		List<CtestTest> result = new ArrayList<>();
+		for (CtestTest test : tests)
+			if (accepts(test))
+				result.add(test);
+		return result;
+	}
+
+	/**
+	 * @param patterns regular expressions
+	 * @param values   values
+	 * @return {@code true} if any pattern matches part of any value
+	 */
+	private static boolean findAny(List<Pattern> patterns, List<String> values)
+	{
+		for (Pattern pattern : patterns)
+			for (String value : values)
+				if (pattern.matcher(value).find())
+					return true;
+		return false;
+	}
+}
@@ -1,29 +1,30 @@
 package io.github.cmakemavenplugin.cmake.maven.plugin;
 
+import io.github.cmakemavenplugin.cmake.common.Platform;
 import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
 
 import javax.inject.Inject;
-import javax.xml.transform.Transformer;
+import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * Goal which runs CMake/CTest tests.
@@ -59,6 +60,17 @@ public class TestMojo extends CmakeMojo
 	 */
 	@Parameter(defaultValue = "${project.build.directory}/cmake")
 	private File projectDirectory;
+	/**
+	 * The test preset to use, equivalent to {@code ctest --preset {preset}}. If the preset's configure preset
+	 * specifies a {@code binaryDir}, it overrides {@link #projectDirectory}.
+	 */
+	@Parameter(property = "cmake.testPreset")
+	private String preset;
+	/**
+	 * The directory containing {@code CMakePresets.json}. Only used if {@link #preset} is set.
+	 */
+	@Parameter(defaultValue = "${project.basedir}")
+	private File sourcePath;
 	/**
 	 * Value that lets Maven tests fail without causing the build to fail.
 	 */
@@ -90,10 +102,106 @@ public class TestMojo extends CmakeMojo
 	private boolean skipTests;
 	/**
 	 * Number of threads to use; if not specified, uses
-	 * <code>Runtime.getRuntime().availableProcessors()</code>.
+	 * <code>Runtime.getRuntime().availableProcessors()</code>. If {@link #preset} is set and this value is not
+	 * specified, the preset's {@code execution.jobs} is used instead, if it has one.
 	 */
 	@Parameter(property = "threadCount", defaultValue = "0")
 	private int threadCount;
+	/**
+	 * {@code true} if the start and end of each test should be written to
+	 * {@code ${project.build.directory}/cmake-timeline/<goal>-<execution>.json} in the Chrome Trace Event
+	 * format, with one lane per worker slot.
+	 */
+	@Parameter(property = "cmake.timeline", defaultValue = "false")
+	private boolean timeline;
+	/**
+	 * The default timeout of each test, in seconds, equivalent to {@code ctest --timeout}. Tests that set the
+	 * {@code TIMEOUT} property are unaffected. {@code 0} disables the timeout.
+	 */
+	@Parameter(property = "cmake.test.timeout", defaultValue = "0")
+	private int testTimeout;
+	/**
+	 * The time of day at which all tests must stop, equivalent to {@code ctest --stop-time}, e.g.
+	 * {@code "23:30:00"} or {@code "23:30:00 UTC"}.
+	 */
+	@Parameter(property = "cmake.test.stopTime")
+	private String stopTime;
+	/**
+	 * The number of seconds without output after which ctest and its descendants are terminated. Stack traces
+	 * of the processes are logged first if {@code eu-stack} or {@code gdb} is on the {@code PATH}, and a
+	 * partial report is written for the tests that ran. {@code 0} disables the watchdog.
+	 * <p>
+	 * Unless {@code --verbose} is passed to ctest, it only prints a line when a test starts or finishes, so the
+	 * timeout must exceed the duration of the slowest test. The timeout also limits the time it takes to list the
+	 * tests, which prints nothing until it is done.
+	 */
+	@Parameter(property = "cmake.test.idleTimeout", defaultValue = "0")
+	private int idleTimeout;
+	/**
+	 * {@code true} if a resource specification file should be passed to ctest, describing {@code cpus} and
+	 * {@code mem} (in MiB) resources. Tests that set the {@code RESOURCE_GROUPS} property, such as
+	 * {@code "cpus:2,mem:4096"}, only run once enough of the resources are free, so memory-hungry tests can run
+	 * alongside lighter ones at a high {@link #threadCount}.
+	 */
+	@Parameter(property = "cmake.test.resourceSpec", defaultValue = "false")
+	private boolean resourceSpec;
+	/**
+	 * The number of CPU slots in the resource specification; if not specified, uses
+	 * <code>Runtime.getRuntime().availableProcessors()</code>.
+	 */
+	@Parameter(property = "cmake.test.resourceCpus", defaultValue = "0")
+	private int resourceCpus;
+	/**
+	 * The memory in the resource specification, in MiB; if not specified, uses the host's available memory
+	 * divided by the number of modules that Maven may build at the same time ({@code -T}). The default is
+	 * measured once, before the tests start, so set this explicitly if other processes compete for memory.
+	 */
+	@Parameter(property = "cmake.test.resourceMemory", defaultValue = "0")
+	private long resourceMemory;
+	/**
+	 * The tests to run, as a comma-separated list of patterns in the style of Surefire's {@code -Dtest}, e.g.
+	 * {@code Foo*}, {@code FooTest#bar} or {@code Foo*,!FooSlow*}. Patterns match entire test names,
+	 * {@code #} matches the {@code .} in GoogleTest names, and a leading {@code !} excludes matching tests.
+	 * Patterns cannot contain commas.
+	 */
+	@Parameter(property = "test")
+	private String test;
+	/**
+	 * Regular expressions that select the tests to run, equivalent to {@code ctest -R}. Tests must match one of
+	 * them. Like {@link #excludes} and {@link #labels}, the expressions are limited to the syntax that both Java
+	 * and CMake support, so {@code \d}, {@code {1,3}}, {@code (?i)} and lazy quantifiers are rejected.
+	 * <p>
+	 * When {@code includes}, {@code excludes} or {@code labels} are set through their property, e.g.
+	 * {@code -Dcmake.test.include=...}, Maven splits the value at every comma into separate expressions. An
+	 * expression that contains a comma, such as {@code [,;]}, must be configured in the POM instead.
+	 */
+	@Parameter(property = "cmake.test.include")
+	private List<String> includes;
+	/**
+	 * Regular expressions that exclude tests from the run, equivalent to {@code ctest -E}.
+	 */
+	@Parameter(property = "cmake.test.exclude")
+	private List<String> excludes;
+	/**
+	 * Regular expressions that select tests by label, equivalent to {@code ctest -L}. Tests must have a label
+	 * that matches one of them. Expressions that start with {@code !} instead exclude the tests that have a
+	 * matching label, equivalent to {@code ctest -LE}.
+	 */
+	@Parameter(property = "cmake.test.labels")
+	private List<String> labels;
+	/**
+	 * {@code true} if the build should fail when {@link #test}, {@link #includes}, {@link #excludes} or
+	 * {@link #labels} select no tests.
+	 */
+	@Parameter(property = "surefire.failIfNoSpecifiedTests", defaultValue = "true")
+	private boolean failIfNoSpecifiedTests;
+	/**
+	 * {@code true} if the selected tests should be listed, along with their labels, instead of being run. The
+	 * list is cached in {@code ${project.build.directory}/ctest-tests.json} and reused until a
+	 * {@code CTestTestfile.cmake} changes.
+	 */
+	@Parameter(property = "cmake.test.list", defaultValue = "false")
+	private boolean listTests;
 
 	/**
 	 * The dashboard to which results should be submitted. This is configured through the optional
@@ -112,17 +220,20 @@ public class TestMojo extends CmakeMojo
 	@Parameter(property = "cmake.dashboard")
 	private String dashboard;
 
+	private final MavenSession session;
+
 	/**
 	 * Creates a new instance.
 	 *
-	 * @param project       an instance of {@code MavenProject}
-	 * @param session       an instance of {@code MavenSession}
-	 * @param pluginManager an instance of {@code PluginManager}
+	 * @param project          an instance of {@code MavenProject}
+	 * @param session          an instance of {@code MavenSession}
+	 * @param repositorySystem an instance of {@code RepositorySystem}
 	 */
 	@Inject
-	public TestMojo(MavenProject project, MavenSession session, BuildPluginManager pluginManager)
+	public TestMojo(MavenProject project, MavenSession session, RepositorySystem repositorySystem)
 	{
-		super(project, session, pluginManager);
+		super(project, session, repositorySystem);
+		this.session = session;
 	}
 
 	/**
@@ -131,9 +242,8 @@ public class TestMojo extends CmakeMojo
 	 * @throws MojoExecutionException if an unexpected problem occurs
 	 */
 	@Override
-	public void execute() throws MojoExecutionException
+	protected void run() throws MojoExecutionException
 	{
-		super.execute();
 		Log log = getLog();
 
 		if (buildDirectoryDeprecatedParameter != null)
@@ -166,59 +276,152 @@ public class TestMojo extends CmakeMojo
 				log.info("Tests are skipped.");
 			return;
 		}
+		ProcessBuilder processBuilder = new ProcessBuilder();
+		overrideEnvironmentVariables(processBuilder);
+		Integer presetJobs = null;
+		if (preset != null)
+		{
+			CmakePresets presets = getPresets(sourcePath);
+			try
+			{
+				Path binaryDirectory = presets.getBinaryDirectory(presets.getConfigurePreset(CmakePresets.TEST,
+					preset), processBuilder.environment());
+				if (binaryDirectory != null)
+					projectDirectory = binaryDirectory.toFile();
+				presetJobs = presets.getJobs(CmakePresets.TEST, preset);
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new MojoExecutionException(e.getMessage(), e);
+			}
+		}
 		String projectPath = projectDirectory.getAbsolutePath();
 		if (!projectDirectory.exists())
 			throw new MojoExecutionException(projectPath + " does not exist");
 		if (!projectDirectory.isDirectory())
 			throw new MojoExecutionException(projectPath + " isn't directory");
 
-		if (threadCount == 0)
+		// Let the test preset decide the number of jobs unless the user asked for a specific value
+		if (threadCount == 0 && presetJobs == null)
 			threadCount = Runtime.getRuntime().availableProcessors();
 
 		try
 		{
 			downloadBinariesIfNecessary();
 
-			ProcessBuilder processBuilder = new ProcessBuilder().directory(projectDirectory);
-			overrideEnvironmentVariables(processBuilder);
-
 			String ctestPath = getBinaryPath("ctest", processBuilder).toString();
 			processBuilder.command().add(ctestPath);
 
+			if (preset != null)
+			{
+				// ctest looks for CMakePresets.json in the current directory
+				processBuilder.directory(sourcePath);
+				Collections.addAll(processBuilder.command(), "--preset", preset);
+			}
+			else
+				processBuilder.directory(projectDirectory);
+
+			TestFilter filter = getFilter();
+			if (listTests || !filter.isEmpty())
+			{
+				List<CtestTest> tests = getTests(processBuilder);
+				List<CtestTest> selected = filter.filter(tests);
+				getSpan().setAttribute("ctest.selected_count", selected.size());
+				if (listTests)
+				{
+					if (log.isInfoEnabled())
+					{
+						log.info(selected.size() + " of " + tests.size() + " tests:");
+						for (CtestTest selectedTest : selected)
+							log.info("  " + selectedTest);
+					}
+					return;
+				}
+				if (selected.isEmpty())
+				{
+					if (failIfNoSpecifiedTests)
+					{
+						throw new MojoExecutionException("No tests matched " + filter.getOptions() + ". Set " +
+							"-Dsurefire.failIfNoSpecifiedTests=false to ignore this error.");
+					}
+					if (log.isInfoEnabled())
+						log.info("No tests matched " + filter.getOptions());
+					return;
+				}
+				if (log.isInfoEnabled())
+					log.info("Running " + selected.size() + " of " + tests.size() + " tests");
+				processBuilder.command().addAll(filter.getOptions());
+			}
+
 			Collections.addAll(processBuilder.command(), "--test-action", "Test", "--output-on-failure");
 
-			String threadCountString = Integer.toString(threadCount);
-			Collections.addAll(processBuilder.command(), "--parallel", threadCountString);
+			if (threadCount != 0)
+				Collections.addAll(processBuilder.command(), "--parallel", Integer.toString(threadCount));
 			if (config != null)
 				Collections.addAll(processBuilder.command(), "--build-config", config);
 
 			// If set, this will post results to a pre-configured dashboard
 			if (dashboard != null)
 				Collections.addAll(processBuilder.command(), "-D", dashboard);
+			if (testTimeout != 0)
+				Collections.addAll(processBuilder.command(), "--timeout", Integer.toString(testTimeout));
+			if (stopTime != null)
+				Collections.addAll(processBuilder.command(), "--stop-time", stopTime);
+			if (resourceSpec)
+			{
+				Path specFile = writeResourceSpec();
+				Collections.addAll(processBuilder.command(), "--resource-spec-file", specFile.toString());
+			}
 
 			addOptions(processBuilder);
 
 			if (log.isDebugEnabled())
 			{
 				log.debug("projectDirectory: " + projectPath);
+				log.debug("preset: " + preset);
 				log.debug("Number of threads used: " + threadCount);
 				log.debug("Environment: " + processBuilder.environment());
 				log.debug("Command-line: " + processBuilder.command());
 			}
 
+			getSpan().setAttribute("cmake.config", config).
+				setAttribute("cmake.preset", preset).
+				setAttribute("ctest.thread_count", threadCount);
 			// Run the ctest suite of tests
-			int returnCode = Mojos.waitFor(processBuilder, getLog());
+			CtestProgress progress = new CtestProgress();
+			IdleWatchdog watchdog = null;
+			ProcessListener listener = progress;
+			if (idleTimeout != 0)
+			{
+				watchdog = new IdleWatchdog(idleTimeout, Platform.detected(), log);
+				listener = ProcessListener.of(progress, watchdog);
+			}
+			int returnCode = waitFor(processBuilder, listener);
+			if (timeline)
+			{
+				ChromeTrace trace = new ChromeTrace();
+				progress.addTo(trace);
+				Path timelinePath = getReportPath("cmake-timeline", ".json");
+				trace.write(timelinePath);
+				if (log.isInfoEnabled())
+					log.info("Timeline: " + timelinePath);
+			}
 
-			// Convert ctest xml output to junit xml for better integration
-			InputStream stream = TestMojo.class.getResourceAsStream("/ctest2junit.xsl");
-			TransformerFactory tf = TransformerFactory.newInstance();
-			StreamSource xsltSource = new StreamSource(stream);
-			Transformer transformer = tf.newTransformer(xsltSource);
-
-			// Read the ctest TAG file to find out what current run was called
-			Path tagFile = projectDirectory.toPath().resolve("Testing/TAG");
-			Charset charset = Charset.defaultCharset();
-			StreamSource source = getStreamSource(tagFile, charset);
+			Source source;
+			boolean terminated = watchdog != null && watchdog.hasFired();
+			if (terminated)
+			{
+				// ctest only writes Test.xml once all tests are done
+				log.warn("Writing a partial report of the tests that ran");
+				source = progress.toCtestReport("terminated after " + idleTimeout + " seconds without output");
+			}
+			else
+			{
+				// Read the ctest TAG file to find out what current run was called
+				Path tagFile = projectDirectory.toPath().resolve("Testing/TAG");
+				Charset charset = Charset.defaultCharset();
+				source = getStreamSource(tagFile, charset);
+			}
 			Path reportsDirectory = Paths.get(project.getBuild().getDirectory(), "surefire-reports");
 			Path xmlReport = reportsDirectory.resolve("CTestResults.xml");
 			StreamResult result = new StreamResult(xmlReport.toFile());
@@ -226,13 +429,22 @@ public class TestMojo extends CmakeMojo
 			// We have to create if there aren't other Surefire tests
 			Files.createDirectories(reportsDirectory);
 
-			// Transform CTest output into Surefire style test output
-			transformer.transform(source, result);
+			// Convert ctest xml output to junit xml for better integration
+			try (Span convertSpan = getSpan().child("convert-report"))
+			{
+				convertSpan.setAttribute("ctest.report", xmlReport.toString());
+				CtestReports.toJunit(source, result);
+			}
 
 			if (returnCode != 0)
 			{
 				if (ignoreTestFailure)
 					log.warn("ignoreTestFailure is true. Ignoring failure");
+				else if (terminated)
+				{
+					throw new MojoExecutionException("ctest was terminated after " + idleTimeout +
+						" seconds without output");
+				}
 				else
 					throw new MojoExecutionException("Return code: " + returnCode);
 			}
@@ -257,4 +469,100 @@ public class TestMojo extends CmakeMojo
 		Path xmlSource = projectDirectory.toPath().resolve("Testing/" + tag + "/Test.xml");
 		return new StreamSource(xmlSource.toFile());
 	}
+
+	/**
+	 * Returns the filter that selects the tests to run.
+	 *
+	 * @return the filter
+	 * @throws MojoExecutionException if a pattern is invalid
+	 */
+	private TestFilter getFilter() throws MojoExecutionException
+	{
+		List<String> includedTests = new ArrayList<>();
+		List<String> excludedTests = new ArrayList<>();
+		if (includes != null)
+			includedTests.addAll(includes);
+		if (excludes != null)
+			excludedTests.addAll(excludes);
+		if (test != null)
+		{
+			for (String pattern : test.split(","))
+			{
+				pattern = pattern.trim();
+				if (pattern.isEmpty())
+					continue;
+				if (pattern.startsWith("!"))
+					excludedTests.add(TestFilter.globToRegex(pattern.substring(1)));
+				else
+					includedTests.add(TestFilter.globToRegex(pattern));
+			}
+		}
+		List<String> labelPatterns;
+		if (labels == null)
+			labelPatterns = Collections.emptyList();
+		else
+			labelPatterns = labels;
+		try
+		{
+			return new TestFilter(includedTests, excludedTests, labelPatterns);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the tests of the build tree.
+	 *
+	 * @param processBuilder runs ctest in the build tree, without any other options
+	 * @return the tests
+	 * @throws IOException          if an I/O error occurs, or ctest fails
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private List<CtestTest> getTests(ProcessBuilder processBuilder) throws IOException, InterruptedException
+	{
+		ProcessBuilder discovery = new ProcessBuilder(new ArrayList<>(processBuilder.command())).
+			directory(processBuilder.directory());
+		discovery.environment().clear();
+		discovery.environment().putAll(processBuilder.environment());
+		if (config != null)
+			Collections.addAll(discovery.command(), "--build-config", config);
+		Path cache = Paths.get(project.getBuild().getDirectory(), "ctest-tests.json");
+		try (Span span = getSpan().child("discover-tests"))
+		{
+			List<CtestTest> tests = CtestDiscovery.getTests(discovery, projectDirectory.toPath(), cache, idleTimeout,
+				Platform.detected(), getLog());
+			span.setAttribute("ctest.test_count", tests.size());
+			return tests;
+		}
+	}
+
+	/**
+	 * Writes the resource specification file.
+	 *
+	 * @return the path of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private Path writeResourceSpec() throws IOException
+	{
+		int cpus = resourceCpus;
+		if (cpus == 0)
+			cpus = Runtime.getRuntime().availableProcessors();
+		long memory = resourceMemory;
+		if (memory == 0)
+		{
+			int concurrentModules = Math.min(session.getRequest().getDegreeOfConcurrency(),
+				session.getProjects().size());
+			memory = CtestResourceSpec.getAvailableMemory(Math.max(1, concurrentModules));
+		}
+		Path path = Paths.get(project.getBuild().getDirectory(), "ctest-resources.json");
+		CtestResourceSpec.write(path, cpus, memory);
+		Log log = getLog();
+		if (log.isInfoEnabled())
+			log.info("Test resources: " + cpus + " CPUs, " + memory + " MiB of memory");
+		getSpan().setAttribute("ctest.resources.cpus", cpus).
+			setAttribute("ctest.resources.memory", memory);
+		return path;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package com.github.cmake.maven.project;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cmakemavenplugin.cmake.maven.plugin.ChromeTrace;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ChromeTraceTest
+{
+	/**
+	 * Each job goes to the first lane that is idle when it starts.
+	 */
+	@Test
+	public void lanes() throws IOException
+	{
+		ChromeTrace timeline = new ChromeTrace();
+		assertTrue(timeline.isEmpty());
+		// Added out of order
+		timeline.add("d", "job", 12, 14);
+		timeline.add("a", "job", 0, 10);
+		timeline.add("b", "job", 5, 15);
+		// Reuses the lane of "a", which ends when "c" starts
+		timeline.add("c", "job", 10, 20);
+		// Both lanes are busy. Jobs that start at the same time are placed in the order that they end.
+		timeline.add("e", "job", 12, 13);
+		// Reuses the lane of "b"
+		timeline.add("f", "job", 15, 16);
+		// The end is clamped to the start
+		timeline.add("g", "job", 30, 25);
+
+		JsonNode root = write(timeline);
+		Map<String, String> jobs = new LinkedHashMap<>();
+		List<String> lanes = new ArrayList<>();
+		for (JsonNode event : root.path("traceEvents"))
+		{
+			switch (event.path("ph").asText())
+			{
+				case "X":
+				{
+					jobs.put(event.path("name").asText(), event.path("tid").asInt() + "@" +
+						event.path("ts").asLong() + "+" + event.path("dur").asLong());
+					break;
+				}
+				case "M":
+				{
+					lanes.add(event.path("tid").asInt() + ":" + event.path("args").path("name").asText());
+					break;
+				}
+				default:
+					throw new AssertionError(event.toString());
+			}
+		}
+		Map<String, String> expected = new LinkedHashMap<>();
+		expected.put("a", "0@0+10");
+		expected.put("b", "1@5+10");
+		expected.put("c", "0@10+10");
+		expected.put("e", "2@12+1");
+		expected.put("d", "3@12+2");
+		expected.put("f", "1@15+1");
+		expected.put("g", "0@30+0");
+		assertEquals(expected, jobs);
+		assertEquals(Arrays.asList("0:slot 0", "1:slot 1", "2:slot 2", "3:slot 3"), lanes);
+	}
+
+	@Test
+	public void empty() throws IOException
+	{
+		JsonNode root = write(new ChromeTrace());
+		assertEquals("ms", root.path("displayTimeUnit").asText());
+		assertEquals(0, root.path("traceEvents").size());
+	}
+
+	/**
+	 * @param timeline a timeline
+	 * @return the JSON document that the timeline was written as
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static JsonNode write(ChromeTrace timeline) throws IOException
+	{
+		Path directory = Files.createTempDirectory("cmake");
+		Path json = directory.resolve("timeline.json");
+		try
+		{
+			timeline.write(json);
+			return new ObjectMapper().readTree(json.toFile());
+		}
+		finally
+		{
+			Files.deleteIfExists(json);
+			Files.delete(directory);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.maven.plugin.CmakePresets;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class CmakePresetsTest
+{
+	private Path source;
+
+	@BeforeEach
+	public void createSource() throws IOException
+	{
+		source = Files.createTempDirectory("cmake").toAbsolutePath().normalize().resolve("hello");
+		Files.createDirectories(source);
+	}
+
+	@AfterEach
+	public void deleteSource() throws IOException
+	{
+		FileOperations.deleteRecursively(source.getParent(), new SystemStreamLog());
+	}
+
+	@Test
+	public void binaryDirRelativeToSource() throws IOException
+	{
+		CmakePresets presets = write("{\"configurePresets\": [" +
+			"{\"name\": \"default\", \"binaryDir\": \"build/default\"}," +
+			"{\"name\": \"none\"}]}");
+		assertEquals(source.resolve("build/default"), presets.getBinaryDirectory("default", environment()));
+		assertNull(presets.getBinaryDirectory("none", environment()));
+	}
+
+	@Test
+	public void macros() throws IOException
+	{
+		CmakePresets presets = write("{\"configurePresets\": [{\"name\": \"ninja\", \"generator\": \"Ninja\", " +
+			"\"binaryDir\": \"${sourceParentDir}/out/${sourceDirName}-${presetName}-${generator}${dollar}{x}\"}]}");
+		assertEquals(source.getParent().resolve("out/hello-ninja-Ninja${x}"),
+			presets.getBinaryDirectory("ninja", environment()));
+	}
+
+	@Test
+	public void environmentMacros() throws IOException
+	{
+		CmakePresets presets = write("{\"configurePresets\": [" +
+			"{\"name\": \"base\", \"hidden\": true, \"environment\": {\"ROOT\": \"base\", \"OTHER\": \"x\"}}," +
+			"{\"name\": \"child\", \"inherits\": \"base\", \"environment\": {\"ROOT\": \"child\", \"OTHER\": null}," +
+			"\"binaryDir\": \"${sourceDir}/$env{ROOT}/$env{OTHER}/$penv{ROOT}\"}]}");
+		Map<String, String> environment = environment();
+		environment.put("ROOT", "process");
+		environment.put("OTHER", "process");
+		assertEquals(source.resolve("child/process"), presets.getBinaryDirectory("child", environment));
+	}
+
+	@Test
+	public void fileDirOfIncludedFile() throws IOException
+	{
+		Files.createDirectories(source.resolve("presets"));
+		Files.write(source.resolve("presets/common.json"), ("{\"version\": 4, \"configurePresets\": [" +
+			"{\"name\": \"included\", \"binaryDir\": \"${fileDir}/build\"}]}").getBytes(StandardCharsets.UTF_8));
+		CmakePresets presets = write("{\"version\": 4, \"include\": [\"presets/common.json\"], " +
+			"\"configurePresets\": [{\"name\": \"child\", \"inherits\": \"included\"}]}");
+		assertEquals(source.resolve("presets/build"), presets.getBinaryDirectory("child", environment()));
+	}
+
+	@Test
+	public void userPresets() throws IOException
+	{
+		Files.write(source.resolve("CMakeUserPresets.json"), ("{\"configurePresets\": [" +
+			"{\"name\": \"mine\", \"inherits\": \"default\", \"binaryDir\": \"mine\"}]}").
+			getBytes(StandardCharsets.UTF_8));
+		CmakePresets presets = write("{\"configurePresets\": [{\"name\": \"default\", \"binaryDir\": \"build\"}]}");
+		assertEquals(source.resolve("mine"), presets.getBinaryDirectory("mine", environment()));
+	}
+
+	@Test
+	public void firstParentWins() throws IOException
+	{
+		CmakePresets presets = write("{\"configurePresets\": [" +
+			"{\"name\": \"a\", \"binaryDir\": \"a\"}," +
+			"{\"name\": \"b\", \"binaryDir\": \"b\", \"generator\": \"Ninja\"}," +
+			"{\"name\": \"grandchild\", \"inherits\": \"child\", \"binaryDir\": \"${generator}\"}," +
+			"{\"name\": \"child\", \"inherits\": [\"a\", \"b\"]}]," +
+			"\"buildPresets\": [{\"name\": \"build\", \"configurePreset\": \"child\"}]}");
+		assertEquals(source.resolve("a"), presets.getBinaryDirectory("child", environment()));
+		assertEquals(source.resolve("Ninja"), presets.getBinaryDirectory("grandchild", environment()));
+		assertEquals("child", presets.getConfigurePreset(CmakePresets.BUILD, "build"));
+	}
+
+	@Test
+	public void jobs() throws IOException
+	{
+		CmakePresets presets = write("{\"configurePresets\": [{\"name\": \"default\"}]," +
+			"\"buildPresets\": [" +
+			"{\"name\": \"base\", \"configurePreset\": \"default\", \"jobs\": 8}," +
+			"{\"name\": \"child\", \"inherits\": \"base\"}," +
+			"{\"name\": \"none\", \"configurePreset\": \"default\"}]," +
+			"\"testPresets\": [" +
+			"{\"name\": \"base\", \"configurePreset\": \"default\", \"execution\": {\"jobs\": 4}}," +
+			"{\"name\": \"child\", \"inherits\": \"base\", \"execution\": {\"stopOnFailure\": true}}," +
+			"{\"name\": \"none\", \"configurePreset\": \"default\", \"execution\": {}}]}");
+		assertEquals(Integer.valueOf(8), presets.getJobs(CmakePresets.BUILD, "child"));
+		assertNull(presets.getJobs(CmakePresets.BUILD, "none"));
+		// The fields of "execution" are inherited one by one
+		assertEquals(Integer.valueOf(4), presets.getJobs(CmakePresets.TEST, "child"));
+		assertNull(presets.getJobs(CmakePresets.TEST, "none"));
+	}
+
+	@Test
+	public void invalidPresets() throws IOException
+	{
+		CmakePresets presets = write("{\"configurePresets\": [" +
+			"{\"name\": \"a\", \"inherits\": \"b\"}," +
+			"{\"name\": \"b\", \"inherits\": \"a\"}," +
+			"{\"name\": \"macro\", \"binaryDir\": \"${unknown}\"}]," +
+			"\"buildPresets\": [{\"name\": \"build\"}]}");
+		assertThrows(IllegalArgumentException.class, () -> presets.getBinaryDirectory("a", environment()));
+		assertThrows(IllegalArgumentException.class, () -> presets.getBinaryDirectory("macro", environment()));
+		assertThrows(IllegalArgumentException.class, () -> presets.getBinaryDirectory("missing",
+			environment()));
+		assertThrows(IllegalArgumentException.class, () -> presets.getConfigurePreset(CmakePresets.BUILD,
+			"build"));
+	}
+
+	@Test
+	public void missingFile()
+	{
+		assertThrows(IOException.class, () -> CmakePresets.load(source));
+	}
+
+	/**
+	 * Writes {@code CMakePresets.json} and parses it.
+	 *
+	 * @param json the contents of the file
+	 * @return the presets
+	 * @throws IOException if an I/O error occurs
+	 */
+	private CmakePresets write(String json) throws IOException
+	{
+		Files.write(source.resolve("CMakePresets.json"), json.getBytes(StandardCharsets.UTF_8));
+		return CmakePresets.load(source);
+	}
+
+	/**
+	 * @return an empty, modifiable environment
+	 */
+	private static Map<String, String> environment()
+	{
+		return new HashMap<>();
+	}
+}
@@ -0,0 +1,272 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.maven.plugin.ConfigureCache;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ConfigureCacheTest
+{
+	private final Log log = new SystemStreamLog();
+	private Path directory;
+	private ConfigureCache cache;
+	/**
+	 * The compiler that {@link #configure} detects.
+	 */
+	private Path compiler;
+
+	@BeforeEach
+	public void createCache() throws IOException
+	{
+		directory = Files.createTempDirectory("cmake");
+		cache = new ConfigureCache(directory.resolve("cache"), log);
+		compiler = directory.resolve("toolchain/c++");
+		Files.createDirectories(compiler.getParent());
+		Files.write(compiler, "compiler".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@AfterEach
+	public void deleteCache() throws IOException
+	{
+		FileOperations.deleteRecursively(directory, log);
+	}
+
+	/**
+	 * A snapshot saved by one workspace must be found and relocated by a workspace in another directory.
+	 */
+	@Test
+	public void restoreIntoDifferentDirectory() throws IOException
+	{
+		Path firstSource = createWorkspace("first");
+		Path firstBinary = firstSource.resolve("target/cmake");
+		configure(firstSource, firstBinary);
+		String firstFingerprint = getFingerprint(newProcess(createCmake("first-cmake"), firstSource, firstBinary),
+			firstSource, firstBinary);
+		cache.save(firstFingerprint, firstSource, firstBinary);
+
+		// A different checkout directory, with its own copy of cmake
+		Path secondSource = createWorkspace("second/nested");
+		Path secondBinary = secondSource.resolve("target/cmake");
+		ProcessBuilder secondProcess = newProcess(createCmake("second-cmake"), secondSource, secondBinary);
+		String secondFingerprint = getFingerprint(secondProcess, secondSource, secondBinary);
+		assertEquals(firstFingerprint, secondFingerprint);
+
+		assertTrue(cache.restore(secondFingerprint, secondProcess, secondSource, secondBinary));
+		assertFalse(Files.exists(secondBinary.resolve("compilers.tsv")));
+		String cacheFile = read(secondBinary.resolve("CMakeCache.txt"));
+		assertTrue(cacheFile.contains("CMAKE_HOME_DIRECTORY:INTERNAL=" + cmakePath(secondSource) + "\n"),
+			cacheFile);
+		assertTrue(cacheFile.contains("CMAKE_CACHEFILE_DIR:INTERNAL=" + cmakePath(secondBinary) + "\n"),
+			cacheFile);
+		assertFalse(cacheFile.contains(cmakePath(firstSource)), cacheFile);
+		String compiler = read(secondBinary.resolve("CMakeFiles/3.28.1/CMakeCXXCompiler.cmake"));
+		assertTrue(compiler.contains(cmakePath(secondBinary) + "/CMakeFiles/CMakeScratch"), compiler);
+	}
+
+	@Test
+	public void differentScriptsDoNotMatch() throws IOException
+	{
+		Path firstSource = createWorkspace("first");
+		Path firstBinary = firstSource.resolve("target/cmake");
+		Path secondSource = createWorkspace("second");
+		Path secondBinary = secondSource.resolve("target/cmake");
+		Files.write(secondSource.resolve("CMakeLists.txt"), "project(other)\n".getBytes(StandardCharsets.UTF_8));
+		Path cmake = createCmake("bin");
+		assertNotEquals(getFingerprint(newProcess(cmake, firstSource, firstBinary), firstSource, firstBinary),
+			getFingerprint(newProcess(cmake, secondSource, secondBinary), secondSource, secondBinary));
+	}
+
+	@Test
+	public void differentOptionsDoNotMatch() throws IOException
+	{
+		Path source = createWorkspace("first");
+		Path binary = source.resolve("target/cmake");
+		Path cmake = createCmake("bin");
+		ProcessBuilder other = newProcess(cmake, source, binary);
+		other.command().add("-DFOO=2");
+		assertNotEquals(getFingerprint(newProcess(cmake, source, binary), source, binary),
+			getFingerprint(other, source, binary));
+	}
+
+	/**
+	 * Scripts in the Maven build directory, such as unpacked dependencies, are not part of the project.
+	 */
+	@Test
+	public void buildDirectoryIsIgnored() throws IOException
+	{
+		Path source = createWorkspace("first");
+		Path binary = source.resolve("target/cmake");
+		Path cmake = createCmake("bin");
+		String before = getFingerprint(newProcess(cmake, source, binary), source, binary);
+		Files.createDirectories(source.resolve("target/dependency"));
+		Files.write(source.resolve("target/dependency/config.cmake"), "set(X 1)\n".getBytes(StandardCharsets.UTF_8));
+		assertEquals(before, getFingerprint(newProcess(cmake, source, binary), source, binary));
+	}
+
+	/**
+	 * A compiler that is upgraded in place invalidates the snapshot.
+	 */
+	@Test
+	public void modifiedCompilerIsNotRestored() throws IOException
+	{
+		Path source = createWorkspace("first");
+		Path binary = source.resolve("target/cmake");
+		ProcessBuilder process = newProcess(createCmake("bin"), source, binary);
+		String fingerprint = saveSnapshot(process, source, binary);
+
+		Path other = source.resolve("target/other");
+		assertTrue(cache.restore(fingerprint, process, source, other));
+		FileOperations.deleteRecursively(other, log);
+
+		Files.write(compiler, "upgraded compiler".getBytes(StandardCharsets.UTF_8));
+		assertFalse(cache.restore(fingerprint, process, source, other));
+		assertFalse(Files.exists(other.resolve("CMakeCache.txt")));
+	}
+
+	/**
+	 * A compiler with the same name that now comes first on the PATH invalidates the snapshot.
+	 */
+	@Test
+	public void hiddenCompilerIsNotRestored() throws IOException
+	{
+		Path source = createWorkspace("first");
+		Path binary = source.resolve("target/cmake");
+		ProcessBuilder process = newProcess(createCmake("bin"), source, binary);
+		Path early = directory.resolve("early");
+		Files.createDirectories(early);
+		process.environment().put("PATH", early + File.pathSeparator + compiler.getParent());
+		String fingerprint = saveSnapshot(process, source, binary);
+
+		Path other = source.resolve("target/other");
+		Files.write(early.resolve(compiler.getFileName().toString()), "other compiler".
+			getBytes(StandardCharsets.UTF_8));
+		assertFalse(cache.restore(fingerprint, process, source, other));
+	}
+
+	/**
+	 * Configures a project and saves a snapshot of it.
+	 *
+	 * @param process the process that configures the project
+	 * @param source  the source directory
+	 * @param binary  the project directory
+	 * @return the fingerprint of the snapshot
+	 * @throws IOException if an I/O error occurs
+	 */
+	private String saveSnapshot(ProcessBuilder process, Path source, Path binary) throws IOException
+	{
+		configure(source, binary);
+		String fingerprint = getFingerprint(process, source, binary);
+		cache.save(fingerprint, source, binary);
+		return fingerprint;
+	}
+
+	/**
+	 * @param process the process that configures the project
+	 * @param source  the source directory
+	 * @param binary  the project directory
+	 * @return the fingerprint of the configuration
+	 * @throws IOException if an I/O error occurs
+	 */
+	private String getFingerprint(ProcessBuilder process, Path source, Path binary) throws IOException
+	{
+		return cache.getFingerprint(process, source, binary, source.resolve("target"));
+	}
+
+	/**
+	 * Creates a source directory.
+	 *
+	 * @param name the name of the workspace
+	 * @return the source directory
+	 * @throws IOException if an I/O error occurs
+	 */
+	private Path createWorkspace(String name) throws IOException
+	{
+		Path source = directory.resolve(name);
+		Files.createDirectories(source.resolve("cmake"));
+		Files.write(source.resolve("CMakeLists.txt"), "project(hello)\ninclude(cmake/utils.cmake)\n".
+			getBytes(StandardCharsets.UTF_8));
+		Files.write(source.resolve("cmake/utils.cmake"), "set(UTILS 1)\n".getBytes(StandardCharsets.UTF_8));
+		return source;
+	}
+
+	/**
+	 * Creates a copy of the cmake executable.
+	 *
+	 * @param name the name of the directory that contains the copy
+	 * @return the path of the copy
+	 * @throws IOException if an I/O error occurs
+	 */
+	private Path createCmake(String name) throws IOException
+	{
+		Path cmake = directory.resolve(name).resolve("cmake");
+		Files.createDirectories(cmake.getParent());
+		Files.write(cmake, "cmake executable".getBytes(StandardCharsets.UTF_8));
+		return cmake;
+	}
+
+	/**
+	 * Writes the files that configuring a project produces.
+	 *
+	 * @param source the source directory
+	 * @param binary the project directory
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void configure(Path source, Path binary) throws IOException
+	{
+		Path version = binary.resolve("CMakeFiles/3.28.1");
+		Files.createDirectories(version);
+		Files.write(binary.resolve("CMakeCache.txt"), ("CMAKE_HOME_DIRECTORY:INTERNAL=" + cmakePath(source) +
+			"\nCMAKE_CACHEFILE_DIR:INTERNAL=" + cmakePath(binary) + "\n").getBytes(StandardCharsets.UTF_8));
+		Files.write(version.resolve("CMakeSystem.cmake"), "set(CMAKE_SYSTEM_NAME \"Linux\")\n".
+			getBytes(StandardCharsets.UTF_8));
+		Files.write(version.resolve("CMakeCXXCompiler.cmake"), ("set(CMAKE_CXX_COMPILER \"" + cmakePath(compiler) +
+			"\")\nset(CMAKE_CXX_COMPILER_WORKS \"" + cmakePath(binary) + "/CMakeFiles/CMakeScratch\")\n").
+			getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param cmake  the cmake executable
+	 * @param source the source directory
+	 * @param binary the project directory
+	 * @return the process that configures the project, as built by the generate goal
+	 */
+	private static ProcessBuilder newProcess(Path cmake, Path source, Path binary)
+	{
+		return new ProcessBuilder(cmake.toString(), "-S", source.toAbsolutePath().toString(), "-B",
+			binary.toAbsolutePath().toString(), "-DFOO=1", "-DCMAKE_TOOLCHAIN_FILE=" + cmakePath(source) +
+			"/cmake/utils.cmake");
+	}
+
+	/**
+	 * @param path a path
+	 * @return the path, as CMake writes it
+	 */
+	private static String cmakePath(Path path)
+	{
+		return path.toAbsolutePath().normalize().toString().replace('\\', '/');
+	}
+
+	/**
+	 * @param file a file
+	 * @return the contents of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static String read(Path file) throws IOException
+	{
+		return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+	}
+}
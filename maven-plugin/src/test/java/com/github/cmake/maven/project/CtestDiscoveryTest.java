@@ -0,0 +1,237 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import io.github.cmakemavenplugin.cmake.maven.plugin.CtestDiscovery;
+import io.github.cmakemavenplugin.cmake.maven.plugin.CtestTest;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs {@link CtestDiscovery} against a fake build tree and a fake ctest that counts its invocations.
+ */
+public final class CtestDiscoveryTest
+{
+	private static final String SHOW_ONLY = "{\"kind\":\"ctestInfo\",\"version\":{\"major\":1,\"minor\":0}," +
+		"\"tests\":[" +
+		"{\"name\":\"unit.Fast\",\"command\":[\"a\"],\"properties\":[" +
+		"{\"name\":\"LABELS\",\"value\":[\"fast\",\"unit\"]},{\"name\":\"WORKING_DIRECTORY\",\"value\":\"/\"}]}," +
+		"{\"name\":\"unit.Slow\",\"command\":[\"b\"]}]}";
+	private final Log log = new SystemStreamLog();
+	private Path directory;
+	private Path buildTree;
+	private Path cache;
+	private Path ctest;
+
+	@BeforeEach
+	public void createBuildTree() throws IOException
+	{
+		assumeTrue(Platform.detected().supportsPosix());
+		directory = Files.createTempDirectory("cmake");
+		buildTree = directory.resolve("build");
+		Files.createDirectories(buildTree.resolve("tests/CMakeFiles"));
+		write(buildTree.resolve("CTestTestfile.cmake"), "subdirs(\"tests\")");
+		write(buildTree.resolve("tests/CTestTestfile.cmake"), "include(unit_tests.cmake)");
+		write(buildTree.resolve("tests/unit_tests.cmake"), "add_test(unit.Fast a)");
+		// Build outputs are not part of the fingerprint
+		write(buildTree.resolve("tests/CMakeFiles/CTestTestfile.cmake"), "");
+		cache = directory.resolve("target/ctest-tests.json");
+		write(directory.resolve("tests.json"), SHOW_ONLY);
+		ctest = createCtest("echo \"$@\" >> '" + directory.resolve("runs") + "'\n" +
+			"cat '" + directory.resolve("tests.json") + "'");
+	}
+
+	@AfterEach
+	public void deleteBuildTree() throws IOException
+	{
+		if (directory != null)
+			FileOperations.deleteRecursively(directory, log);
+	}
+
+	@Test
+	public void labels() throws IOException, InterruptedException
+	{
+		List<CtestTest> tests = getTests();
+		assertEquals(2, tests.size());
+		assertEquals("unit.Fast", tests.get(0).getName());
+		assertEquals(Arrays.asList("fast", "unit"), tests.get(0).getLabels());
+		assertEquals("unit.Slow", tests.get(1).getName());
+		assertEquals(Collections.emptyList(), tests.get(1).getLabels());
+		assertEquals(Collections.singletonList("--show-only=json-v1"), getRuns());
+	}
+
+	@Test
+	public void reuse() throws IOException, InterruptedException
+	{
+		List<CtestTest> first = getTests();
+		// ctest would list different tests, but is not run again
+		write(directory.resolve("tests.json"), "{\"tests\":[]}");
+		List<CtestTest> second = getTests();
+		assertEquals(toStrings(first), toStrings(second));
+		assertEquals(1, getRuns().size());
+
+		// Build outputs do not invalidate the cache
+		write(buildTree.resolve("tests/CMakeFiles/CTestTestfile.cmake"), "changed");
+		getTests();
+		assertEquals(1, getRuns().size());
+	}
+
+	@Test
+	public void sizeChanged() throws IOException, InterruptedException
+	{
+		getTests();
+		Path file = buildTree.resolve("tests/unit_tests.cmake");
+		FileTime lastModified = Files.getLastModifiedTime(file);
+		write(file, "add_test(unit.Fast a)\nadd_test(unit.Slow b)");
+		Files.setLastModifiedTime(file, lastModified);
+		getTests();
+		assertEquals(2, getRuns().size());
+	}
+
+	@Test
+	public void lastModifiedChanged() throws IOException, InterruptedException
+	{
+		getTests();
+		Path file = buildTree.resolve("CTestTestfile.cmake");
+		Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 60_000));
+		getTests();
+		assertEquals(2, getRuns().size());
+	}
+
+	@Test
+	public void newTestFile() throws IOException, InterruptedException
+	{
+		getTests();
+		write(buildTree.resolve("tests/integration_include.cmake"), "");
+		getTests();
+		assertEquals(2, getRuns().size());
+	}
+
+	@Test
+	public void commandLineChanged() throws IOException, InterruptedException
+	{
+		getTests();
+		getTests("--build-config", "Debug");
+		assertEquals(Arrays.asList("--show-only=json-v1", "--build-config Debug --show-only=json-v1"), getRuns());
+		getTests("--build-config", "Debug");
+		assertEquals(2, getRuns().size());
+	}
+
+	@Test
+	public void corruptCache() throws IOException, InterruptedException
+	{
+		List<CtestTest> expected = getTests();
+		write(cache, "{\"fingerprint\":");
+		assertEquals(toStrings(expected), toStrings(getTests()));
+		assertEquals(2, getRuns().size());
+		// The cache was replaced
+		getTests();
+		assertEquals(2, getRuns().size());
+	}
+
+	@Test
+	public void failure() throws IOException
+	{
+		ctest = createCtest("echo 'CMake Error: broken' >&2\n" +
+			"exit 1");
+		assertThrows(IOException.class, this::getTests);
+		// The redirected output is deleted
+		try (Stream<Path> files = Files.list(directory.resolve("target")))
+		{
+			assertEquals(0, files.count());
+		}
+	}
+
+	@Test
+	public void timeout() throws IOException
+	{
+		ctest = createCtest("sleep 60");
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+		{
+			assertThrows(IOException.class, () -> CtestDiscovery.getTests(new ProcessBuilder(ctest.toString()).
+				directory(buildTree.toFile()), buildTree, cache, 1, Platform.detected(), log));
+		});
+	}
+
+	/**
+	 * @param arguments the arguments to pass to ctest
+	 * @return the tests
+	 * @throws IOException          if an I/O error occurs, or ctest fails
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private List<CtestTest> getTests(String... arguments) throws IOException, InterruptedException
+	{
+		ProcessBuilder processBuilder = new ProcessBuilder(ctest.toString()).directory(buildTree.toFile());
+		Collections.addAll(processBuilder.command(), arguments);
+		return CtestDiscovery.getTests(processBuilder, buildTree, cache, 0, Platform.detected(), log);
+	}
+
+	/**
+	 * @return the arguments of each invocation of ctest
+	 * @throws IOException if an I/O error occurs
+	 */
+	private List<String> getRuns() throws IOException
+	{
+		Path runs = directory.resolve("runs");
+		if (!Files.exists(runs))
+			return Collections.emptyList();
+		return Files.readAllLines(runs, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param script the body of the script
+	 * @return the path of a fake ctest that runs the script
+	 * @throws IOException if an I/O error occurs
+	 */
+	private Path createCtest(String script) throws IOException
+	{
+		Path path = directory.resolve("bin/ctest");
+		write(path, "#!/bin/sh\n" + script + "\n");
+		Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwxr-xr-x"));
+		return path;
+	}
+
+	/**
+	 * @param tests tests
+	 * @return the string representation of each test
+	 */
+	private static List<String> toStrings(List<CtestTest> tests)
+	{
+		List<String> result = new ArrayList<>();
+		for (CtestTest test : tests)
+			result.add(test.toString());
+		return result;
+	}
+
+	/**
+	 * @param path     a file
+	 * @param contents the contents of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void write(Path path, String contents) throws IOException
+	{
+		Files.createDirectories(path.getParent());
+		Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+	}
+}
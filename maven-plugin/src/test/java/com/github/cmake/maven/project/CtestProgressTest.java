@@ -0,0 +1,163 @@
+package com.github.cmake.maven.project;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cmakemavenplugin.cmake.maven.plugin.ChromeTrace;
+import io.github.cmakemavenplugin.cmake.maven.plugin.CtestProgress;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.transform.dom.DOMSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class CtestProgressTest
+{
+	/**
+	 * The output of {@code ctest --parallel 2}, with some test output in between.
+	 */
+	private static final List<String> OUTPUT = Arrays.asList(
+		"Test project /build",
+		"      Start  1: unit.Passed",
+		"      Start  2: unit.Failed",
+		" 1/10 Test  #1: unit.Passed .......................   Passed    0.01 sec",
+		"      Start 10: unit.Timeout",
+		"Test output that mentions Start and Test",
+		" 2/10 Test  #2: unit.Failed .......................***Failed    0.25 sec",
+		"Expected: 1",
+		"      Start  3: unit.Hung",
+		"10/10 Test #10: unit.Timeout ......................***Timeout  1.50 sec",
+		// Disabled tests never start
+		" 4/10 Test  #4: unit.Disabled .....................***Not Run (Disabled)   0.00 sec");
+
+	@Test
+	public void report()
+	{
+		CtestProgress progress = new CtestProgress();
+		for (String line : OUTPUT)
+			progress.onLine(line);
+		progress.onExit(1);
+
+		Document document = (Document) ((DOMSource) progress.toCtestReport("terminated")).getNode();
+		NodeList tests = document.getElementsByTagName("Test");
+		Map<String, List<String>> results = new LinkedHashMap<>();
+		for (int i = 0; i < tests.getLength(); ++i)
+		{
+			Element test = (Element) tests.item(i);
+			List<String> result = new ArrayList<>();
+			result.add(test.getAttribute("Status"));
+			result.add(getMeasurement(test, "Exit Code"));
+			result.add(getMeasurement(test, "Exit Value"));
+			results.put(getText(test, "Name"), result);
+		}
+		Map<String, List<String>> expected = new LinkedHashMap<>();
+		expected.put("unit.Passed", Arrays.asList("passed", null, null));
+		expected.put("unit.Failed", Arrays.asList("failed", "Failed", "see the build log"));
+		expected.put("unit.Timeout", Arrays.asList("failed", "Timeout", "see the build log"));
+		expected.put("unit.Disabled", Arrays.asList("notrun", null, null));
+		expected.put("unit.Hung", Arrays.asList("failed", "Unfinished", "terminated"));
+		assertEquals(expected, results);
+
+		// The execution time reported by CTest is kept
+		assertEquals("0.25", getMeasurement((Element) tests.item(1), "Execution Time"));
+		assertEquals("1.50", getMeasurement((Element) tests.item(2), "Execution Time"));
+	}
+
+	@Test
+	public void timeline() throws IOException
+	{
+		CtestProgress progress = new CtestProgress();
+		for (String line : OUTPUT)
+			progress.onLine(line);
+		progress.onExit(1);
+		ChromeTrace timeline = new ChromeTrace();
+		progress.addTo(timeline);
+
+		Path directory = Files.createTempDirectory("cmake");
+		Path json = directory.resolve("timeline.json");
+		try
+		{
+			timeline.write(json);
+			List<String> names = new ArrayList<>();
+			for (JsonNode event : new ObjectMapper().readTree(json.toFile()).path("traceEvents"))
+				if (event.path("ph").asText().equals("X"))
+					names.add(event.path("name").asText());
+			Collections.sort(names);
+			assertEquals(Arrays.asList("unit.Disabled", "unit.Failed", "unit.Hung (unfinished)", "unit.Passed",
+				"unit.Timeout"), names);
+		}
+		finally
+		{
+			Files.deleteIfExists(json);
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void ignoresOtherLines()
+	{
+		CtestProgress progress = new CtestProgress();
+		for (String line : Arrays.asList("Test project /build", "Start of the test output",
+			"100% tests passed, 0 tests failed out of 1", "Total Test time (real) =   0.01 sec"))
+		{
+			progress.onLine(line);
+		}
+		progress.onExit(0);
+		assertEquals(Collections.emptyList(), getNames(progress));
+	}
+
+	/**
+	 * @param progress the progress of a run
+	 * @return the names of the tests in the report
+	 */
+	private static List<String> getNames(CtestProgress progress)
+	{
+		Document document = (Document) ((DOMSource) progress.toCtestReport("terminated")).getNode();
+		NodeList names = document.getElementsByTagName("Name");
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < names.getLength(); ++i)
+			result.add(names.item(i).getTextContent());
+		return result;
+	}
+
+	/**
+	 * @param test a {@code Test} element
+	 * @param name the name of a measurement
+	 * @return the value of the measurement; {@code null} if there is none
+	 */
+	private static String getMeasurement(Element test, String name)
+	{
+		NodeList measurements = test.getElementsByTagName("NamedMeasurement");
+		for (int i = 0; i < measurements.getLength(); ++i)
+		{
+			Element measurement = (Element) measurements.item(i);
+			if (measurement.getAttribute("name").equals(name))
+				return getText(measurement, "Value");
+		}
+		return null;
+	}
+
+	/**
+	 * @param parent an element
+	 * @param name   the name of a child element
+	 * @return the text of the first child element with that name; {@code null} if there is none
+	 */
+	private static String getText(Element parent, String name)
+	{
+		NodeList children = parent.getElementsByTagName(name);
+		if (children.getLength() == 0)
+			return null;
+		return children.item(0).getTextContent();
+	}
+}
@@ -0,0 +1,99 @@
+package com.github.cmake.maven.project;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.maven.plugin.CtestResourceSpec;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class CtestResourceSpecTest
+{
+	private Path directory;
+
+	@BeforeEach
+	public void createDirectory() throws IOException
+	{
+		directory = Files.createTempDirectory("cmake");
+	}
+
+	@AfterEach
+	public void deleteDirectory() throws IOException
+	{
+		FileOperations.deleteRecursively(directory, new SystemStreamLog());
+	}
+
+	/**
+	 * The file must match CTest's schema: ids are strings, and each resource is an array of objects.
+	 */
+	@Test
+	public void write() throws IOException
+	{
+		Path path = directory.resolve("target/ctest-resources.json");
+		CtestResourceSpec.write(path, 16, 32768);
+		JsonNode root = new ObjectMapper().readTree(path.toFile());
+		assertEquals(2, root.size());
+		assertEquals(1, root.path("version").path("major").intValue());
+		assertEquals(0, root.path("version").path("minor").intValue());
+		assertEquals(1, root.path("local").size());
+		JsonNode local = root.path("local").path(0);
+		assertEquals(2, local.size());
+		JsonNode cpus = local.path("cpus");
+		assertEquals(1, cpus.size());
+		assertTrue(cpus.path(0).path("id").isTextual());
+		assertEquals("0", cpus.path(0).path("id").asText());
+		assertEquals(16, cpus.path(0).path("slots").intValue());
+		JsonNode mem = local.path("mem");
+		assertEquals(1, mem.size());
+		assertTrue(mem.path(0).path("id").isTextual());
+		assertEquals("0", mem.path(0).path("id").asText());
+		assertEquals(32768, mem.path(0).path("slots").longValue());
+	}
+
+	@Test
+	public void memInfo() throws IOException
+	{
+		assertEquals(12_345_678L * 1024, getMemInfoAvailable("MemTotal:       32768000 kB\n" +
+			"MemFree:         1234567 kB\n" +
+			"MemAvailable:   12345678 kB\n" +
+			"Buffers:          12345 kB\n"));
+		// Kernels before 3.14 do not report MemAvailable
+		assertEquals(-1, getMemInfoAvailable("MemTotal:       32768000 kB\n" +
+			"MemFree:         1234567 kB\n"));
+		assertEquals(-1, getMemInfoAvailable("MemAvailable:   unknown kB\n"));
+		assertEquals(-1, CtestResourceSpec.getMemInfoAvailable(directory.resolve("missing")));
+	}
+
+	@Test
+	public void availableMemory()
+	{
+		long total = CtestResourceSpec.getAvailableMemory(1);
+		assertTrue(total >= 0, Long.toString(total));
+		long shared = CtestResourceSpec.getAvailableMemory(4);
+		assertTrue(shared >= 0 && shared <= total, shared + " of " + total);
+		assertThrows(IllegalArgumentException.class, () -> CtestResourceSpec.getAvailableMemory(0));
+	}
+
+	/**
+	 * @param memInfo the contents of {@code /proc/meminfo}
+	 * @return the number of bytes of {@code MemAvailable}
+	 * @throws IOException if an I/O error occurs
+	 */
+	private long getMemInfoAvailable(String memInfo) throws IOException
+	{
+		Path path = directory.resolve("meminfo");
+		Files.write(path, memInfo.getBytes(StandardCharsets.US_ASCII));
+		return CtestResourceSpec.getMemInfoAvailable(path);
+	}
+}
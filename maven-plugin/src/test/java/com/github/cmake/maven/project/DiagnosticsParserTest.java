@@ -0,0 +1,186 @@
+package com.github.cmake.maven.project;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cmakemavenplugin.cmake.maven.plugin.DiagnosticsParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class DiagnosticsParserTest
+{
+	@Test
+	public void gcc() throws IOException
+	{
+		DiagnosticsParser parser = parse(
+			"/src/hello.c:10:5: warning: unused variable 'x' [-Wunused-variable]",
+			"/src/hello.c:12: error: expected ';' before '}' token");
+		assertEquals(1, parser.getErrors());
+		assertEquals(1, parser.getWarnings());
+		JsonNode results = getRun(parser).path("results");
+		assertResult(results.get(0), "warning", "-Wunused-variable", "/src/hello.c", 10, 5,
+			"unused variable 'x'");
+		assertResult(results.get(1), "error", "error", "/src/hello.c", 12, 0, "expected ';' before '}' token");
+	}
+
+	@Test
+	public void clang() throws IOException
+	{
+		DiagnosticsParser parser = parse(
+			"hello.c:3:10: fatal error: 'missing.h' file not found",
+			"hello.c:7:3: warning: implicit declaration of function 'foo' is invalid in C99 " +
+				"[-Wimplicit-function-declaration]");
+		JsonNode results = getRun(parser).path("results");
+		assertResult(results.get(0), "error", "fatal error", "hello.c", 3, 10, "'missing.h' file not found");
+		assertResult(results.get(1), "warning", "-Wimplicit-function-declaration", "hello.c", 7, 3,
+			"implicit declaration of function 'foo' is invalid in C99");
+	}
+
+	@Test
+	public void msvc() throws IOException
+	{
+		DiagnosticsParser parser = parse(
+			"C:\\src\\hello.cpp(12,5): warning C4996: 'strcpy': This function or variable may be unsafe.",
+			"  C:\\src\\hello.cpp(20): error C2065: 'x': undeclared identifier");
+		assertEquals(1, parser.getErrors());
+		assertEquals(1, parser.getWarnings());
+		JsonNode run = getRun(parser);
+		JsonNode results = run.path("results");
+		// SARIF URIs use forward slashes
+		assertResult(results.get(0), "warning", "C4996", "C:/src/hello.cpp", 12, 5,
+			"'strcpy': This function or variable may be unsafe.");
+		assertResult(results.get(1), "error", "C2065", "C:/src/hello.cpp", 20, 0, "'x': undeclared identifier");
+		assertEquals(1, run.path("properties").path("files").path("C:\\src\\hello.cpp").path("errors").asInt());
+	}
+
+	@Test
+	public void mingwWindowsPath() throws IOException
+	{
+		DiagnosticsParser parser = parse("C:\\src\\hello.c:4:1: warning: no newline at end of file");
+		assertResult(getRun(parser).path("results").get(0), "warning", "warning", "C:/src/hello.c", 4, 1,
+			"no newline at end of file");
+	}
+
+	@Test
+	public void cmake() throws IOException
+	{
+		DiagnosticsParser parser = parse(
+			"CMake Warning (dev) at CMakeLists.txt:5 (message):",
+			"  Something looks odd",
+			"This warning is for project developers.",
+			"CMake Error at cmake/utils.cmake:12:",
+			"",
+			"  Something failed");
+		assertEquals(1, parser.getErrors());
+		assertEquals(1, parser.getWarnings());
+		JsonNode results = getRun(parser).path("results");
+		assertResult(results.get(0), "warning", "cmake:message", "CMakeLists.txt", 5, 0, "Something looks odd");
+		assertResult(results.get(1), "error", "cmake", "cmake/utils.cmake", 12, 0, "Something failed");
+	}
+
+	@Test
+	public void cmakeDiagnosticAtEndOfOutput() throws IOException
+	{
+		DiagnosticsParser parser = parse("CMake Error at CMakeLists.txt:1 (project):");
+		assertEquals(1, parser.getErrors());
+		assertResult(getRun(parser).path("results").get(0), "error", "cmake:project", "CMakeLists.txt", 1, 0, "");
+	}
+
+	/**
+	 * A warning in a header that many files include is reported once.
+	 */
+	@Test
+	public void repeatedDiagnostics() throws IOException
+	{
+		String line = "include/hello.h:3:1: warning: 'foo' defined but not used [-Wunused-function]";
+		DiagnosticsParser parser = parse(line, "other line", line, line);
+		assertEquals(3, parser.getWarnings());
+		assertEquals(1, parser.getUniqueDiagnostics());
+		JsonNode run = getRun(parser);
+		assertEquals(1, run.path("results").size());
+		assertEquals(3, run.path("results").get(0).path("occurrenceCount").asInt());
+		assertEquals(3, run.path("properties").path("files").path("include/hello.h").path("warnings").asInt());
+		assertEquals(3, run.path("properties").path("categories").path("-Wunused-function").asInt());
+	}
+
+	/**
+	 * Memory use must not grow with the number of files and categories in the log.
+	 */
+	@Test
+	public void countsAreCapped() throws IOException
+	{
+		DiagnosticsParser parser = new DiagnosticsParser();
+		for (int i = 0; i < 1500; ++i)
+			parser.onLine("file" + i + ".c:1:1: warning: message [-Wflag" + i + "]");
+		parser.finish();
+		assertEquals(1500, parser.getWarnings());
+		JsonNode run = getRun(parser);
+		JsonNode files = run.path("properties").path("files");
+		assertEquals(1001, files.size());
+		assertEquals(1, files.path("file999.c").path("warnings").asInt());
+		assertEquals(500, files.path(DiagnosticsParser.OTHER).path("warnings").asInt());
+		JsonNode categories = run.path("properties").path("categories");
+		assertEquals(1001, categories.size());
+		assertEquals(500, categories.path(DiagnosticsParser.OTHER).asInt());
+		assertEquals(1000, run.path("tool").path("driver").path("rules").size());
+	}
+
+	/**
+	 * @param lines the output of a process
+	 * @return a parser that processed the output
+	 */
+	private static DiagnosticsParser parse(String... lines)
+	{
+		DiagnosticsParser parser = new DiagnosticsParser();
+		for (String line : lines)
+			parser.onLine(line);
+		parser.finish();
+		return parser;
+	}
+
+	/**
+	 * @param parser a parser
+	 * @return the SARIF run that the parser writes
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static JsonNode getRun(DiagnosticsParser parser) throws IOException
+	{
+		Path directory = Files.createTempDirectory("cmake");
+		Path sarif = directory.resolve("diagnostics.sarif");
+		try
+		{
+			parser.writeSarif(sarif);
+			return new ObjectMapper().readTree(sarif.toFile()).path("runs").get(0);
+		}
+		finally
+		{
+			Files.deleteIfExists(sarif);
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * @param result   a SARIF result
+	 * @param level    the expected level
+	 * @param ruleId   the expected category
+	 * @param uri      the expected file
+	 * @param line     the expected line number
+	 * @param column   the expected column number, or 0 if none
+	 * @param message  the expected message
+	 */
+	private static void assertResult(JsonNode result, String level, String ruleId, String uri, int line,
+		int column, String message)
+	{
+		assertEquals(level, result.path("level").asText());
+		assertEquals(ruleId, result.path("ruleId").asText());
+		assertEquals(message, result.path("message").path("text").asText());
+		JsonNode location = result.path("locations").get(0).path("physicalLocation");
+		assertEquals(uri, location.path("artifactLocation").path("uri").asText());
+		assertEquals(line, location.path("region").path("startLine").asInt());
+		assertEquals(column, location.path("region").path("startColumn").asInt());
+	}
+}
@@ -0,0 +1,157 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.maven.plugin.DirectoryArchiver;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DirectoryArchiverTest
+{
+	private final Log log = new SystemStreamLog();
+	private Path directory;
+	private Path source;
+	private boolean posix;
+
+	@BeforeEach
+	public void createTree() throws IOException
+	{
+		directory = Files.createTempDirectory("cmake");
+		source = directory.resolve("prefix");
+		Files.createDirectories(source.resolve("bin"));
+		Files.createDirectories(source.resolve("lib/empty"));
+		Files.write(source.resolve("bin/hello"), "#!/bin/sh\n".getBytes(StandardCharsets.UTF_8));
+		byte[] large = new byte[256 * 1024];
+		for (int i = 0; i < large.length; ++i)
+			large[i] = (byte) (i * 31);
+		Files.write(source.resolve("lib/libhello.a"), large);
+		Files.write(source.resolve("lib/empty.txt"), new byte[0]);
+		posix = Files.getFileAttributeView(source, PosixFileAttributeView.class) != null;
+		if (posix)
+		{
+			setPermissions(source.resolve("bin/hello"), "rwxr-x---");
+			setPermissions(source.resolve("lib/libhello.a"), "rw-r--r--");
+			setPermissions(source.resolve("lib/empty"), "rwx------");
+			Files.createSymbolicLink(source.resolve("lib/libhello.so"), Paths.get("libhello.a"));
+		}
+	}
+
+	@AfterEach
+	public void deleteTree() throws IOException
+	{
+		FileOperations.deleteRecursively(directory, log);
+	}
+
+	@Test
+	public void zipSequentially() throws IOException, InterruptedException
+	{
+		zipAndCompare(1);
+	}
+
+	@Test
+	public void zipInParallel() throws IOException, InterruptedException
+	{
+		zipAndCompare(4);
+	}
+
+	/**
+	 * Packages the tree and compares the archive to it.
+	 *
+	 * @param threads the number of threads to compress entries with
+	 * @throws IOException          if an I/O error occurs
+	 * @throws InterruptedException if the thread was interrupted
+	 */
+	private void zipAndCompare(int threads) throws IOException, InterruptedException
+	{
+		Path archive = directory.resolve("target/prefix.zip");
+		Path scratch = directory.resolve("target/scratch");
+		DirectoryArchiver.zip(source, archive, threads, scratch, log);
+		assertFalse(Files.exists(scratch));
+
+		Map<String, ZipArchiveEntry> entries = new TreeMap<>();
+		Map<String, byte[]> contents = new TreeMap<>();
+		try (ZipFile zip = ZipFile.builder().setPath(archive).get())
+		{
+			for (ZipArchiveEntry entry : Collections.list(zip.getEntries()))
+			{
+				entries.put(entry.getName(), entry);
+				try (InputStream in = zip.getInputStream(entry))
+				{
+					contents.put(entry.getName(), readFully(in));
+				}
+			}
+		}
+		Set<String> expectedNames = new TreeSet<>(Arrays.asList("bin/", "bin/hello", "lib/", "lib/empty/",
+			"lib/empty.txt", "lib/libhello.a"));
+		if (posix)
+			expectedNames.add("lib/libhello.so");
+		assertEquals(expectedNames, entries.keySet());
+
+		assertTrue(entries.get("lib/empty/").isDirectory());
+		assertArrayEquals(Files.readAllBytes(source.resolve("bin/hello")), contents.get("bin/hello"));
+		assertArrayEquals(Files.readAllBytes(source.resolve("lib/libhello.a")), contents.get("lib/libhello.a"));
+		assertEquals(0, contents.get("lib/empty.txt").length);
+		if (posix)
+		{
+			assertEquals(0750, entries.get("bin/hello").getUnixMode() & 0777);
+			assertEquals(0644, entries.get("lib/libhello.a").getUnixMode() & 0777);
+			assertEquals(0700, entries.get("lib/empty/").getUnixMode() & 0777);
+			assertTrue(entries.get("lib/libhello.so").isUnixSymlink());
+			assertEquals("libhello.a", new String(contents.get("lib/libhello.so"), StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * @param path        a path
+	 * @param permissions the permissions, e.g. {@code rwxr-x---}
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void setPermissions(Path path, String permissions) throws IOException
+	{
+		Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+	}
+
+	/**
+	 * @param in a stream
+	 * @return the remaining bytes of the stream
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static byte[] readFully(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		while (true)
+		{
+			int count = in.read(buffer);
+			if (count == -1)
+				break;
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+}
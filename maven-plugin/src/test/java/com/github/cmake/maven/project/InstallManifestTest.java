@@ -0,0 +1,215 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.maven.plugin.InstallManifest;
+import io.github.cmakemavenplugin.cmake.maven.plugin.InstallManifest.FileState;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class InstallManifestTest
+{
+	private final Log log = new SystemStreamLog();
+	private final List<String> command = Arrays.asList("cmake", "--install", "build");
+	private Path directory;
+	private Path build;
+	private Path prefix;
+
+	@BeforeEach
+	public void createBuildTree() throws IOException
+	{
+		directory = Files.createTempDirectory("cmake");
+		build = directory.resolve("build");
+		// The prefix is inside the build tree, so the installation must not count as a change to the sources
+		prefix = build.resolve("prefix");
+		Files.createDirectories(build.resolve("sub"));
+		Files.createDirectories(build.resolve("include/detail"));
+		Files.write(build.resolve("hello"), "binary".getBytes(StandardCharsets.UTF_8));
+		Files.write(build.resolve("sub/data.txt"), "data".getBytes(StandardCharsets.UTF_8));
+		Files.write(build.resolve("include/hello.h"), "header".getBytes(StandardCharsets.UTF_8));
+		Files.write(build.resolve("include/detail/impl.h"), "impl".getBytes(StandardCharsets.UTF_8));
+		writeScript(build.resolve("cmake_install.cmake"),
+			"if(CMAKE_INSTALL_COMPONENT STREQUAL \"Unspecified\" OR NOT CMAKE_INSTALL_COMPONENT)\n" +
+				"  file(INSTALL DESTINATION \"${CMAKE_INSTALL_PREFIX}/bin\" TYPE EXECUTABLE FILES \"" +
+				path(build.resolve("hello")) + "\")\n" +
+				"  file(INSTALL DESTINATION \"${CMAKE_INSTALL_PREFIX}\" TYPE DIRECTORY FILES \"" +
+				path(build.resolve("include")) + "\" FILES_MATCHING REGEX \"\\\\.h$\")\n" +
+				"endif()\n" +
+				"if(NOT CMAKE_INSTALL_LOCAL_ONLY)\n" +
+				"  include(\"" + path(build.resolve("sub/cmake_install.cmake")) + "\")\n" +
+				"endif()\n");
+		writeScript(build.resolve("sub/cmake_install.cmake"),
+			"file(INSTALL DESTINATION \"${CMAKE_INSTALL_PREFIX}/share\" TYPE FILE FILES \"" +
+				path(build.resolve("sub/data.txt")) + "\")\n");
+	}
+
+	@AfterEach
+	public void deleteBuildTree() throws IOException
+	{
+		FileOperations.deleteRecursively(directory, log);
+	}
+
+	@Test
+	public void listSources() throws IOException
+	{
+		Map<Path, FileState> sources = InstallManifest.getSources(build);
+		assertNotNull(sources);
+		Set<Path> expected = new LinkedHashSet<>(Arrays.asList(build.resolve("cmake_install.cmake"),
+			build.resolve("sub/cmake_install.cmake"), build.resolve("hello"), build.resolve("sub/data.txt"),
+			build.resolve("include/hello.h"), build.resolve("include/detail/impl.h")));
+		assertEquals(expected, sources.keySet());
+	}
+
+	@Test
+	public void upToDate() throws IOException
+	{
+		saveInstallation();
+		assertTrue(isUpToDate());
+	}
+
+	@Test
+	public void sourceReplacedByOlderCopy() throws IOException
+	{
+		saveInstallation();
+		// Same size, older timestamp, as if restored from a cache or copied with "cp -p"
+		Path source = build.resolve("hello");
+		Files.write(source, "BINARY".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(source, FileTime.fromMillis(0));
+		assertFalse(isUpToDate());
+	}
+
+	@Test
+	public void fileAddedToInstalledDirectory() throws IOException
+	{
+		saveInstallation();
+		Files.write(build.resolve("include/detail/extra.h"), "extra".getBytes(StandardCharsets.UTF_8));
+		assertFalse(isUpToDate());
+	}
+
+	@Test
+	public void installedFileModified() throws IOException
+	{
+		List<Path> installed = saveInstallation();
+		Files.write(installed.get(0), "modified".getBytes(StandardCharsets.UTF_8));
+		assertFalse(isUpToDate());
+	}
+
+	@Test
+	public void installedFileDeleted() throws IOException
+	{
+		List<Path> installed = saveInstallation();
+		Files.delete(installed.get(0));
+		assertFalse(isUpToDate());
+	}
+
+	@Test
+	public void commandChanged() throws IOException
+	{
+		saveInstallation();
+		Set<Path> files = InstallManifest.readFiles(build);
+		InstallManifest previous = InstallManifest.load(build);
+		assertNotNull(previous);
+		assertFalse(previous.isUpToDate(Arrays.asList("cmake", "--install", "other"),
+			InstallManifest.getSources(build), files));
+	}
+
+	@Test
+	public void sourcesReferencedThroughVariables() throws IOException
+	{
+		writeScript(build.resolve("sub/cmake_install.cmake"),
+			"file(INSTALL DESTINATION \"${CMAKE_INSTALL_PREFIX}/share\" TYPE FILE FILES " +
+				"\"${SOME_DIRECTORY}/data.txt\")\n");
+		assertNull(InstallManifest.getSources(build));
+	}
+
+	@Test
+	public void deleteStaleFiles() throws IOException
+	{
+		List<Path> installed = saveInstallation();
+		Set<Path> previous = new LinkedHashSet<>(installed);
+		Set<Path> current = new LinkedHashSet<>(installed);
+		Path stale = prefix.resolve("share/data.txt");
+		current.remove(stale);
+		assertEquals(Collections.singletonList(stale), InstallManifest.deleteStaleFiles(previous, current, prefix));
+		assertFalse(Files.exists(stale));
+		// Directories that become empty are removed as well
+		assertFalse(Files.exists(prefix.resolve("share")));
+		assertTrue(Files.exists(prefix.resolve("bin/hello")));
+	}
+
+	/**
+	 * Simulates an installation and saves its state.
+	 *
+	 * @return the installed files
+	 * @throws IOException if an I/O error occurs
+	 */
+	private List<Path> saveInstallation() throws IOException
+	{
+		Map<Path, FileState> sources = InstallManifest.getSources(build);
+		List<Path> installed = Arrays.asList(prefix.resolve("bin/hello"), prefix.resolve("include/hello.h"),
+			prefix.resolve("include/detail/impl.h"), prefix.resolve("share/data.txt"));
+		List<Path> copiedFrom = Arrays.asList(build.resolve("hello"), build.resolve("include/hello.h"),
+			build.resolve("include/detail/impl.h"), build.resolve("sub/data.txt"));
+		StringBuilder manifest = new StringBuilder();
+		for (int i = 0; i < installed.size(); ++i)
+		{
+			Files.createDirectories(installed.get(i).getParent());
+			Files.copy(copiedFrom.get(i), installed.get(i), StandardCopyOption.COPY_ATTRIBUTES);
+			manifest.append(installed.get(i)).append('\n');
+		}
+		Files.write(build.resolve("install_manifest.txt"), manifest.toString().getBytes(StandardCharsets.UTF_8));
+		InstallManifest.capture(command, sources, InstallManifest.readFiles(build)).save(build);
+		return installed;
+	}
+
+	/**
+	 * @return {@code true} if the saved installation is up-to-date
+	 * @throws IOException if an I/O error occurs
+	 */
+	private boolean isUpToDate() throws IOException
+	{
+		InstallManifest previous = InstallManifest.load(build);
+		assertNotNull(previous);
+		return previous.isUpToDate(command, InstallManifest.getSources(build), InstallManifest.readFiles(build));
+	}
+
+	/**
+	 * @param path a path
+	 * @return the path, in the format that CMake writes to install scripts
+	 */
+	private static String path(Path path)
+	{
+		return path.toString().replace('\\', '/');
+	}
+
+	/**
+	 * @param path     the path of the script
+	 * @param contents the contents of the script
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeScript(Path path, String contents) throws IOException
+	{
+		Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,34 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import io.github.cmakemavenplugin.cmake.maven.plugin.Mojos;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public final class MojosTest
+{
+	/**
+	 * A descendant that outlives the process must not keep {@code waitFor()} from returning.
+	 */
+	@Test
+	public void descendantHoldsOutputOpen() throws IOException, InterruptedException
+	{
+		assumeTrue(Platform.detected().supportsPosix());
+		List<String> lines = new ArrayList<>();
+		ProcessBuilder processBuilder = new ProcessBuilder("sh", "-c", "echo first; sleep 60 & sleep 1");
+		int exitCode = assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+			Mojos.waitFor(processBuilder, new SystemStreamLog(), lines::add));
+		assertEquals(0, exitCode);
+		assertEquals(Collections.singletonList("first"), lines);
+	}
+}
@@ -0,0 +1,88 @@
+package com.github.cmake.maven.project;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cmakemavenplugin.cmake.common.Platform.OperatingSystem;
+import io.github.cmakemavenplugin.cmake.maven.plugin.ChromeTrace;
+import io.github.cmakemavenplugin.cmake.maven.plugin.NinjaLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class NinjaLogTest
+{
+	private static final Instant START = Instant.parse("2026-01-01T00:00:00.500Z");
+
+	/**
+	 * The first job of a build may end later than the last job of the previous build.
+	 */
+	@Test
+	public void posix() throws IOException
+	{
+		// Nanoseconds since the Unix epoch
+		long start = START.getEpochSecond() * 1_000_000_000L;
+		assertEquals(Arrays.asList("a.o", "b.o, b.h"), read(OperatingSystem.LINUX,
+			"10\t20\t" + (start - 1_000_000_000L) + "\told.o\t1",
+			"100\t200\t" + start + "\ta.o\t2",
+			"150\t300\t" + (start + 1) + "\tb.o\t3",
+			"150\t300\t" + (start + 1) + "\tb.h\t3",
+			// Not written by the build
+			"300\t400\t0\tmissing\t4"));
+	}
+
+	@Test
+	public void windows() throws IOException
+	{
+		// Intervals of 100 nanoseconds since 2000-12-31T21:06:40Z
+		long start = (START.getEpochSecond() - 978_296_800L) * 10_000_000L;
+		assertEquals(Collections.singletonList("a.obj"), read(OperatingSystem.WINDOWS,
+			"10\t20\t" + (start - 1) + "\told.obj\t1",
+			"30\t40\t" + (start + 5_000_000L) + "\ta.obj\t2"));
+	}
+
+	/**
+	 * @param operatingSystem the operating system that Ninja ran on
+	 * @param lines           the entries of {@code .ninja_log}
+	 * @return the names of the jobs that were added to the timeline
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static List<String> read(OperatingSystem operatingSystem, String... lines) throws IOException
+	{
+		Path directory = Files.createTempDirectory("cmake");
+		Path ninjaLog = directory.resolve(".ninja_log");
+		Path json = directory.resolve("timeline.json");
+		try
+		{
+			List<String> contents = new ArrayList<>();
+			contents.add("# ninja log v5");
+			contents.addAll(Arrays.asList(lines));
+			Files.write(ninjaLog, contents, StandardCharsets.UTF_8);
+			ChromeTrace timeline = new ChromeTrace();
+			int jobs = NinjaLog.addBuild(ninjaLog, START, operatingSystem, timeline);
+			timeline.write(json);
+
+			List<String> names = new ArrayList<>();
+			for (JsonNode event : new ObjectMapper().readTree(json.toFile()).path("traceEvents"))
+				if (event.path("ph").asText().equals("X"))
+					names.add(event.path("name").asText());
+			assertEquals(jobs, names.size());
+			return names;
+		}
+		finally
+		{
+			Files.deleteIfExists(ninjaLog);
+			Files.deleteIfExists(json);
+			Files.delete(directory);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.github.cmake.maven.project;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cmakemavenplugin.cmake.maven.plugin.OtlpExporter;
+import io.github.cmakemavenplugin.cmake.maven.plugin.Span;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class OtlpExporterTest
+{
+	private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+	private static final String PARENT_ID = "00f067aa0ba902b7";
+
+	@Test
+	public void traceparent()
+	{
+		Span span = Span.start("build", "00-" + TRACE_ID + "-" + PARENT_ID + "-01");
+		assertEquals(TRACE_ID, span.getTraceId());
+		assertEquals(PARENT_ID, span.getParentSpanId());
+		assertTrue(span.getSpanId().matches("[0-9a-f]{16}"), span.getSpanId());
+
+		// An all-zero parent ID means that there is no parent
+		String traceparent = Span.newTraceparent();
+		assertTrue(Span.isValidTraceparent(traceparent), traceparent);
+		assertTrue(traceparent.matches("00-[0-9a-f]{32}-0{16}-01"), traceparent);
+		assertNull(Span.start("build", traceparent).getParentSpanId());
+
+		for (String malformed : new String[]{"", "00-" + TRACE_ID + "-" + PARENT_ID,
+			"00-" + TRACE_ID.toUpperCase() + "-" + PARENT_ID + "-01", "00-" + TRACE_ID + "-" + PARENT_ID + "-01-"})
+		{
+			assertFalse(Span.isValidTraceparent(malformed), malformed);
+			assertThrows(IllegalArgumentException.class, () -> Span.start("build", malformed), malformed);
+		}
+		assertFalse(Span.isValidTraceparent(null));
+	}
+
+	/**
+	 * Converts a tree of spans to JSON and back.
+	 */
+	@Test
+	public void toJson() throws IOException
+	{
+		Span root = Span.start("cmake:compile", "00-" + TRACE_ID + "-" + PARENT_ID + "-01");
+		root.setAttribute("cmake.config", "Release").
+			setAttribute("ctest.thread_count", 8).
+			setAttribute("process.pid", 1L << 40).
+			setAttribute("cmake.quiet", true).
+			setAttribute("cmake.preset", null);
+		Span child;
+		try (Span process = root.child("process"))
+		{
+			child = process;
+			process.setAttribute("process.exit_code", 2);
+			process.setError("Exit code: 2");
+			process.child("unfinished");
+		}
+		root.close();
+		long endTime = root.getEndTime();
+		root.close();
+		assertEquals(endTime, root.getEndTime());
+
+		Map<String, Object> resource = new LinkedHashMap<>();
+		resource.put("service.name", "cmake-maven-plugin");
+		JsonNode request = new ObjectMapper().readTree(OtlpExporter.toJson(root, resource));
+		JsonNode resourceSpans = request.path("resourceSpans").path(0);
+		assertEquals(attribute("service.name", "stringValue", "cmake-maven-plugin"),
+			resourceSpans.path("resource").path("attributes").path(0));
+		JsonNode scopeSpans = resourceSpans.path("scopeSpans").path(0);
+		assertEquals("cmake-maven-plugin", scopeSpans.path("scope").path("name").asText());
+
+		// Spans are flattened in depth-first order
+		JsonNode spans = scopeSpans.path("spans");
+		assertEquals(3, spans.size());
+		JsonNode rootNode = spans.path(0);
+		assertEquals("cmake:compile", rootNode.path("name").asText());
+		assertEquals(TRACE_ID, rootNode.path("traceId").asText());
+		assertEquals(root.getSpanId(), rootNode.path("spanId").asText());
+		assertEquals(PARENT_ID, rootNode.path("parentSpanId").asText());
+		// 64-bit integers are strings
+		assertTrue(rootNode.path("startTimeUnixNano").isTextual());
+		assertEquals(Long.toString(root.getStartTime()), rootNode.path("startTimeUnixNano").asText());
+		assertEquals(Long.toString(endTime), rootNode.path("endTimeUnixNano").asText());
+		JsonNode attributes = rootNode.path("attributes");
+		assertEquals(4, attributes.size());
+		assertEquals(attribute("cmake.config", "stringValue", "Release"), attributes.path(0));
+		assertEquals(attribute("ctest.thread_count", "intValue", "8"), attributes.path(1));
+		assertEquals(attribute("process.pid", "intValue", "1099511627776"), attributes.path(2));
+		JsonNode quiet = attributes.path(3);
+		assertEquals("cmake.quiet", quiet.path("key").asText());
+		assertTrue(quiet.path("value").path("boolValue").booleanValue());
+		assertTrue(rootNode.path("status").isMissingNode());
+
+		JsonNode childNode = spans.path(1);
+		assertEquals("process", childNode.path("name").asText());
+		assertEquals(TRACE_ID, childNode.path("traceId").asText());
+		assertEquals(child.getSpanId(), childNode.path("spanId").asText());
+		assertEquals(root.getSpanId(), childNode.path("parentSpanId").asText());
+		assertNotEquals(root.getSpanId(), child.getSpanId());
+		assertEquals(attribute("process.exit_code", "intValue", "2"), childNode.path("attributes").path(0));
+		assertEquals(2, childNode.path("status").path("code").asInt());
+		assertEquals("Exit code: 2", childNode.path("status").path("message").asText());
+
+		// Spans that never ended are exported with a zero duration
+		JsonNode grandchild = spans.path(2);
+		assertEquals(child.getSpanId(), grandchild.path("parentSpanId").asText());
+		assertEquals(grandchild.path("startTimeUnixNano"), grandchild.path("endTimeUnixNano"));
+	}
+
+	/**
+	 * @param key   the name of the attribute
+	 * @param type  the type of the value, such as {@code stringValue}
+	 * @param value the value
+	 * @return the attribute, in OTLP/JSON format
+	 */
+	private static JsonNode attribute(String key, String type, String value)
+	{
+		ObjectMapper mapper = new ObjectMapper();
+		return mapper.createObjectNode().put("key", key).set("value", mapper.createObjectNode().put(type, value));
+	}
+}
@@ -0,0 +1,179 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.common.ArchiveExtractor;
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.common.Platform;
+import io.github.cmakemavenplugin.cmake.maven.plugin.DirectoryArchiver;
+import io.github.cmakemavenplugin.cmake.maven.plugin.ParallelGzipOutputStream;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public final class ParallelGzipOutputStreamTest
+{
+	/**
+	 * The number of bytes that ParallelGzipOutputStream compresses per task.
+	 */
+	private static final int BLOCK_SIZE = 128 * 1024;
+	private final Log log = new SystemStreamLog();
+
+	@Test
+	public void emptyInput() throws IOException
+	{
+		roundTrip(new byte[0], 6, 4);
+	}
+
+	@Test
+	public void singleByte() throws IOException
+	{
+		roundTrip(new byte[]{42}, 6, 4);
+	}
+
+	@Test
+	public void exactlyOneBlock() throws IOException
+	{
+		roundTrip(compressible(BLOCK_SIZE), 6, 4);
+		roundTrip(random(BLOCK_SIZE), 6, 4);
+	}
+
+	@Test
+	public void blockBoundaries() throws IOException
+	{
+		for (int size : new int[]{BLOCK_SIZE - 1, BLOCK_SIZE + 1, 2 * BLOCK_SIZE, 3 * BLOCK_SIZE + 7})
+		{
+			roundTrip(compressible(size), 6, 4);
+			roundTrip(random(size), 6, 4);
+		}
+	}
+
+	@Test
+	public void allLevels() throws IOException
+	{
+		byte[] input = compressible(5 * BLOCK_SIZE / 2);
+		for (int level = 0; level <= 9; ++level)
+			roundTrip(input, level, 3);
+	}
+
+	@Test
+	public void moreBlocksThanPendingSlots() throws IOException
+	{
+		// One thread allows two pending blocks, so writes must wait for earlier blocks to be written
+		roundTrip(compressible(10 * BLOCK_SIZE + 3), 6, 1);
+	}
+
+	/**
+	 * The stream must be readable by the extractor that unpacks the CMake binaries.
+	 */
+	@Test
+	public void extractWithArchiveExtractor() throws IOException
+	{
+		Path directory = Files.createTempDirectory("cmake");
+		try
+		{
+			Path source = directory.resolve("source");
+			Files.createDirectories(source.resolve("bin"));
+			Files.createDirectories(source.resolve("empty"));
+			byte[] large = random(3 * BLOCK_SIZE + 11);
+			byte[] small = "hello world\n".getBytes();
+			Files.write(source.resolve("bin/large"), large);
+			Files.write(source.resolve("small.txt"), small);
+
+			Path archive = directory.resolve("archive.tar.gz");
+			try (OutputStream out = new ParallelGzipOutputStream(Files.newOutputStream(archive), 6, 4))
+			{
+				DirectoryArchiver.tar(source, out);
+			}
+			Path target = directory.resolve("target");
+			new ArchiveExtractor(Platform.detected(), log).extract(archive, target);
+			assertArrayEquals(large, Files.readAllBytes(target.resolve("bin/large")));
+			assertArrayEquals(small, Files.readAllBytes(target.resolve("small.txt")));
+			try (Stream<Path> children = Files.list(target.resolve("empty")))
+			{
+				assertFalse(children.findAny().isPresent());
+			}
+		}
+		finally
+		{
+			FileOperations.deleteRecursively(directory, log);
+		}
+	}
+
+	/**
+	 * Compresses data and decompresses it using {@code GZIPInputStream}.
+	 *
+	 * @param input   the data
+	 * @param level   the compression level
+	 * @param threads the number of compression threads
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void roundTrip(byte[] input, int level, int threads) throws IOException
+	{
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (OutputStream out = new ParallelGzipOutputStream(compressed, level, threads))
+		{
+			// Uneven writes, so that they straddle block boundaries
+			int offset = 0;
+			int chunk = 1;
+			while (offset < input.length)
+			{
+				int count = Math.min(chunk, input.length - offset);
+				out.write(input, offset, count);
+				offset += count;
+				chunk = chunk * 3 + 1;
+			}
+		}
+		byte[] output;
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())))
+		{
+			ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			while (true)
+			{
+				int count = in.read(buffer);
+				if (count == -1)
+					break;
+				decompressed.write(buffer, 0, count);
+			}
+			output = decompressed.toByteArray();
+		}
+		assertArrayEquals(input, output, "size: " + input.length + ", level: " + level);
+	}
+
+	/**
+	 * @param size the number of bytes to return
+	 * @return data with long repeated runs, whose matches span block boundaries
+	 */
+	private static byte[] compressible(int size)
+	{
+		byte[] result = new byte[size];
+		byte[] pattern = "The quick brown fox jumps over the lazy dog. ".getBytes();
+		for (int i = 0; i < size; ++i)
+			result[i] = pattern[i % pattern.length];
+		return result;
+	}
+
+	/**
+	 * @param size the number of bytes to return
+	 * @return incompressible data
+	 */
+	private static byte[] random(int size)
+	{
+		byte[] result = new byte[size];
+		new Random(size).nextBytes(result);
+		return result;
+	}
+}
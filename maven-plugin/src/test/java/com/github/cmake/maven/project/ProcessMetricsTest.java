@@ -0,0 +1,132 @@
+package com.github.cmake.maven.project;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cmakemavenplugin.cmake.common.FileOperations;
+import io.github.cmakemavenplugin.cmake.maven.plugin.ProcessMetrics;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Samples a fake {@code /proc}.
+ */
+public final class ProcessMetricsTest
+{
+	private Path proc;
+
+	@BeforeEach
+	public void createProc() throws IOException
+	{
+		proc = Files.createTempDirectory("proc");
+		addProcess(100, "sh", 1, 10, 5, 1, 2, 1000);
+		// The name of a process may contain spaces and parentheses
+		addProcess(101, "my (odd) name", 100, 20, 10, 0, 0, 2000);
+		addProcess(102, "a) b", 101, 3, 4, 0, 0, -1);
+		// Exited while /proc was being read
+		Files.createDirectories(proc.resolve("103"));
+		// Not a descendant
+		addProcess(200, "other", 1, 1000, 1000, 0, 0, 4000);
+	}
+
+	@AfterEach
+	public void deleteProc() throws IOException
+	{
+		FileOperations.deleteRecursively(proc, new SystemStreamLog());
+	}
+
+	@Test
+	public void sample() throws IOException
+	{
+		ProcessMetrics metrics = new ProcessMetrics(proc);
+		metrics.sample(100);
+		JsonNode json = write(metrics);
+		assertEquals(1, json.path("samples").asInt());
+		// utime + cutime of 100, 101 and 102, at 100 ticks per second
+		assertEquals(340, json.path("userCpuMillis").asLong());
+		assertEquals(210, json.path("systemCpuMillis").asLong());
+		// 102 has no VmRSS, like a zombie or a kernel thread
+		assertEquals(3000 * 1024, json.path("peakRssBytes").asLong());
+		assertEquals(2, json.path("maxDescendants").asInt());
+
+		// The peak is kept once the tree shrinks
+		FileOperations.deleteRecursively(proc.resolve("102"), new SystemStreamLog());
+		addProcess(101, "my (odd) name", 100, 25, 10, 0, 0, 500);
+		metrics.sample(100);
+		json = write(metrics);
+		assertEquals(2, json.path("samples").asInt());
+		assertEquals(360, json.path("userCpuMillis").asLong());
+		assertEquals(3000 * 1024, json.path("peakRssBytes").asLong());
+		assertEquals(2, json.path("maxDescendants").asInt());
+	}
+
+	@Test
+	public void rootExited() throws IOException
+	{
+		ProcessMetrics metrics = new ProcessMetrics(proc);
+		metrics.sample(103);
+		metrics.sample(300);
+		JsonNode json = write(metrics);
+		assertEquals(0, json.path("samples").asInt());
+		assertFalse(json.has("userCpuMillis"));
+		assertFalse(metrics.getSummary().contains("RSS"), metrics.getSummary());
+	}
+
+	/**
+	 * Adds a process to the fake {@code /proc}.
+	 *
+	 * @param pid    the ID of the process
+	 * @param name   the name of the process
+	 * @param ppid   the ID of the parent process
+	 * @param utime  the user time, in clock ticks
+	 * @param stime  the system time, in clock ticks
+	 * @param cutime the user time of children that were waited for, in clock ticks
+	 * @param cstime the system time of children that were waited for, in clock ticks
+	 * @param rss    the resident set size, in kB; {@code -1} to omit {@code VmRSS}
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void addProcess(long pid, String name, long ppid, long utime, long stime, long cutime, long cstime,
+		long rss) throws IOException
+	{
+		Path directory = proc.resolve(Long.toString(pid));
+		Files.createDirectories(directory);
+		String stat = pid + " (" + name + ") S " + ppid + " " + pid + " " + pid + " 0 -1 4194304 120 0 0 0 " +
+			utime + " " + stime + " " + cutime + " " + cstime + " 20 0 1 0 4242 10485760 " + Math.max(rss, 0) / 4 +
+			" 18446744073709551615\n";
+		Files.write(directory.resolve("stat"), stat.getBytes(StandardCharsets.UTF_8));
+		StringBuilder status = new StringBuilder("Name:\t").append(name).append("\nState:\tS (sleeping)\n");
+		status.append("PPid:\t").append(ppid).append('\n');
+		if (rss != -1)
+			status.append("VmHWM:\t   99999 kB\nVmRSS:\t").append(String.format("%8d", rss)).append(" kB\n");
+		status.append("Threads:\t1\n");
+		Files.write(directory.resolve("status"), status.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param metrics the metrics
+	 * @return the metrics, in JSON format
+	 * @throws IOException if an I/O error occurs
+	 */
+	private JsonNode write(ProcessMetrics metrics) throws IOException
+	{
+		Path json = proc.resolveSibling(proc.getFileName() + ".json");
+		try
+		{
+			metrics.writeJson(json, new ProcessBuilder("cmake"));
+			return new ObjectMapper().readTree(json.toFile());
+		}
+		finally
+		{
+			Files.deleteIfExists(json);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.maven.plugin.QuietOutput;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class QuietOutputTest
+{
+	@Test
+	public void empty()
+	{
+		assertEquals(Collections.emptyList(), dump(10));
+	}
+
+	@Test
+	public void partlyFull()
+	{
+		assertEquals(Arrays.asList("abc", "de"), dump(10, "abc", "de"));
+	}
+
+	/**
+	 * The output fills the buffer exactly, so the end of the buffer wraps around to its start.
+	 */
+	@Test
+	public void exactlyFull()
+	{
+		assertEquals(Arrays.asList("abcd", "efgh"), dump(10, "abcd", "efgh"));
+	}
+
+	@Test
+	public void wrapped()
+	{
+		// The buffer keeps "d\nefghi\njk\n"; "d" is the end of a line that no longer fits
+		assertEquals(Arrays.asList("WARN Omitted 5 bytes of earlier output", "efghi", "jk"),
+			dump(10, "abcd", "efghi", "jk"));
+	}
+
+	/**
+	 * The oldest byte that remains is the start of a line, so no line is partial.
+	 */
+	@Test
+	public void wrappedAtLineBoundary()
+	{
+		assertEquals(Arrays.asList("WARN Omitted 4 bytes of earlier output", "defg", "hijk"),
+			dump(10, "abc", "defg", "hijk"));
+	}
+
+	@Test
+	public void lineLongerThanCapacity()
+	{
+		assertEquals(Collections.singletonList("WARN Omitted 17 bytes of earlier output"),
+			dump(10, "0123456789abcdef"));
+		assertEquals(Arrays.asList("WARN Omitted 17 bytes of earlier output", "xy"),
+			dump(10, "0123456789abcdef", "xy"));
+		// A long line after the buffer filled up
+		assertEquals(Arrays.asList("WARN Omitted 28 bytes of earlier output", "z"),
+			dump(10, "abcd", "efghi", "0123456789abcdef", "z"));
+	}
+
+	/**
+	 * @param capacity the capacity of the buffer
+	 * @param lines    the output of a process
+	 * @return the messages that {@link QuietOutput#dump} logs, with warnings prefixed by {@code WARN}
+	 */
+	private static List<String> dump(int capacity, String... lines)
+	{
+		QuietOutput output = new QuietOutput(new SystemStreamLog(), capacity);
+		for (String line : lines)
+			output.onLine(line);
+		List<String> result = new ArrayList<>();
+		output.dump(new SystemStreamLog()
+		{
+			@Override
+			public void info(CharSequence content)
+			{
+				result.add(content.toString());
+			}
+
+			@Override
+			public void warn(CharSequence content)
+			{
+				result.add("WARN " + content);
+			}
+		});
+		return result;
+	}
+}
@@ -0,0 +1,80 @@
+package com.github.cmake.maven.project;
+
+import io.github.cmakemavenplugin.cmake.maven.plugin.CtestTest;
+import io.github.cmakemavenplugin.cmake.maven.plugin.TestFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class TestFilterTest
+{
+	@Test
+	public void globToRegex()
+	{
+		assertEquals("^Foo.*$", TestFilter.globToRegex("Foo*"));
+		assertEquals("^FooTest\\.bar$", TestFilter.globToRegex("FooTest#bar"));
+		assertEquals("^a.b$", TestFilter.globToRegex("a?b"));
+		// Characters that are special in regular expressions are matched literally
+		assertEquals("^a\\.b\\+c\\(d\\)\\{1\\}\\[e\\]\\|\\^\\$\\\\$",
+			TestFilter.globToRegex("a.b+c(d){1}[e]|^$\\"));
+		Pattern pattern = Pattern.compile(TestFilter.globToRegex("Suite.Test*"));
+		assertTrue(pattern.matcher("Suite.TestOne").matches());
+		assertFalse(pattern.matcher("SuiteXTestOne").matches());
+	}
+
+	@Test
+	public void options()
+	{
+		assertEquals(Collections.emptyList(), new TestFilter(Collections.emptyList(), Collections.emptyList(),
+			Collections.emptyList()).getOptions());
+		TestFilter filter = new TestFilter(Arrays.asList("^a", "b$"), Collections.singletonList("slow"),
+			Arrays.asList("fast", "!flaky", "unit", "!broken"));
+		// ctest accepts one expression per option, so the alternatives are joined
+		assertEquals(Arrays.asList("-R", "^a|b$", "-E", "slow", "-L", "fast|unit", "-LE", "flaky|broken"),
+			filter.getOptions());
+	}
+
+	@Test
+	public void accepts()
+	{
+		TestFilter filter = new TestFilter(Collections.singletonList("^unit\\."), Collections.singletonList("Slow"),
+			Collections.singletonList("!flaky"));
+		assertTrue(filter.accepts(new CtestTest("unit.Fast", Collections.singletonList("fast"))));
+		assertFalse(filter.accepts(new CtestTest("unit.Slow", Collections.emptyList())));
+		assertFalse(filter.accepts(new CtestTest("unit.Fast", Arrays.asList("fast", "flaky"))));
+		assertFalse(filter.accepts(new CtestTest("integration.Fast", Collections.emptyList())));
+	}
+
+	/**
+	 * Patterns are also passed to ctest, which does not understand these parts of the Java syntax.
+	 */
+	@Test
+	public void javaOnlySyntax()
+	{
+		for (String pattern : new String[]{"\\d", "a\\b", "a{1,3}", "(?i)foo", "a*?", "a+?", "a??", "a++",
+			"[\\.]", "[a[b]]", "[a-z&&[^c]]"})
+		{
+			assertThrows(IllegalArgumentException.class, () -> new TestFilter(Collections.singletonList(pattern),
+				Collections.emptyList(), Collections.emptyList()), pattern);
+		}
+		// Labels are checked as well
+		assertThrows(IllegalArgumentException.class, () -> new TestFilter(Collections.emptyList(),
+			Collections.emptyList(), Collections.singletonList("!\\w")));
+	}
+
+	@Test
+	public void commonSyntax()
+	{
+		new TestFilter(Collections.singletonList("^(unit|integration)\\.[^.]+[0-9]*$"),
+			Collections.singletonList("a?b+c*\\(\\{"), Collections.singletonList("!slow|flaky"));
+		new TestFilter(Collections.singletonList(TestFilter.globToRegex("Foo{1,3}*#bar?")), Collections.emptyList(),
+			Collections.emptyList());
+	}
+}